@@ -1,11 +1,12 @@
 package evaluation;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.StringTokenizer;
 
+import snomed.ReleaseReader;
+
 /**
  * This class concept identification used by UMLS into their equivalent Snomed-ct cui
  * It uses the MRCONSO.RRF file. 
@@ -19,7 +20,7 @@ public class UMLS {
 	public static final String CUI_SNOMED_ID_FILE = "res/eval/MRCONSO.RRF";
 	
 	// SNOMED_ID to UMLS_CUI
-	private HashMap<String, String> mappingSNOMEDCTidToUMLSCUI;
+	private HashMap<Long, String> mappingSNOMEDCTidToUMLSCUI;
 	
 	/**
 	 * Read the file MRCONSO.RRF provided by UMLS containing mapping of UMLS_CUI and SNOMED_ID
@@ -32,13 +33,24 @@ public class UMLS {
 	 * @throws IOException
 	 */	
 	public UMLS() throws IOException{
+		this(CUI_SNOMED_ID_FILE);
+	}
+	
+	/**
+	 * Read the mapping from a MRCONSO.RRF file, which can also be read from
+	 * its archive (MRCONSO.RRF.gz, or umls.zip!MRCONSO.RRF), see ReleaseReader.
+	 * 
+	 * @param mrconsoFile path to MRCONSO.RRF
+	 * @throws IOException
+	 */
+	public UMLS(String mrconsoFile) throws IOException{
 		
         // Stores the SNOMED_ID: --> UMLS_CUI
 		mappingSNOMEDCTidToUMLSCUI = new HashMap<>();
 
 		//Reading the file
 		BufferedReader bufferedReader = null;
-	    bufferedReader = new BufferedReader(new FileReader(CUI_SNOMED_ID_FILE));
+	    bufferedReader = ReleaseReader.open(mrconsoFile);
 	        
 	    // Get the fields
 	    System.out.println("Loading the mapping SNOMEDCT_ID <-> UMLS_CUI concepts : ");
@@ -53,9 +65,11 @@ public class UMLS {
             String[] fields = line.split("\\|");
             if (fields[6].equals("N") || fields[2].equals("P")) continue;
             String CUI = fields[0];
-            String snomedID = fields[9];
             //System.out.println(line + " [" + SnomedID + " --> " + CUI + "]");
-            if (CUI.length() > 0 && snomedID.length() > 0) {
+            // only the numeric source ids can be SNOMED ids (other sources use codes like D012345)
+            if (CUI.length() > 0 && isNumber(fields[9])) {
+            	// the SNOMED ids are parsed once here, then looked up as longs
+            	Long snomedID = Long.valueOf(fields[9]);
             	if (mappingSNOMEDCTidToUMLSCUI.containsKey(snomedID)) {
             		if (!mappingSNOMEDCTidToUMLSCUI.get(snomedID).equals(CUI)) {
             			doubles++;
@@ -71,13 +85,21 @@ public class UMLS {
 		
 	}
 	
+	private static boolean isNumber(String field) {
+		if (field.length() == 0 || field.length() > 18) return false;
+		for (int i = 0; i < field.length(); i++) {
+			if (field.charAt(i) < '0' || field.charAt(i) > '9') return false;
+		}
+		return true;
+	}
+	
 	/**
 	 * Search the SnomedID in MRCONSO.RRF and return its equivalent UMLS CUI
 	 * 
 	 * @param snomedId
-	 * @return UMLS CUI
+	 * @return UMLS CUI, null if the id has no CUI
 	 */
-	public String getCUIofSnomedId(String snomedId) {
+	public String getCUIofSnomedId(long snomedId) {
 		return this.mappingSNOMEDCTidToUMLSCUI.get(snomedId);
 	}
 	
@@ -86,7 +108,7 @@ public class UMLS {
 		try {
 			//Eval.allCUIinGoldTest();
 			UMLS umls = new UMLS();
-			System.out.println(umls.getCUIofSnomedId("25064002"));
+			System.out.println(umls.getCUIofSnomedId(25064002L));
 			
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
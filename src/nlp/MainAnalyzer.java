@@ -21,6 +21,7 @@ import reasoning.MatchedPattern;
 import reasoning.MetaModel;
 import reasoning.ResourcesMapper;
 import reasoning.SyntacticalPatternDB;
+import snomed.LongList;
 import snomed.SNOMED;
 import wordnet.WordNet;
 
@@ -106,7 +107,7 @@ public class MainAnalyzer {
      * @param snomedId
      * @return CUI
      */
-    public String getCUIofSnomedID(String snomedId) {
+    public String getCUIofSnomedID(long snomedId) {
     	return umls.getCUIofSnomedId(snomedId);
     }
     
@@ -161,13 +162,13 @@ public class MainAnalyzer {
      * @param snomedIds list of the medical concepts found
      * @throws IOException
      */
-    public void writeExtractedCUIintoAFile(String postPath, List<String> snomedIds) throws IOException {
+    public void writeExtractedCUIintoAFile(String postPath, LongList snomedIds) throws IOException {
         // File reader
     	BufferedWriter bufferedWriter = null;               
     	bufferedWriter = new BufferedWriter(new FileWriter(postPath+Eval.RESULT__FILE_EXT));
 
     	for (int i=0; i < snomedIds.size(); i++) {
-    		String snomedId = snomedIds.get(i);
+    		long snomedId = snomedIds.get(i);
 			bufferedWriter.write( this.getCUIofSnomedID(snomedId));
 			if ( (i+1) < snomedIds.size() ) bufferedWriter.write(" ");
 		}
@@ -195,9 +196,9 @@ public class MainAnalyzer {
     	
     	/*
     	// extract the concepts found
-    	List<String> snomedIds = instantiatedModel.getSnomedIds();
-    	for (String string : snomedIds) {
-    		System.out.println(string +" <-> "+ analyzer.umls.getCUIofSnomedId(string));
+    	LongList snomedIds = instantiatedModel.getSnomedIds();
+    	for (int i = 0; i < snomedIds.size(); i++) {
+    		System.out.println(snomedIds.get(i) +" <-> "+ analyzer.umls.getCUIofSnomedId(snomedIds.get(i)));
 		}
     	//analyzer.writeExtractedCUIintoAFile(postPath, snomedIds);
     	*/
@@ -213,9 +214,9 @@ public class MainAnalyzer {
 			System.out.println("analysing: " + filePath);
 	    	MetaModel instantiatedModelGoldCorpus = analyzer.analyze(filePath);
 	    	//instantiatedModelGoldCorpus.draw();
-	    	List<String> snomedIds = instantiatedModelGoldCorpus.getSnomedIds();
-	    	for (String string : snomedIds) {
-	    		System.out.println(string +" <-> "+ analyzer.umls.getCUIofSnomedId(string));
+	    	LongList snomedIds = instantiatedModelGoldCorpus.getSnomedIds();
+	    	for (int i = 0; i < snomedIds.size(); i++) {
+	    		System.out.println(snomedIds.get(i) +" <-> "+ analyzer.umls.getCUIofSnomedId(snomedIds.get(i)));
 			}
     		analyzer.writeExtractedCUIintoAFile(Eval.RESULT_FOLDER_PATH + "/" + fileName, snomedIds);
 		}
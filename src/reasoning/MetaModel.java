@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
+import snomed.ConceptSet;
+import snomed.LongList;
 import snomed.SNOMED;
 import wordnet.WordNet;
 
@@ -36,7 +38,13 @@ public class MetaModel {
 	private ResourcesMapper resourcesMapper;
 	
 	// List of SNOMED_ID founds
-	private List<String> snomedIds;
+	private LongList snomedIds;
+	
+	// Set of the (distinct) SNOMED concepts found, by their index
+	private ConceptSet snomedConcepts;
+	
+	// used to convert the SNOMED_ID founds to their index
+	private SNOMED snomed;
 
 	// file name where the post where constructed from
 	private String postFilePath;
@@ -60,7 +68,9 @@ public class MetaModel {
 		this.resourcesMapper = resourcesMapper;
 
 		//initialize the list of SNOMED_id which will be extracted
-		this.snomedIds = new LinkedList<>();
+		this.snomedIds = new LongList();
+		this.snomedConcepts = new ConceptSet();
+		this.snomed = snomed;
 		
 		//initialize the reasoning engine
 		reasoningEngine = new ReasoningEngine(wordnet, snomed, resourcesMapper);
@@ -71,13 +81,14 @@ public class MetaModel {
 	 * Add to the list of snomed_id the concepts that we referred to in the post.
 	 * @param id Snomed_ID
 	 */
-	public void addSnomedID(String id) {
+	public void addSnomedID(long id) {
 		this.snomedIds.add(id);
+		this.snomedConcepts.add(snomed.getIndex(id));
 	}
 	
-	public void addSnomedIDs(List<String> snomedIdsFound) {
-		for (String string : snomedIdsFound) {
-			addSnomedID(string);
+	public void addSnomedIDs(LongList snomedIdsFound) {
+		for (int i = 0; i < snomedIdsFound.size(); i++) {
+			addSnomedID(snomedIdsFound.get(i));
 		}
 	}
 	
@@ -151,8 +162,8 @@ public class MetaModel {
 	 */
 	public void printSnomedIDs() {
 		System.out.println("List of ("+snomedIds.size()+") CUIs for the File:" + postFilePath);
-		for (String id : snomedIds) {
-			System.out.println(id);
+		for (int i = 0; i < snomedIds.size(); i++) {
+			System.out.println(snomedIds.get(i));
 		}
 	}
 	
@@ -161,9 +172,18 @@ public class MetaModel {
 	 * 
 	 * @return
 	 */
-	public List<String> getSnomedIds() {
+	public LongList getSnomedIds() {
 		return snomedIds;
 	}
+	
+	/**
+	 * return the set of the distinct SNOMED concepts (indexes) extracted from the text
+	 * 
+	 * @return
+	 */
+	public ConceptSet getSnomedConcepts() {
+		return snomedConcepts;
+	}
 
 
 	/**
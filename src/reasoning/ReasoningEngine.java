@@ -1,11 +1,15 @@
 package reasoning;
 
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
+import snomed.ConceptSet;
+import snomed.LongList;
 import snomed.SNOMED;
 import snomed.SNOMED.SearchMethod;
+import wordnet.RelationMask;
 import wordnet.WordNet;
 
 /**
@@ -31,7 +35,15 @@ public class ReasoningEngine {
 	// This will contain the SNOMED-CT ID extracted from the text for each evaluated triplet
 	// reset this to an empty list each time we call evaluate
 	// then it will be filled with the found SNOMED concepts when the new triplet is evaluated.
-	public List<String> foundSnomedIDs;
+	public LongList foundSnomedIDs;
+	
+	// The SNOMED-CT concepts satisfying each sn_ entry of the mapping
+	// (evaluated once, then reused for all the triplets)
+	private HashMap<String, ConceptSet> constraints;
+	
+	// The WordNet synsets under the wn_ entries of each entity of the mapping:
+	// the mapped synsets and all their hyponyms (evaluated once, then reused)
+	private HashMap<String, BitSet> wordnetClosures;
 	
 	/**
 	 * Initialize the reasoning engine to evaluate the triplet with regard to their
@@ -45,6 +57,48 @@ public class ReasoningEngine {
 		this.wordnet = wordnet;
 		this.snomed = snomed;
 		this.resourcesMapper = resourcesMapper;
+		this.constraints = new HashMap<>();
+		this.wordnetClosures = new HashMap<>();
+	}
+	
+	/**
+	 * Returns the set of SNOMED-CT concepts (indexes) satisfying a sn_ entry of the mapping.
+	 * An entry is either a concept id, which stands for the concept and all its
+	 * descendants, or an expression constraint (ex. << 404684003 : 363698007 = << 80891009)
+	 * 
+	 * @param snomedConstraint sn_ entry of the mapping
+	 * @return the indexes of the concepts satisfying the entry
+	 */
+	private ConceptSet getConstraint(String snomedConstraint) {
+		ConceptSet result = this.constraints.get(snomedConstraint);
+		if (result == null) {
+			String ecl = snomedConstraint.trim();
+			if (ecl.matches("[0-9]+")) ecl = "<< " + ecl;
+			result = snomed.getEclEngine().evaluate(ecl);
+			this.constraints.put(snomedConstraint, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the set of WordNet synsets (indexes) matching the wn_ entries of an
+	 * entity: each mapped synset stands for itself and all its hyponyms (ex.
+	 * "aunt" under "relative"), following the hypernyms backwards.
+	 * 
+	 * @param entity type Sub, Pre or Obj
+	 * @param wordnetSynsets wn_ entries of the entity
+	 * @return the indexes of the synsets under a mapped synset
+	 */
+	private BitSet getWordnetClosure(String entity, List<String> wordnetSynsets) {
+		BitSet result = this.wordnetClosures.get(entity);
+		if (result == null) {
+			result = new BitSet();
+			for (String synset : wordnetSynsets) {
+				result.or(wordnet.getDescendants(Integer.parseInt(synset.trim()), RelationMask.HYPERNYMS));
+			}
+			this.wordnetClosures.put(entity, result);
+		}
+		return result;
 	}
 	
 	
@@ -58,7 +112,7 @@ public class ReasoningEngine {
 	public double evaluate(SyntacticalPattern syntacticalPattern, Triplet triplet){
 		
 		// re-initialize the list of the found snomed id to an empty list
-		this.foundSnomedIDs = new LinkedList<>();
+		this.foundSnomedIDs = new LongList();
 		
 		// get the meta-model structure of the pattern
 		String object = syntacticalPattern.getObject();
@@ -120,7 +174,7 @@ public class ReasoningEngine {
 	 *  Use the words to evaluate either Subject, Predicate or Object as follow:
 	 *  1- Can is be null? 
 	 *  2- Is there a direct hit in the list of manually defined words?
-	 *  3- Is there is a match with WordNet?
+	 *  3- Is there is a match with WordNet (a synset of the word under a mapped synset)?
 	 *  4- Is there a match with SNOMED-CT?
 	 *  
 	 * return 
@@ -162,12 +216,11 @@ public class ReasoningEngine {
 		List<String> wordnetSynsets = resourcesMapper.wordnetSynset(entity);
 		allMatch = true;
 		if (wordnetSynsets != null){
+			BitSet closure = this.getWordnetClosure(entity, wordnetSynsets);
 			for (String word : words) {
 				boolean match = false;
-				for (String synset : wordnetSynsets) {
-					Integer synsetId = Integer.parseInt(synset);
-					List<Integer> synsetsOfWord = wordnet.getSynsets(word);
-					if (synsetsOfWord.contains(synsetId)) {
+				for (int synsetId : wordnet.getSynsets(word)) {
+					if (closure.get(synsetId)) {
 						match = true;
 						break;
 					}
@@ -185,18 +238,18 @@ public class ReasoningEngine {
 		if (snomedIDs != null) {
 			
 			// New search method using incremental search combined with Levenshtein distance
-			List<String> snomedIdsFound = snomed.getAllFoundConceptsNoSweep(words);
-			List<String> snomedIdsFoundEvaluated = new LinkedList<>();
+			LongList snomedIdsFound = snomed.getAllFoundConceptsNoSweep(words);
+			LongList snomedIdsFoundEvaluated = new LongList();
 			// We used this third list to keep the list of medical concepts that do fall 
 			// only in the Disease or Symptom categories.
 			// TODO Modify this code below to chose the concepts to include
-			//List<String> snomedIdsFoundDiseasesAndSymptomsEvaluated = new LinkedList<>();
+			//LongList snomedIdsFoundDiseasesAndSymptomsEvaluated = new LongList();
 			
-			for (String snomedIdFromWord : snomedIdsFound) {				
-				Long id = Long.parseLong(snomedIdFromWord);
-				HashSet<String> pathToRoot = snomed.getNodesToRoot(id);
+			for (int i = 0; i < snomedIdsFound.size(); i++) {
+				long snomedIdFromWord = snomedIdsFound.get(i);
+				int index = snomed.getIndex(snomedIdFromWord);
 				for (String snomedId : snomedIDs) {
-					if (pathToRoot.contains(snomedId)) {
+					if (this.getConstraint(snomedId).contains(index)) {
 						// print the found SNOMED_ID
 						//System.out.println(" ---> SNOMED_ID" + snomedIdFromWord);
 						// save the found SNOMED_ID
@@ -219,15 +272,11 @@ public class ReasoningEngine {
 			}			
 			if (snomedIdsFoundEvaluated.size() > 0) {
 				// TODO take all snomedCT concepts founds				
-				for (String string : snomedIdsFoundEvaluated) {
-					this.foundSnomedIDs.add(string);	
-				}
+				this.foundSnomedIDs.addAll(snomedIdsFoundEvaluated);
 				
 				// TODO take only diseases and symptoms
 				/*
-				for (String string : snomedIdsFoundDiseasesAndSymptomsEvaluated) {
-					this.foundSnomedIDs.add(string);	
-				}
+				this.foundSnomedIDs.addAll(snomedIdsFoundDiseasesAndSymptomsEvaluated);
 				*/
 				return 1.0;
 			}
@@ -238,16 +287,16 @@ public class ReasoningEngine {
 			for (String word : words) listWords.add(word);
 			
 			// Search the FNS and SYN of the SNOMED-CT concepts with the list of words (to rewrite the function)
-			HashSet<String> snomedCodesFromWords = snomed.getMatchesForListOfWords(listWords, SNOMED.SearchMethod.REG_EXP); 
+			LongList snomedCodesFromWords = (LongList) snomed.getMatchesForListOfWords(listWords, SNOMED.SearchMethod.REG_EXP).get("SNOMED_IDs"); 
 			
 			// save the SNOMED-CT it that were extracted from the text file
-			List<String> snomedIdsFound = new LinkedList<>();
+			LongList snomedIdsFound = new LongList();
 			
-			for (String snomedIdFromWord : snomedCodesFromWords) {				
-				Long id = Long.parseLong(snomedIdFromWord);
-				HashSet<String> pathToRoot = snomed.getNodesToRoot(id);
+			for (int i = 0; i < snomedCodesFromWords.size(); i++) {
+				long snomedIdFromWord = snomedCodesFromWords.get(i);
+				LongList pathToRoot = snomed.getNodesToRoot(snomedIdFromWord);
 				for (String snomedId : snomedIDs) {
-					if (pathToRoot.contains(snomedId)) {
+					if (pathToRoot.contains(Long.parseLong(snomedId))) {
 						// print the found SNOMED_ID
 						System.out.println(" ---> SNOMED_ID" + snomedIdFromWord);
 						// save the found SNOMED_ID					
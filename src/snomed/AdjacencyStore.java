@@ -0,0 +1,392 @@
+package snomed;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ *
+ * Compressed on-disk adjacency of the SNOMED-CT relationships graph, read
+ * through a memory-mapped file.
+ *
+ * The graph stays off-heap: the file is mapped read-only, so the pages are
+ * loaded on demand and shared (page cache) between all the JVMs opening the
+ * same file. Several releases can be opened side by side for the cost of the
+ * pages actually used. SNOMED reads its graph from the store instead of
+ * building it on the heap when it is opened with
+ *
+ *     new SNOMED(AdjacencyStore.open(graphPath), DescriptionStore.open(namesPath))
+ *
+ * (the two files written by saveAdjacency() and saveDescriptions()).
+ *
+ * File format (big-endian):
+ *
+ *     header:      magic "SNAD", version, N, number of edges, number of types,
+ *                  length of the metadata
+ *     metadata:    UTF-8 text, the options of the loading (see LoadOptions)
+ *     types:       long[types]  typeIds, an edge refers to its type by position
+ *     concepts:    long[N]      conceptId of each index
+ *     lookup:      long[N]      sorted conceptIds, int[N] their indexes
+ *     offsets:     int[N+1]     start of each concept in the targets stream
+ *                  int[N+1]     start of each concept in the side stream
+ *     targets:     for each concept: varint degree, then the sorted destination
+ *                  indexes as varint deltas (first one as is)
+ *     side:        for each edge, in the same order: varint type, varint group
+ *
+ * The varints use 7 bits per byte (the high bit means "more bytes follow"),
+ * so most of the deltas between neighbors take one or two bytes.
+ *
+ * All the reads are absolute, so a store can be shared between threads.
+ */
+public class AdjacencyStore {
+
+    private static final int MAGIC = 0x534E4144; // "SNAD"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+
+    private final MappedByteBuffer buffer;
+    private final int n;
+    private final int edges;
+    private final long[] typeIds; // small, kept on heap
+    private final String metadata;
+
+    // positions of the sections in the file
+    private final int conceptsStart;
+    private final int lookupIdsStart;
+    private final int lookupIndexesStart;
+    private final int targetOffsetsStart;
+    private final int sideOffsetsStart;
+    private final int targetsStart;
+    private final int sideStart;
+
+    /**
+     * Iterate over the relationships going out of a concept, ordered by
+     * destination index.
+     */
+    public class Cursor {
+        private int remaining;
+        private int targetPosition;
+        private int sidePosition;
+        private int target;
+        private int type;
+        private int group;
+
+        private Cursor(int index) {
+            this.targetPosition = AdjacencyStore.this.targetsStart + AdjacencyStore.this.buffer.getInt(AdjacencyStore.this.targetOffsetsStart + 4 * index);
+            this.sidePosition = AdjacencyStore.this.sideStart + AdjacencyStore.this.buffer.getInt(AdjacencyStore.this.sideOffsetsStart + 4 * index);
+            this.remaining = this.readTarget();
+            this.target = 0;
+        }
+
+        private int readTarget() {
+            int value = Varint.read(AdjacencyStore.this.buffer, this.targetPosition);
+            this.targetPosition += Varint.size(value);
+            return value;
+        }
+
+        private int readSide() {
+            int value = Varint.read(AdjacencyStore.this.buffer, this.sidePosition);
+            this.sidePosition += Varint.size(value);
+            return value;
+        }
+
+        /**
+         * Move to the next relationship
+         * @return false when there are no more relationships
+         */
+        public boolean next() {
+            if (this.remaining == 0) return false;
+            this.remaining--;
+            this.target += this.readTarget();
+            this.type = this.readSide();
+            this.group = this.readSide();
+            return true;
+        }
+
+        /**
+         * Index of the destination concept of the current relationship
+         */
+        public int target() {
+            return this.target;
+        }
+
+        /**
+         * typeId of the current relationship
+         */
+        public long typeId() {
+            return AdjacencyStore.this.typeIds[this.type];
+        }
+
+        /**
+         * relationshipGroup of the current relationship
+         */
+        public int group() {
+            return this.group;
+        }
+    }
+
+    private AdjacencyStore(MappedByteBuffer buffer, String path) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not an adjacency file: " + path);
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported adjacency file version " + buffer.getInt(4) + ": " + path);
+        this.n = buffer.getInt(8);
+        this.edges = buffer.getInt(12);
+        int types = buffer.getInt(16);
+        byte[] metadata = new byte[buffer.getInt(20)];
+        for (int b = 0; b < metadata.length; b++) metadata[b] = buffer.get(HEADER_SIZE + b);
+        this.metadata = new String(metadata, StandardCharsets.UTF_8);
+        int typesStart = HEADER_SIZE + metadata.length;
+        this.typeIds = new long[types];
+        for (int t = 0; t < types; t++) this.typeIds[t] = buffer.getLong(typesStart + 8 * t);
+        this.conceptsStart = typesStart + 8 * types;
+        this.lookupIdsStart = this.conceptsStart + 8 * this.n;
+        this.lookupIndexesStart = this.lookupIdsStart + 8 * this.n;
+        this.targetOffsetsStart = this.lookupIndexesStart + 4 * this.n;
+        this.sideOffsetsStart = this.targetOffsetsStart + 4 * (this.n + 1);
+        this.targetsStart = this.sideOffsetsStart + 4 * (this.n + 1);
+        this.sideStart = this.targetsStart + buffer.getInt(this.targetOffsetsStart + 4 * this.n);
+    }
+
+    /**
+     * Map an adjacency file written by write()
+     *
+     * @param path adjacency file
+     * @throws IOException if the file can not be read or is not an adjacency file
+     */
+    public static AdjacencyStore open(String path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Adjacency file too large: " + path);
+            // the mapping stays valid after the channel is closed
+            return new AdjacencyStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path);
+        }
+    }
+
+    /**
+     * Write the relationships given as parallel arrays into an adjacency file.
+     *
+     * @param path adjacency file to write
+     * @param conceptIds conceptId of each index (N concepts)
+     * @param count number of relationships in the arrays
+     * @param sources index of the source concept of each relationship
+     * @param destinations index of the destination concept of each relationship
+     * @param typeIds typeId of each relationship
+     * @param groups relationshipGroup of each relationship
+     * @param metadata text saved with the graph (the options of the loading)
+     * @throws IOException
+     */
+    static void write(String path, long[] conceptIds, int count, int[] sources, int[] destinations, long[] typeIds, int[] groups, String metadata) throws IOException {
+        int n = conceptIds.length;
+
+        // number the types
+        HashMap<Long, Integer> typeCodes = new HashMap<>();
+        long[] types = new long[16];
+        for (int r = 0; r < count; r++) {
+            if (!typeCodes.containsKey(typeIds[r])) {
+                if (typeCodes.size() == types.length) types = Arrays.copyOf(types, types.length * 2);
+                types[typeCodes.size()] = typeIds[r];
+                typeCodes.put(typeIds[r], typeCodes.size());
+            }
+        }
+        types = Arrays.copyOf(types, typeCodes.size());
+
+        // the relationships grouped by source (counting sort)
+        int[] order = new int[count];
+        int[] next = new int[n + 1];
+        for (int r = 0; r < count; r++) next[sources[r] + 1]++;
+        for (int i = 0; i < n; i++) next[i + 1] += next[i];
+        for (int r = 0; r < count; r++) order[next[sources[r]]++] = r;
+
+        // then sorted by (destination, type, group) inside each source,
+        // packed in a long: destination (32 bits), type (16 bits), group (16 bits)
+        if (types.length > 0xFFFF)
+            throw new IllegalArgumentException("Too many relationship types: " + types.length);
+        long[] keys = new long[count];
+        for (int k = 0; k < count; k++) {
+            int r = order[k];
+            if (groups[r] < 0 || groups[r] > 0xFFFF)
+                throw new IllegalArgumentException("relationshipGroup out of range: " + groups[r]);
+            keys[k] = ((long) destinations[r] << 32) | ((long) typeCodes.get(typeIds[r]) << 16) | groups[r];
+        }
+        for (int i = 0; i < n; i++) {
+            // next[i] is now the end of the source i
+            int from = i == 0 ? 0 : next[i - 1];
+            Arrays.sort(keys, from, next[i]);
+        }
+
+        // encode the two streams
+        ByteArrayOutputStream targets = new ByteArrayOutputStream();
+        ByteArrayOutputStream side = new ByteArrayOutputStream();
+        int[] targetOffsets = new int[n + 1];
+        int[] sideOffsets = new int[n + 1];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            targetOffsets[i] = targets.size();
+            sideOffsets[i] = side.size();
+            int end = next[i];
+            Varint.write(targets, end - k);
+            int previous = 0;
+            for (; k < end; k++) {
+                int destination = (int) (keys[k] >>> 32);
+                Varint.write(targets, destination - previous);
+                previous = destination;
+                Varint.write(side, (int) (keys[k] >>> 16) & 0xFFFF);
+                Varint.write(side, (int) keys[k] & 0xFFFF);
+            }
+        }
+        targetOffsets[n] = targets.size();
+        sideOffsets[n] = side.size();
+
+        // the lookup table conceptId -> index
+        long[] sortedIds = conceptIds.clone();
+        Arrays.sort(sortedIds);
+        HashMap<Long, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < n; i++) indexes.put(conceptIds[i], i);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(count);
+            out.writeInt(types.length);
+            byte[] text = metadata.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            for (long t : types) out.writeLong(t);
+            for (long id : conceptIds) out.writeLong(id);
+            for (long id : sortedIds) out.writeLong(id);
+            for (long id : sortedIds) out.writeInt(indexes.get(id));
+            for (int o : targetOffsets) out.writeInt(o);
+            for (int o : sideOffsets) out.writeInt(o);
+            targets.writeTo(out);
+            side.writeTo(out);
+        }
+    }
+
+    /**
+     * Number of concepts
+     */
+    public int size() {
+        return this.n;
+    }
+
+    /**
+     * Number of relationships
+     */
+    public int edgeCount() {
+        return this.edges;
+    }
+
+    /**
+     * Returns the SNOMED-CT id of a concept index
+     */
+    public long getConceptId(int index) {
+        if (index < 0 || index >= this.n)
+            throw new IllegalArgumentException("Index out of range: " + index);
+        return this.buffer.getLong(this.conceptsStart + 8 * index);
+    }
+
+    /**
+     * Returns the index of a concept id
+     *
+     * @throws IllegalArgumentException if the concept is unknown
+     */
+    public int getIndex(long conceptId) {
+        int index = this.indexOf(conceptId);
+        if (index < 0)
+            throw new IllegalArgumentException("Unkown concept: " + conceptId);
+        return index;
+    }
+
+    /**
+     * (Helper function) Returns the index of a concept id (binary search),
+     * -1 if the concept is unknown
+     */
+    int indexOf(long conceptId) {
+        int low = 0, high = this.n - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = this.buffer.getLong(this.lookupIdsStart + 8 * middle);
+            if (id < conceptId) low = middle + 1;
+            else if (id > conceptId) high = middle - 1;
+            else return this.buffer.getInt(this.lookupIndexesStart + 4 * middle);
+        }
+        return -1;
+    }
+
+    /**
+     * (Helper function) The typeIds of the relationships of the graph
+     */
+    long[] getTypeIds() {
+        return this.typeIds.clone();
+    }
+
+    /**
+     * Number of relationships going out of a concept
+     */
+    public int degree(int index) {
+        return this.relationships(index).remaining;
+    }
+
+    /**
+     * Iterate over the relationships going out of a concept
+     */
+    public Cursor relationships(int index) {
+        if (index < 0 || index >= this.n)
+            throw new IllegalArgumentException("Index out of range: " + index);
+        return new Cursor(index);
+    }
+
+    /**
+     * The metadata saved with the graph: the options of the loading
+     * (see LoadOptions.toString()), empty if none
+     */
+    public String getMetadata() {
+        return this.metadata;
+    }
+
+    /**
+     * Size of the mapped file in bytes
+     */
+    public int byteSize() {
+        return this.buffer.capacity();
+    }
+
+    /**
+     * do performance testing of this class
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        SNOMED snomed = SNOMED.loadSnomed();
+        String path = args.length > 0 ? args[0] : "snomed.adjacency";
+        long start = System.nanoTime();
+        snomed.saveAdjacency(path);
+        System.out.println("Written in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        AdjacencyStore store = AdjacencyStore.open(path);
+        System.out.printf("%d concepts, %d relationships, %d bytes (%.2f bytes/relationship)%n",
+                store.size(), store.edgeCount(), store.byteSize(), (double) store.byteSize() / store.edgeCount());
+
+        for (int round = 0; round < 5; round++) {
+            long checksum = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < store.size(); i++) {
+                Cursor cursor = store.relationships(i);
+                while (cursor.next()) checksum += cursor.target() + cursor.group();
+            }
+            System.out.printf("Full scan in %d ms [%d]%n", (System.nanoTime() - start) / 1000000, checksum);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package snomed;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ *
+ * Index of the attribute relationships of SNOMED-CT by their typeId
+ * (finding site, causative agent, ..., is-a included).
+ *
+ * For each type of relationship we keep two compact tables:
+ *     - forward: source concept -> destination concepts
+ *     - reverse: destination concept -> source concepts
+ *
+ * A table only stores the concepts having at least one relationship of its
+ * type (sorted keys + offsets), so the memory is proportional to the number
+ * of relationships and not to the number of concepts times the number of
+ * types. The values of each key are sorted by relationshipGroup then by
+ * concept index, which allows to iterate over the attributes group by group.
+ *
+ * All the concepts are referred to by their sequential index (0..N-1).
+ *
+ * The index is never changed once built. When a Delta release is applied,
+ * update() returns a new index where only the keys touched by the added or
+ * removed relationships are patched, the other tables are shared.
+ */
+public class AttributeIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * Compact table: key (concept index) -> values (concept indexes + groups)
+     */
+    private static class Table {
+        private int[] keys;     // sorted distinct keys
+        private int[] offsets;  // values of keys[k] are in [offsets[k], offsets[k+1])
+        private int[] values;   // concept indexes
+        private int[] groups;   // relationshipGroup of each value
+
+        /**
+         * Returns the position of key in keys, or -1 if absent
+         */
+        private int find(int key) {
+            int k = Arrays.binarySearch(this.keys, key);
+            return k < 0 ? -1 : k;
+        }
+    }
+
+    /**
+     * Iterate over the values of a key of a table, ordered by
+     * relationshipGroup then by concept index.
+     */
+    public static class Cursor {
+        private final int[] values;
+        private final int[] groups;
+        private final int end;
+        private int position;
+
+        private Cursor(int[] values, int[] groups, int start, int end) {
+            this.values = values;
+            this.groups = groups;
+            this.position = start - 1;
+            this.end = end;
+        }
+
+        /**
+         * Move to the next value
+         * @return false when there are no more values
+         */
+        public boolean next() {
+            return ++this.position < this.end;
+        }
+
+        /**
+         * Concept index of the current value
+         */
+        public int value() {
+            return this.values[this.position];
+        }
+
+        /**
+         * relationshipGroup of the current value (0 when not grouped)
+         */
+        public int group() {
+            return this.groups[this.position];
+        }
+    }
+
+    private static final Cursor EMPTY_CURSOR = new Cursor(EMPTY, EMPTY, 0, 0);
+
+    // typeId -> (sourceIndex -> destinationIndexes)
+    private final HashMap<Long, Table> forward;
+
+    // typeId -> (destinationIndex -> sourceIndexes)
+    private final HashMap<Long, Table> reverse;
+
+    /**
+     * Build the index from the list of relationships given as parallel arrays.
+     *
+     * @param n total number of concepts
+     * @param count number of relationships in the arrays
+     * @param sources index of the source concept of each relationship
+     * @param destinations index of the destination concept of each relationship
+     * @param typeIds typeId of each relationship
+     * @param groups relationshipGroup of each relationship
+     */
+    AttributeIndex(int n, int count, int[] sources, int[] destinations, long[] typeIds, int[] groups) {
+        this.forward = new HashMap<>();
+        this.reverse = new HashMap<>();
+
+        // group the relationships by their type
+        HashMap<Long, int[]> typeCounts = new HashMap<>();
+        for (int r = 0; r < count; r++) {
+            int[] c = typeCounts.get(typeIds[r]);
+            if (c == null) typeCounts.put(typeIds[r], c = new int[1]);
+            c[0]++;
+        }
+        HashMap<Long, int[]> typeMembers = new HashMap<>();
+        for (Long typeId : typeCounts.keySet()) {
+            typeMembers.put(typeId, new int[typeCounts.get(typeId)[0]]);
+            typeCounts.get(typeId)[0] = 0;
+        }
+        for (int r = 0; r < count; r++) {
+            int[] c = typeCounts.get(typeIds[r]);
+            typeMembers.get(typeIds[r])[c[0]++] = r;
+        }
+
+        int[] scratch = new int[n + 1];
+        for (Long typeId : typeMembers.keySet()) {
+            int[] members = typeMembers.get(typeId);
+            this.forward.put(typeId, buildTable(scratch, members, sources, destinations, groups));
+            this.reverse.put(typeId, buildTable(scratch, members, destinations, sources, groups));
+        }
+    }
+
+    /**
+     * (Helper function) Build a table key -> values from the relationships members.
+     * scratch is a zeroed array of size N+1, it is zeroed again on return.
+     */
+    private static Table buildTable(int[] scratch, int[] members, int[] keys, int[] values, int[] groups) {
+        // count the values of each key
+        int distinct = 0;
+        for (int r : members) {
+            if (scratch[keys[r]]++ == 0) distinct++;
+        }
+
+        Table table = new Table();
+        table.keys = new int[distinct];
+        table.offsets = new int[distinct + 1];
+        table.values = new int[members.length];
+        table.groups = new int[members.length];
+
+        // the keys in ascending order, and the offset of each of them
+        int k = 0, offset = 0;
+        for (int key = 0; key < scratch.length && k < distinct; key++) {
+            if (scratch[key] == 0) continue;
+            table.keys[k] = key;
+            table.offsets[k] = offset;
+            offset += scratch[key];
+            // scratch now holds the next free position of the key
+            scratch[key] = table.offsets[k];
+            k++;
+        }
+        table.offsets[distinct] = offset;
+
+        for (int r : members) {
+            int position = scratch[keys[r]]++;
+            table.values[position] = values[r];
+            table.groups[position] = groups[r];
+        }
+
+        // sort the values of each key by (group, value), and clear the scratch
+        for (k = 0; k < distinct; k++) {
+            scratch[table.keys[k]] = 0;
+            sortByGroup(table.values, table.groups, table.offsets[k], table.offsets[k + 1]);
+        }
+        return table;
+    }
+
+    /**
+     * (Helper function) An index made of the given tables, see update()
+     */
+    private AttributeIndex(HashMap<Long, Table> forward, HashMap<Long, Table> reverse) {
+        this.forward = forward;
+        this.reverse = reverse;
+    }
+
+    /**
+     * Returns the index updated with relationships added or removed (Delta
+     * release), given as parallel arrays; this index is not changed. Only the
+     * tables of the types touched are patched, and in them only the keys
+     * touched are sorted again. The other tables are shared with this index.
+     *
+     * @param count number of changes in the arrays
+     * @param sources index of the source concept of each relationship
+     * @param destinations index of the destination concept of each relationship
+     * @param typeIds typeId of each relationship
+     * @param groups relationshipGroup of each relationship
+     * @param added true if the relationship was added, false if removed
+     */
+    AttributeIndex update(int count, int[] sources, int[] destinations, long[] typeIds, int[] groups, boolean[] added) {
+        HashMap<Long, Table> forward = new HashMap<>(this.forward);
+        HashMap<Long, Table> reverse = new HashMap<>(this.reverse);
+        HashMap<Long, int[]> typeMembers = new HashMap<>();
+        for (int r = 0; r < count; r++) {
+            int[] members = typeMembers.get(typeIds[r]);
+            if (members == null) typeMembers.put(typeIds[r], members = new int[] {0});
+            if (members[0] + 1 == members.length) {
+                members = Arrays.copyOf(members, members.length * 2);
+                typeMembers.put(typeIds[r], members);
+            }
+            members[++members[0]] = r;
+        }
+        for (Long typeId : typeMembers.keySet()) {
+            int[] members = typeMembers.get(typeId);
+            members = Arrays.copyOfRange(members, 1, members[0] + 1);
+            forward.put(typeId, patchTable(this.forward.get(typeId), members, sources, destinations, groups, added));
+            reverse.put(typeId, patchTable(this.reverse.get(typeId), members, destinations, sources, groups, added));
+        }
+        return new AttributeIndex(forward, reverse);
+    }
+
+    /**
+     * (Helper function) Apply the changes members to a table key -> values
+     * (the table may be null). Returns the new table.
+     */
+    private static Table patchTable(Table table, int[] members, int[] keys, int[] values, int[] groups, boolean[] added) {
+        if (table == null) {
+            table = new Table();
+            table.keys = EMPTY;
+            table.offsets = new int[] {0};
+            table.values = EMPTY;
+            table.groups = EMPTY;
+        }
+
+        // the keys touched, sorted
+        int[] touched = new int[members.length];
+        for (int m = 0; m < members.length; m++) touched[m] = keys[members[m]];
+        Arrays.sort(touched);
+        int distinct = 0;
+        for (int m = 0; m < touched.length; m++) {
+            if (m == 0 || touched[m] != touched[m - 1]) touched[distinct++] = touched[m];
+        }
+        touched = Arrays.copyOf(touched, distinct);
+
+        // the new values and groups of the touched keys
+        int[][] newValues = new int[distinct][];
+        int[][] newGroups = new int[distinct][];
+        int[] sizes = new int[distinct];
+        for (int t = 0; t < distinct; t++) {
+            int k = table.find(touched[t]);
+            int from = k < 0 ? 0 : table.offsets[k], to = k < 0 ? 0 : table.offsets[k + 1];
+            newValues[t] = Arrays.copyOfRange(table.values, from, to + members.length);
+            newGroups[t] = Arrays.copyOfRange(table.groups, from, to + members.length);
+            sizes[t] = to - from;
+        }
+        for (int r : members) {
+            int t = Arrays.binarySearch(touched, keys[r]);
+            if (added[r]) {
+                newValues[t][sizes[t]] = values[r];
+                newGroups[t][sizes[t]] = groups[r];
+                sizes[t]++;
+            } else {
+                for (int i = 0; i < sizes[t]; i++) {
+                    if (newValues[t][i] == values[r] && newGroups[t][i] == groups[r]) {
+                        sizes[t]--;
+                        newValues[t][i] = newValues[t][sizes[t]];
+                        newGroups[t][i] = newGroups[t][sizes[t]];
+                        break;
+                    }
+                }
+            }
+        }
+
+        // merge the untouched keys of the table with the touched ones
+        int total = table.values.length;
+        for (int t = 0; t < distinct; t++) {
+            int k = table.find(touched[t]);
+            total += sizes[t] - (k < 0 ? 0 : table.offsets[k + 1] - table.offsets[k]);
+        }
+        Table result = new Table();
+        result.keys = new int[table.keys.length + distinct];
+        result.offsets = new int[table.keys.length + distinct + 1];
+        result.values = new int[total];
+        result.groups = new int[total];
+        int k = 0, t = 0, key = 0, offset = 0;
+        while (k < table.keys.length || t < distinct) {
+            if (t == distinct || (k < table.keys.length && table.keys[k] < touched[t])) {
+                int from = table.offsets[k], to = table.offsets[k + 1];
+                result.keys[key] = table.keys[k];
+                result.offsets[key++] = offset;
+                System.arraycopy(table.values, from, result.values, offset, to - from);
+                System.arraycopy(table.groups, from, result.groups, offset, to - from);
+                offset += to - from;
+                k++;
+            } else {
+                if (k < table.keys.length && table.keys[k] == touched[t]) k++;
+                if (sizes[t] > 0) {
+                    result.keys[key] = touched[t];
+                    result.offsets[key++] = offset;
+                    System.arraycopy(newValues[t], 0, result.values, offset, sizes[t]);
+                    System.arraycopy(newGroups[t], 0, result.groups, offset, sizes[t]);
+                    sortByGroup(result.values, result.groups, offset, offset + sizes[t]);
+                    offset += sizes[t];
+                }
+                t++;
+            }
+        }
+        result.keys = Arrays.copyOf(result.keys, key);
+        result.offsets = Arrays.copyOf(result.offsets, key + 1);
+        result.offsets[key] = offset;
+        return result;
+    }
+
+    /**
+     * (Helper function) Sort the values in [from, to) by (group, value).
+     * The pairs are packed in longs (group in the high bits, both are
+     * non-negative) and sorted with Arrays.sort: O(k log k) even for the
+     * keys with many values (ex. a popular finding site in the reverse table).
+     */
+    private static void sortByGroup(int[] values, int[] groups, int from, int to) {
+        if (to - from < 2) return;
+        long[] packed = new long[to - from];
+        for (int i = from; i < to; i++) packed[i - from] = ((long) groups[i] << 32) | values[i];
+        Arrays.sort(packed);
+        for (int i = from; i < to; i++) {
+            groups[i] = (int) (packed[i - from] >>> 32);
+            values[i] = (int) packed[i - from];
+        }
+    }
+
+    /**
+     * The typeIds of all the relationships indexed
+     */
+    public Set<Long> getTypeIds() {
+        return Collections.unmodifiableSet(this.forward.keySet());
+    }
+
+    /**
+     * Iterate over the destinations of the relationships of type typeId
+     * going out of the concept source, group by group.
+     */
+    public Cursor targets(long typeId, int source) {
+        return cursor(this.forward.get(typeId), source);
+    }
+
+    /**
+     * Iterate over the sources of the relationships of type typeId
+     * pointing to the concept destination, group by group.
+     */
+    public Cursor sources(long typeId, int destination) {
+        return cursor(this.reverse.get(typeId), destination);
+    }
+
+    private static Cursor cursor(Table table, int key) {
+        if (table == null) return EMPTY_CURSOR;
+        int k = table.find(key);
+        if (k < 0) return EMPTY_CURSOR;
+        return new Cursor(table.values, table.groups, table.offsets[k], table.offsets[k + 1]);
+    }
+
+    /**
+     * Destinations of the relationships of type typeId going out of source
+     * (ex. the finding sites of a disorder)
+     */
+    public int[] getTargets(long typeId, int source) {
+        return values(this.forward.get(typeId), source);
+    }
+
+    /**
+     * Sources of the relationships of type typeId pointing to destination
+     * (ex. all the concepts with finding site = heart)
+     */
+    public int[] getSources(long typeId, int destination) {
+        return values(this.reverse.get(typeId), destination);
+    }
+
+    private static int[] values(Table table, int key) {
+        if (table == null) return EMPTY;
+        int k = table.find(key);
+        if (k < 0) return EMPTY;
+        return Arrays.copyOfRange(table.values, table.offsets[k], table.offsets[k + 1]);
+    }
+
+    /**
+     * All the concepts having at least one relationship of type typeId
+     * (sorted, do not modify the returned array)
+     */
+    public int[] getSourcesOfType(long typeId) {
+        Table table = this.forward.get(typeId);
+        return table == null ? EMPTY : table.keys;
+    }
+
+    /**
+     * All the concepts being the value of at least one relationship of type typeId
+     * (sorted, do not modify the returned array)
+     */
+    public int[] getTargetsOfType(long typeId) {
+        Table table = this.reverse.get(typeId);
+        return table == null ? EMPTY : table.keys;
+    }
+
+    /**
+     * Is there a relationship source -[typeId]-> destination?
+     */
+    public boolean hasAttribute(int source, long typeId, int destination) {
+        Table table = this.forward.get(typeId);
+        if (table == null) return false;
+        int k = table.find(source);
+        if (k < 0) return false;
+        for (int i = table.offsets[k]; i < table.offsets[k + 1]; i++) {
+            if (table.values[i] == destination) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Number of relationships of type typeId
+     */
+    public int count(long typeId) {
+        Table table = this.forward.get(typeId);
+        return table == null ? 0 : table.values.length;
+    }
+}
@@ -0,0 +1,197 @@
+package snomed;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ *
+ * Renumbering of the concepts of SNOMED-CT to improve the memory locality.
+ *
+ * By default the concepts get their index (0..N-1) in the order of the rows
+ * of the concepts file, which has nothing to do with the structure of the
+ * graph: walking the IS-A hierarchy jumps all over the memory. Loading the
+ * concepts in one of the following orders keeps the related concepts close:
+ *     - BFS: breadth first from the roots, following the IS-A children
+ *     - DFS: depth first (pre-order) from the roots, so that a concept and
+ *            its descendants are mostly contiguous
+ *     - RCM: reverse Cuthill-McKee over all the relationships (undirected),
+ *            minimizing the distance between the indexes of related concepts
+ *
+ * The graph is given as compact adjacency arrays (neighbors of i are in
+ * targets[offsets[i] .. offsets[i+1]-1]) and the result is a permutation:
+ * newIndex = permutation[oldIndex]. The concepts not reached by the traversal
+ * keep their relative order at the end.
+ */
+class ConceptOrdering {
+
+    private ConceptOrdering() {
+    }
+
+    /**
+     * Order of the concepts from the roots of the IS-A hierarchy (the
+     * concepts without parents), following the children.
+     *
+     * @param n number of concepts
+     * @param offsets children of i are in children[offsets[i] .. offsets[i+1]-1]
+     * @param children indexes of the IS-A children
+     * @param isRoot isRoot[i] if the concept i has no IS-A parent
+     * @param depthFirst DFS (pre-order) if true, BFS if false
+     * @return permutation[oldIndex] = newIndex
+     */
+    static int[] hierarchical(int n, int[] offsets, int[] children, boolean[] isRoot, boolean depthFirst) {
+        int[] permutation = new int[n];
+        Arrays.fill(permutation, -1);
+        int next = 0;
+
+        // BFS: queue; DFS: stack of (concept, position of its next child)
+        int[] pending = new int[n];
+        int[] position = depthFirst ? new int[n] : null;
+        for (int root = 0; root < n; root++) {
+            if (!isRoot[root] || permutation[root] >= 0) continue;
+            permutation[root] = next++;
+            if (depthFirst) {
+                int top = 0;
+                pending[0] = root;
+                position[0] = offsets[root];
+                while (top >= 0) {
+                    int i = pending[top];
+                    if (position[top] == offsets[i + 1]) {
+                        top--;
+                        continue;
+                    }
+                    int c = children[position[top]++];
+                    if (permutation[c] >= 0) continue;
+                    permutation[c] = next++;
+                    top++;
+                    pending[top] = c;
+                    position[top] = offsets[c];
+                }
+            } else {
+                int head = 0, tail = 0;
+                pending[tail++] = root;
+                while (head < tail) {
+                    int i = pending[head++];
+                    for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                        int c = children[k];
+                        if (permutation[c] >= 0) continue;
+                        permutation[c] = next++;
+                        pending[tail++] = c;
+                    }
+                }
+            }
+        }
+        return complete(permutation, next);
+    }
+
+    /**
+     * Reverse Cuthill-McKee order of an undirected graph.
+     * Each connected component is traversed breadth first from one of its
+     * concepts of minimum degree, visiting the neighbors by increasing degree,
+     * then the whole order is reversed.
+     *
+     * @param n number of concepts
+     * @param offsets neighbors of i are in neighbors[offsets[i] .. offsets[i+1]-1]
+     * @param neighbors indexes of the neighbors (both directions)
+     * @return permutation[oldIndex] = newIndex
+     */
+    static int[] reverseCuthillMcKee(int n, int[] offsets, int[] neighbors) {
+        // the concepts sorted by degree, to pick the start of each component
+        int maxDegree = 0;
+        for (int i = 0; i < n; i++) maxDegree = Math.max(maxDegree, offsets[i + 1] - offsets[i]);
+        int[] byDegree = sortByDegree(n, offsets, maxDegree);
+
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        int tail = 0;
+        // unvisited neighbors of a concept, and their keys (degree, position) to sort them
+        int[] scratch = new int[Math.max(1, maxDegree)];
+        long[] keys = new long[Math.max(1, maxDegree)];
+        for (int s : byDegree) {
+            if (visited[s]) continue;
+            visited[s] = true;
+            int head = tail;
+            order[tail++] = s;
+            while (head < tail) {
+                int i = order[head++];
+                int count = 0;
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    int c = neighbors[k];
+                    if (visited[c]) continue;
+                    visited[c] = true;
+                    keys[count] = ((long) (offsets[c + 1] - offsets[c]) << 32) | count;
+                    scratch[count++] = c;
+                }
+                // by increasing degree, in the order of the neighbors for a same degree
+                // (O(d log d) for the hubs with thousands of children)
+                Arrays.sort(keys, 0, count);
+                for (int k = 0; k < count; k++) order[tail++] = scratch[(int) keys[k]];
+            }
+        }
+
+        int[] permutation = new int[n];
+        for (int k = 0; k < n; k++) permutation[order[k]] = n - 1 - k;
+        return permutation;
+    }
+
+    /**
+     * (Helper function) The concepts sorted by degree (counting sort, stable)
+     */
+    private static int[] sortByDegree(int n, int[] offsets, int maxDegree) {
+        int[] start = new int[maxDegree + 2];
+        for (int i = 0; i < n; i++) start[offsets[i + 1] - offsets[i] + 1]++;
+        for (int d = 1; d < start.length; d++) start[d] += start[d - 1];
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++) sorted[start[offsets[i + 1] - offsets[i]]++] = i;
+        return sorted;
+    }
+
+    /**
+     * (Helper function) Give the next indexes to the concepts not reached (-1),
+     * in their original order
+     */
+    private static int[] complete(int[] permutation, int next) {
+        for (int i = 0; i < permutation.length; i++) {
+            if (permutation[i] < 0) permutation[i] = next++;
+        }
+        return permutation;
+    }
+
+    /**
+     * Compare the traversal and closure building speed of the different orders
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        for (SNOMED.ConceptOrder order : SNOMED.ConceptOrder.values()) {
+            long start = System.nanoTime();
+            SNOMED snomed = new SNOMED("res/snomed/sct2_Concept_Snapshot_INT_20150731.txt",
+                    "res/snomed/sct2_Relationship_Snapshot_INT_20150731.txt",
+                    "res/snomed/sct2_Description_Snapshot-en_INT_20150731.txt", order);
+            long load = System.nanoTime() - start;
+
+            // closure building: parents, ancestors and descendants of all the concepts
+            start = System.nanoTime();
+            HierarchyIndex hierarchy = new HierarchyIndex(snomed);
+            long closure = System.nanoTime() - start;
+
+            // traversal: all the IS-A edges, 10 times
+            long checksum = 0;
+            start = System.nanoTime();
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < snomed.C(); i++) {
+                    for (int p : snomed.isAParents(i)) checksum += p;
+                }
+            }
+            long traversal = System.nanoTime() - start;
+
+            // descendants of the root (set-at-a-time traversal)
+            start = System.nanoTime();
+            int count = snomed.getDescendants(138875005L).cardinality();
+            long descendants = System.nanoTime() - start;
+
+            System.out.printf("%-4s load %6d ms | closure %5d ms | traversal %5d ms | descendants (%d) %4d ms [%d, %d]%n",
+                    order, load / 1000000, closure / 1000000, traversal / 1000000,
+                    count, descendants / 1000000, hierarchy.size(), checksum);
+        }
+    }
+}
@@ -0,0 +1,712 @@
+package snomed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ *
+ * A compressed set of concepts, referred to by their sequential index
+ * (0..N-1), in the manner of the Roaring bitmaps.
+ *
+ * The indexes are split in chunks of 65536 values (the 16 high bits of the
+ * index). Each chunk present in the set is stored in a container:
+ *     - an array container: the sorted 16 low bits of the indexes,
+ *       used when the chunk has at most 4096 concepts
+ *     - a bitmap container: 65536 bits, used when the chunk has more
+ *
+ * So a set never takes more than 2 bytes per concept, or 8 KB per chunk,
+ * and the set operations (and, or, andNot) work chunk by chunk on arrays
+ * or on 64 bits words.
+ *
+ * The operations and(), or() and andNot() return new sets; add() and
+ * remove() modify the set.
+ */
+public class ConceptSet {
+
+    // an array container is converted to a bitmap container above this size
+    private static final int ARRAY_MAX_SIZE = 4096;
+
+    private static final int BITMAP_WORDS = 1024; // 65536 bits
+
+    private static final byte ARRAY_CONTAINER = 0;
+    private static final byte BITMAP_CONTAINER = 1;
+
+    /**
+     * Sorted 16 low bits of the indexes of a chunk
+     */
+    private static final class ArrayContainer {
+        private char[] values;
+        private int size;
+
+        ArrayContainer(int capacity) {
+            this.values = new char[Math.max(4, capacity)];
+        }
+    }
+
+    /**
+     * 65536 bits of a chunk
+     */
+    private static final class BitmapContainer {
+        private final long[] words = new long[BITMAP_WORDS];
+        private int cardinality;
+    }
+
+    // sorted high 16 bits of the chunks present in the set
+    private char[] keys;
+
+    // containers[i] is the ArrayContainer or BitmapContainer of keys[i]
+    private Object[] containers;
+
+    // number of chunks
+    private int size;
+
+    /**
+     * Create an empty set
+     */
+    public ConceptSet() {
+        this.keys = new char[4];
+        this.containers = new Object[4];
+        this.size = 0;
+    }
+
+    /**
+     * Create a set containing the given concept indexes
+     */
+    public static ConceptSet of(int... indexes) {
+        ConceptSet result = new ConceptSet();
+        for (int index : indexes) result.add(index);
+        return result;
+    }
+
+    /**
+     * Create a set from the first count concept indexes of an ascending array
+     * (duplicates are allowed). This is much faster than adding them one by one.
+     *
+     * @throws IllegalArgumentException if an index is negative
+     */
+    public static ConceptSet fromSorted(int[] indexes, int count) {
+        ConceptSet result = new ConceptSet();
+        int i = 0;
+        while (i < count) {
+            // the indexes of a container have the same high bits, so the same sign
+            if (indexes[i] < 0) throw new IllegalArgumentException("Negative index: " + indexes[i]);
+            int key = indexes[i] >>> 16;
+            int end = i;
+            while (end < count && (indexes[end] >>> 16) == key) end++;
+            if (end - i > ARRAY_MAX_SIZE) {
+                BitmapContainer bitmap = new BitmapContainer();
+                for (int j = i; j < end; j++) {
+                    char low = (char) indexes[j];
+                    long bit = 1L << low;
+                    if ((bitmap.words[low >>> 6] & bit) == 0) {
+                        bitmap.words[low >>> 6] |= bit;
+                        bitmap.cardinality++;
+                    }
+                }
+                result.append((char) key, bitmap.cardinality <= ARRAY_MAX_SIZE ? toArray(bitmap) : bitmap);
+            } else {
+                ArrayContainer array = new ArrayContainer(end - i);
+                for (int j = i; j < end; j++) {
+                    char low = (char) indexes[j];
+                    if (array.size == 0 || array.values[array.size - 1] != low) array.values[array.size++] = low;
+                }
+                result.append((char) key, array);
+            }
+            i = end;
+        }
+        return result;
+    }
+
+    /**
+     * Create a set containing all the concept indexes in [from, to)
+     */
+    public static ConceptSet range(int from, int to) {
+        ConceptSet result = new ConceptSet();
+        for (int index = from; index < to; ) {
+            int key = index >>> 16;
+            int end = Math.min(to, (key + 1) << 16);
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int low = index & 0xFFFF; low < ((end - 1) & 0xFFFF) + 1; low++) {
+                bitmap.words[low >>> 6] |= 1L << low;
+            }
+            bitmap.cardinality = end - index;
+            result.append((char) key, bitmap.cardinality <= ARRAY_MAX_SIZE ? toArray(bitmap) : bitmap);
+            index = end;
+        }
+        return result;
+    }
+
+    /* ====================
+     * Element operations
+     * ==================== */
+
+    /**
+     * Add a concept index to the set
+     * @return true if the index was not in the set
+     */
+    public boolean add(int index) {
+        if (index < 0) throw new IllegalArgumentException("Negative index: " + index);
+        char key = (char) (index >>> 16);
+        char low = (char) index;
+        int k = this.findKey(key);
+        if (k < 0) {
+            ArrayContainer array = new ArrayContainer(4);
+            array.values[0] = low;
+            array.size = 1;
+            this.insertKey(-k - 1, key, array);
+            return true;
+        }
+        Object container = this.containers[k];
+        if (container instanceof BitmapContainer) {
+            BitmapContainer bitmap = (BitmapContainer) container;
+            long bit = 1L << low;
+            if ((bitmap.words[low >>> 6] & bit) != 0) return false;
+            bitmap.words[low >>> 6] |= bit;
+            bitmap.cardinality++;
+            return true;
+        }
+        ArrayContainer array = (ArrayContainer) container;
+        int position = Arrays.binarySearch(array.values, 0, array.size, low);
+        if (position >= 0) return false;
+        position = -position - 1;
+        if (array.size == ARRAY_MAX_SIZE) {
+            BitmapContainer bitmap = toBitmap(array);
+            bitmap.words[low >>> 6] |= 1L << low;
+            bitmap.cardinality++;
+            this.containers[k] = bitmap;
+            return true;
+        }
+        if (array.size == array.values.length) {
+            array.values = Arrays.copyOf(array.values, Math.min(ARRAY_MAX_SIZE, array.size * 2));
+        }
+        System.arraycopy(array.values, position, array.values, position + 1, array.size - position);
+        array.values[position] = low;
+        array.size++;
+        return true;
+    }
+
+    /**
+     * Remove a concept index from the set
+     * @return true if the index was in the set
+     */
+    public boolean remove(int index) {
+        if (index < 0) return false;
+        int k = this.findKey((char) (index >>> 16));
+        if (k < 0) return false;
+        char low = (char) index;
+        Object container = this.containers[k];
+        if (container instanceof BitmapContainer) {
+            BitmapContainer bitmap = (BitmapContainer) container;
+            long bit = 1L << low;
+            if ((bitmap.words[low >>> 6] & bit) == 0) return false;
+            bitmap.words[low >>> 6] &= ~bit;
+            bitmap.cardinality--;
+            if (bitmap.cardinality <= ARRAY_MAX_SIZE) this.containers[k] = toArray(bitmap);
+            return true;
+        }
+        ArrayContainer array = (ArrayContainer) container;
+        int position = Arrays.binarySearch(array.values, 0, array.size, low);
+        if (position < 0) return false;
+        System.arraycopy(array.values, position + 1, array.values, position, array.size - position - 1);
+        array.size--;
+        if (array.size == 0) this.removeKey(k);
+        return true;
+    }
+
+    /**
+     * Is the concept index in the set?
+     */
+    public boolean contains(int index) {
+        if (index < 0) return false;
+        int k = this.findKey((char) (index >>> 16));
+        if (k < 0) return false;
+        char low = (char) index;
+        Object container = this.containers[k];
+        if (container instanceof BitmapContainer) {
+            return (((BitmapContainer) container).words[low >>> 6] & (1L << low)) != 0;
+        }
+        ArrayContainer array = (ArrayContainer) container;
+        return Arrays.binarySearch(array.values, 0, array.size, low) >= 0;
+    }
+
+    /**
+     * Number of concepts in the set
+     */
+    public int cardinality() {
+        int result = 0;
+        for (int k = 0; k < this.size; k++) result += cardinality(this.containers[k]);
+        return result;
+    }
+
+    /**
+     * Is the set empty?
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the first concept index of the set greater than or equal to from,
+     * or -1 if there is none. To iterate over the set:
+     *
+     *     for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) { ... }
+     */
+    public int nextSetBit(int from) {
+        if (from < 0) from = 0;
+        char key = (char) (from >>> 16);
+        int k = this.findKey(key);
+        int low = from & 0xFFFF;
+        if (k < 0) {
+            k = -k - 1;
+            low = 0;
+        }
+        for (; k < this.size; k++) {
+            int start = this.keys[k] == key ? low : 0;
+            int next = nextSetBit(this.containers[k], start);
+            if (next >= 0) return (this.keys[k] << 16) | next;
+        }
+        return -1;
+    }
+
+    /**
+     * The concept indexes of the set in ascending order
+     */
+    public int[] toArray() {
+        int[] result = new int[this.cardinality()];
+        int n = 0;
+        for (int k = 0; k < this.size; k++) {
+            int high = this.keys[k] << 16;
+            Object container = this.containers[k];
+            if (container instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) container;
+                for (int i = 0; i < array.size; i++) result[n++] = high | array.values[i];
+            } else {
+                long[] words = ((BitmapContainer) container).words;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        result[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /* ================
+     * Set operations
+     * ================ */
+
+    /**
+     * Intersection of this set and other
+     */
+    public ConceptSet and(ConceptSet other) {
+        ConceptSet result = new ConceptSet();
+        int i = 0, j = 0;
+        while (i < this.size && j < other.size) {
+            if (this.keys[i] < other.keys[j]) {
+                i++;
+            } else if (this.keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object c = and(this.containers[i], other.containers[j]);
+                if (c != null) result.append(this.keys[i], c);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Union of this set and other
+     */
+    public ConceptSet or(ConceptSet other) {
+        ConceptSet result = new ConceptSet();
+        int i = 0, j = 0;
+        while (i < this.size || j < other.size) {
+            if (j == other.size || (i < this.size && this.keys[i] < other.keys[j])) {
+                result.append(this.keys[i], copy(this.containers[i]));
+                i++;
+            } else if (i == this.size || this.keys[i] > other.keys[j]) {
+                result.append(other.keys[j], copy(other.containers[j]));
+                j++;
+            } else {
+                result.append(this.keys[i], or(this.containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The concepts of this set that are not in other
+     */
+    public ConceptSet andNot(ConceptSet other) {
+        ConceptSet result = new ConceptSet();
+        int i = 0, j = 0;
+        while (i < this.size) {
+            if (j == other.size || this.keys[i] < other.keys[j]) {
+                result.append(this.keys[i], copy(this.containers[i]));
+                i++;
+            } else if (this.keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object c = andNot(this.containers[i], other.containers[j]);
+                if (c != null) result.append(this.keys[i], c);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Do this set and other have at least one concept in common?
+     */
+    public boolean intersects(ConceptSet other) {
+        int i = 0, j = 0;
+        while (i < this.size && j < other.size) {
+            if (this.keys[i] < other.keys[j]) {
+                i++;
+            } else if (this.keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                if (and(this.containers[i], other.containers[j]) != null) return true;
+                i++;
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A copy of this set
+     */
+    public ConceptSet copy() {
+        ConceptSet result = new ConceptSet();
+        for (int k = 0; k < this.size; k++) result.append(this.keys[k], copy(this.containers[k]));
+        return result;
+    }
+
+    /* ===============
+     * Serialization
+     * =============== */
+
+    /**
+     * Write the set in a compact binary form
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(this.size);
+        for (int k = 0; k < this.size; k++) {
+            out.writeChar(this.keys[k]);
+            Object container = this.containers[k];
+            if (container instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) container;
+                out.writeByte(ARRAY_CONTAINER);
+                out.writeShort(array.size - 1);
+                for (int i = 0; i < array.size; i++) out.writeChar(array.values[i]);
+            } else {
+                BitmapContainer bitmap = (BitmapContainer) container;
+                out.writeByte(BITMAP_CONTAINER);
+                out.writeShort(bitmap.cardinality - 1);
+                for (long word : bitmap.words) out.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * Read a set written by writeTo()
+     */
+    public static ConceptSet readFrom(DataInput in) throws IOException {
+        ConceptSet result = new ConceptSet();
+        int size = in.readInt();
+        for (int k = 0; k < size; k++) {
+            char key = in.readChar();
+            byte type = in.readByte();
+            int cardinality = in.readUnsignedShort() + 1;
+            if (type == ARRAY_CONTAINER) {
+                ArrayContainer array = new ArrayContainer(cardinality);
+                for (int i = 0; i < cardinality; i++) array.values[i] = in.readChar();
+                array.size = cardinality;
+                result.append(key, array);
+            } else if (type == BITMAP_CONTAINER) {
+                BitmapContainer bitmap = new BitmapContainer();
+                for (int w = 0; w < BITMAP_WORDS; w++) bitmap.words[w] = in.readLong();
+                bitmap.cardinality = cardinality;
+                result.append(key, bitmap);
+            } else {
+                throw new IOException("Unkown container type: " + type);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ConceptSet)) return false;
+        ConceptSet other = (ConceptSet) obj;
+        if (this.size != other.size) return false;
+        for (int k = 0; k < this.size; k++) {
+            if (this.keys[k] != other.keys[k]) return false;
+            if (cardinality(this.containers[k]) != cardinality(other.containers[k])) return false;
+            if (cardinality(and(this.containers[k], other.containers[k])) != cardinality(this.containers[k])) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = this.nextSetBit(0); i >= 0; i = this.nextSetBit(i + 1)) hash = 31 * hash + i;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int i = this.nextSetBit(0); i >= 0; i = this.nextSetBit(i + 1)) {
+            if (result.length() > 1) result.append(", ");
+            result.append(i);
+        }
+        return result.append("}").toString();
+    }
+
+    /* ==================================
+     * (Helper functions) Chunks (keys)
+     * ================================== */
+
+    private int findKey(char key) {
+        // the last chunk is the most likely when the set is built in order
+        if (this.size > 0 && this.keys[this.size - 1] == key) return this.size - 1;
+        return Arrays.binarySearch(this.keys, 0, this.size, key);
+    }
+
+    private void insertKey(int position, char key, Object container) {
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            this.containers = Arrays.copyOf(this.containers, this.size * 2);
+        }
+        System.arraycopy(this.keys, position, this.keys, position + 1, this.size - position);
+        System.arraycopy(this.containers, position, this.containers, position + 1, this.size - position);
+        this.keys[position] = key;
+        this.containers[position] = container;
+        this.size++;
+    }
+
+    private void removeKey(int position) {
+        System.arraycopy(this.keys, position + 1, this.keys, position, this.size - position - 1);
+        System.arraycopy(this.containers, position + 1, this.containers, position, this.size - position - 1);
+        this.size--;
+        this.containers[this.size] = null;
+    }
+
+    // add a chunk after the last one (keys must be added in ascending order)
+    private void append(char key, Object container) {
+        this.insertKey(this.size, key, container);
+    }
+
+    /* ==========================================
+     * (Helper functions) Operations on chunks
+     * ========================================== */
+
+    private static int cardinality(Object container) {
+        if (container == null) return 0;
+        if (container instanceof ArrayContainer) return ((ArrayContainer) container).size;
+        return ((BitmapContainer) container).cardinality;
+    }
+
+    private static BitmapContainer toBitmap(ArrayContainer array) {
+        BitmapContainer bitmap = new BitmapContainer();
+        for (int i = 0; i < array.size; i++) {
+            char low = array.values[i];
+            bitmap.words[low >>> 6] |= 1L << low;
+        }
+        bitmap.cardinality = array.size;
+        return bitmap;
+    }
+
+    private static ArrayContainer toArray(BitmapContainer bitmap) {
+        ArrayContainer array = new ArrayContainer(bitmap.cardinality);
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = bitmap.words[w];
+            while (word != 0) {
+                array.values[array.size++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    // a bitmap container is kept only above ARRAY_MAX_SIZE, and a chunk only if not empty
+    private static Object normalize(BitmapContainer bitmap) {
+        if (bitmap.cardinality == 0) return null;
+        if (bitmap.cardinality <= ARRAY_MAX_SIZE) return toArray(bitmap);
+        return bitmap;
+    }
+
+    private static Object copy(Object container) {
+        if (container instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer) container;
+            ArrayContainer result = new ArrayContainer(array.size);
+            System.arraycopy(array.values, 0, result.values, 0, array.size);
+            result.size = array.size;
+            return result;
+        }
+        BitmapContainer bitmap = (BitmapContainer) container;
+        BitmapContainer result = new BitmapContainer();
+        System.arraycopy(bitmap.words, 0, result.words, 0, BITMAP_WORDS);
+        result.cardinality = bitmap.cardinality;
+        return result;
+    }
+
+    private static int nextSetBit(Object container, int from) {
+        if (container instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer) container;
+            int position = Arrays.binarySearch(array.values, 0, array.size, (char) from);
+            if (position < 0) position = -position - 1;
+            return position < array.size ? array.values[position] : -1;
+        }
+        long[] words = ((BitmapContainer) container).words;
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) | Long.numberOfTrailingZeros(word);
+            if (++w == BITMAP_WORDS) return -1;
+            word = words[w];
+        }
+    }
+
+    // returns null when the intersection is empty
+    private static Object and(Object a, Object b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+            ArrayContainer result = new ArrayContainer(Math.min(x.size, y.size));
+            int i = 0, j = 0;
+            while (i < x.size && j < y.size) {
+                if (x.values[i] < y.values[j]) i++;
+                else if (x.values[i] > y.values[j]) j++;
+                else {
+                    result.values[result.size++] = x.values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return result.size == 0 ? null : result;
+        }
+        if (a instanceof BitmapContainer && b instanceof BitmapContainer) {
+            long[] x = ((BitmapContainer) a).words, y = ((BitmapContainer) b).words;
+            BitmapContainer result = new BitmapContainer();
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result.words[w] = x[w] & y[w];
+                result.cardinality += Long.bitCount(result.words[w]);
+            }
+            return normalize(result);
+        }
+        // one array and one bitmap
+        ArrayContainer array = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+        long[] words = ((BitmapContainer) (a instanceof BitmapContainer ? a : b)).words;
+        ArrayContainer result = new ArrayContainer(array.size);
+        for (int i = 0; i < array.size; i++) {
+            char low = array.values[i];
+            if ((words[low >>> 6] & (1L << low)) != 0) result.values[result.size++] = low;
+        }
+        return result.size == 0 ? null : result;
+    }
+
+    private static Object or(Object a, Object b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+            if (x.size + y.size > ARRAY_MAX_SIZE) {
+                BitmapContainer result = toBitmap(x);
+                for (int i = 0; i < y.size; i++) {
+                    char low = y.values[i];
+                    long bit = 1L << low;
+                    if ((result.words[low >>> 6] & bit) == 0) {
+                        result.words[low >>> 6] |= bit;
+                        result.cardinality++;
+                    }
+                }
+                return normalize(result);
+            }
+            ArrayContainer result = new ArrayContainer(x.size + y.size);
+            int i = 0, j = 0;
+            while (i < x.size || j < y.size) {
+                char v;
+                if (j == y.size || (i < x.size && x.values[i] < y.values[j])) v = x.values[i++];
+                else if (i == x.size || x.values[i] > y.values[j]) v = y.values[j++];
+                else {
+                    v = x.values[i++];
+                    j++;
+                }
+                result.values[result.size++] = v;
+            }
+            return result;
+        }
+        BitmapContainer result = (BitmapContainer) copy(a instanceof BitmapContainer ? a : b);
+        Object other = a instanceof BitmapContainer ? b : a;
+        if (other instanceof BitmapContainer) {
+            long[] y = ((BitmapContainer) other).words;
+            result.cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result.words[w] |= y[w];
+                result.cardinality += Long.bitCount(result.words[w]);
+            }
+        } else {
+            ArrayContainer y = (ArrayContainer) other;
+            for (int i = 0; i < y.size; i++) {
+                char low = y.values[i];
+                long bit = 1L << low;
+                if ((result.words[low >>> 6] & bit) == 0) {
+                    result.words[low >>> 6] |= bit;
+                    result.cardinality++;
+                }
+            }
+        }
+        return result;
+    }
+
+    // returns null when the difference is empty
+    private static Object andNot(Object a, Object b) {
+        if (a instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a;
+            ArrayContainer result = new ArrayContainer(x.size);
+            for (int i = 0; i < x.size; i++) {
+                char low = x.values[i];
+                boolean inB;
+                if (b instanceof BitmapContainer) {
+                    inB = (((BitmapContainer) b).words[low >>> 6] & (1L << low)) != 0;
+                } else {
+                    ArrayContainer y = (ArrayContainer) b;
+                    inB = Arrays.binarySearch(y.values, 0, y.size, low) >= 0;
+                }
+                if (!inB) result.values[result.size++] = low;
+            }
+            return result.size == 0 ? null : result;
+        }
+        BitmapContainer result = (BitmapContainer) copy(a);
+        if (b instanceof BitmapContainer) {
+            long[] y = ((BitmapContainer) b).words;
+            result.cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result.words[w] &= ~y[w];
+                result.cardinality += Long.bitCount(result.words[w]);
+            }
+        } else {
+            ArrayContainer y = (ArrayContainer) b;
+            for (int i = 0; i < y.size; i++) {
+                char low = y.values[i];
+                long bit = 1L << low;
+                if ((result.words[low >>> 6] & bit) != 0) {
+                    result.words[low >>> 6] &= ~bit;
+                    result.cardinality--;
+                }
+            }
+        }
+        return normalize(result);
+    }
+}
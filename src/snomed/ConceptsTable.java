@@ -1,11 +1,8 @@
 package snomed;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.StringTokenizer;
 
 /**
  * 
@@ -19,20 +16,28 @@ import java.util.StringTokenizer;
 class Concept {
     
     private long conceptId;
-    private String effectiveTime; // yyyymmdd
+    private int effectiveTime; // yyyymmdd
     private boolean active; // 1 : true, 0 : false
     private long moduleId;
     private long definitionStatusId;
     
     public Concept(String conceptId, String effectiveTime, String active, String moduleId, String definitionStatusId) {
         this.conceptId = Long.parseLong(conceptId);
-        this.effectiveTime = effectiveTime;
-        if (active =="1") this.active = true;
+        this.effectiveTime = Integer.parseInt(effectiveTime);
+        if (active.equals("1")) this.active = true;
         else this.active = false;
         this.moduleId = Long.parseLong(moduleId);
         this.definitionStatusId = Long.parseLong(definitionStatusId);
     }
     
+    Concept(long conceptId, int effectiveTime, boolean active, long moduleId, long definitionStatusId) {
+        this.conceptId = conceptId;
+        this.effectiveTime = effectiveTime;
+        this.active = active;
+        this.moduleId = moduleId;
+        this.definitionStatusId = definitionStatusId;
+    }
+    
     public boolean isActive(){
         return this.active;
     }
@@ -42,7 +47,7 @@ class Concept {
     }
     
     public String getEffectiveTime() {
-        return effectiveTime;
+        return Integer.toString(effectiveTime);
     }
     
     public long getModuleId() {
@@ -76,6 +81,22 @@ public class ConceptsTable implements Iterable<Concept> {
 
     
     public ConceptsTable(String conceptFile) throws IOException {
+        this(conceptFile, true);
+    }
+
+    /**
+     * Load the rows of the file, all of them (active or not) when activeOnly is
+     * false, as needed to apply a Delta release.
+     */
+    public ConceptsTable(String conceptFile, boolean activeOnly) throws IOException {
+        this(conceptFile, activeOnly, null);
+    }
+
+    /**
+     * Load the rows of the file accepted by the options (module, semantic tag),
+     * the other rows are skipped before being built
+     */
+    public ConceptsTable(String conceptFile, boolean activeOnly, LoadOptions options) throws IOException {
         /* ====================
          * Loading the concepts
          * ====================
@@ -86,33 +107,29 @@ public class ConceptsTable implements Iterable<Concept> {
          * definitionStatusId ["Primitive Type":900000000000074008 or "Fully Specified":900000000000073002]
          */
 
-        BufferedReader bufferedReader = null;
-        StringTokenizer st = null;
-        
         // Stores the concepts: id --> concept
         this.concepts = new HashMap<Integer, Concept>();
         
         // File reader
-        bufferedReader = new BufferedReader(new FileReader(conceptFile));
-        
-        // Get the fields
-        st = new StringTokenizer(bufferedReader.readLine());
+        Rf2Scanner scanner = new Rf2Scanner(conceptFile);
         System.out.println("Loading concepts : ");
         
         // Print the fields
-        while (st.hasMoreTokens()) System.out.println("\t" + st.nextToken());
+        for (String field : scanner.header()) System.out.println("\t" + field);
         
         int counter = 0;
         // Load the concepts.
-        do {
-            String line = bufferedReader.readLine();
-            if (line == null) break;
-            String[] s = line.split("\t");
-            if (s[2].equals("0")) continue; // Load only where active = 1
-            Concept concept = new Concept(s[0],s[1],s[2],s[3],s[4]);
+        while (scanner.nextRow()) {
+            long conceptId = scanner.nextLong();
+            int effectiveTime = (int) scanner.nextLong();
+            boolean active = scanner.nextLong() == 1;
+            if (activeOnly && !active) continue; // Load only where active = 1
+            long moduleId = scanner.nextLong();
+            if (options != null && !(options.acceptsModule(moduleId) && options.acceptsConcept(conceptId))) continue;
+            Concept concept = new Concept(conceptId, effectiveTime, active, moduleId, scanner.nextLong());
             concepts.put(counter++, concept);
-        } while(true);
-        bufferedReader.close();
+        }
+        scanner.close();
         System.out.println("Loading concepts done! ");
     }
     
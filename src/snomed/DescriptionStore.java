@@ -0,0 +1,287 @@
+package snomed;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ *
+ * The names (descriptions) of the SNOMED-CT concepts stored in a memory-mapped
+ * file, instead of Java Strings on the heap.
+ *
+ * The terms are decoded on demand, so the heap only holds the terms in use,
+ * and several processes opening the same file share one copy of the terms
+ * through the page cache.
+ *
+ * File format (big-endian):
+ *
+ *     header:      magic "SNDS", version, K (number of concepts having names),
+ *                  length of the metadata
+ *     metadata:    UTF-8 text, the options of the loading (see LoadOptions)
+ *     concepts:    long[K]     sorted conceptIds
+ *     offsets:     int[K+1]    start of the terms of each concept in the records
+ *     records:     for each concept: varint number of terms, then for each term:
+ *                  byte kind (FSN or synonym), varint length + UTF-8 term,
+ *                  varint length + UTF-8 normalized term (lower case)
+ *
+ * All the reads are absolute, so a store can be shared between threads.
+ */
+public class DescriptionStore {
+
+    private static final int MAGIC = 0x534E4453; // "SNDS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte FSN = 0;
+    private static final byte SYNONYM = 1;
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final String metadata;
+    private final int conceptsStart;
+    private final int offsetsStart;
+    private final int recordsStart;
+
+    /**
+     * Iterate over the terms of a concept, the FSN first
+     */
+    public class Cursor {
+        private int remaining;
+        private int position;
+        private boolean fsn;
+        private int termStart, termLength;
+        private int normalizedStart, normalizedLength;
+
+        private Cursor(int position, int count) {
+            this.position = position;
+            this.remaining = count;
+        }
+
+        /**
+         * Move to the next term
+         * @return false when there are no more terms
+         */
+        public boolean next() {
+            if (this.remaining == 0) return false;
+            this.remaining--;
+            this.fsn = DescriptionStore.this.buffer.get(this.position++) == FSN;
+            this.termLength = this.readVarint();
+            this.termStart = this.position;
+            this.position += this.termLength;
+            this.normalizedLength = this.readVarint();
+            this.normalizedStart = this.position;
+            this.position += this.normalizedLength;
+            return true;
+        }
+
+        private int readVarint() {
+            int value = Varint.read(DescriptionStore.this.buffer, this.position);
+            this.position += Varint.size(value);
+            return value;
+        }
+
+        /**
+         * Is the current term the Fully Specified Name?
+         */
+        public boolean isFSN() {
+            return this.fsn;
+        }
+
+        /**
+         * The current term, as written in the descriptions file
+         */
+        public String term() {
+            return DescriptionStore.this.decode(this.termStart, this.termLength);
+        }
+
+        /**
+         * The current term in lower case
+         */
+        public String normalized() {
+            return DescriptionStore.this.decode(this.normalizedStart, this.normalizedLength);
+        }
+    }
+
+    private DescriptionStore(MappedByteBuffer buffer, String path) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a descriptions file: " + path);
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported descriptions file version " + buffer.getInt(4) + ": " + path);
+        this.size = buffer.getInt(8);
+        byte[] metadata = new byte[buffer.getInt(12)];
+        for (int b = 0; b < metadata.length; b++) metadata[b] = buffer.get(HEADER_SIZE + b);
+        this.metadata = new String(metadata, StandardCharsets.UTF_8);
+        this.conceptsStart = HEADER_SIZE + metadata.length;
+        this.offsetsStart = this.conceptsStart + 8 * this.size;
+        this.recordsStart = this.offsetsStart + 4 * (this.size + 1);
+    }
+
+    /**
+     * Map a descriptions file written by write()
+     *
+     * @param path descriptions file
+     * @throws IOException if the file can not be read or is not a descriptions file
+     */
+    public static DescriptionStore open(String path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Descriptions file too large: " + path);
+            // the mapping stays valid after the channel is closed
+            return new DescriptionStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path);
+        }
+    }
+
+    /**
+     * Write the names of the concepts into a descriptions file
+     *
+     * @param path descriptions file to write
+     * @param fsn conceptId -> Fully Specified Name (may be null)
+     * @param synonyms conceptId -> synonyms
+     * @param metadata text saved with the names (the options of the loading)
+     * @throws IOException
+     */
+    static void write(String path, HashMap<Long, String> fsn, HashMap<Long, List<String>> synonyms, String metadata) throws IOException {
+        HashSet<Long> all = new HashSet<>(fsn.keySet());
+        all.addAll(synonyms.keySet());
+        long[] ids = new long[all.size()];
+        int k = 0;
+        for (Long id : all) ids[k++] = id;
+        Arrays.sort(ids);
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int[] offsets = new int[ids.length + 1];
+        for (k = 0; k < ids.length; k++) {
+            offsets[k] = records.size();
+            String name = fsn.get(ids[k]);
+            List<String> others = synonyms.get(ids[k]);
+            Varint.write(records, (name == null ? 0 : 1) + (others == null ? 0 : others.size()));
+            if (name != null) writeTerm(records, FSN, name);
+            if (others != null) {
+                for (String s : others) writeTerm(records, SYNONYM, s);
+            }
+        }
+        offsets[ids.length] = records.size();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ids.length);
+            byte[] text = metadata.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            for (long id : ids) out.writeLong(id);
+            for (int o : offsets) out.writeInt(o);
+            records.writeTo(out);
+        }
+    }
+
+    /**
+     * (Helper function) Write a term and its normalized form
+     */
+    private static void writeTerm(ByteArrayOutputStream out, byte kind, String term) {
+        out.write(kind);
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        Varint.write(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+        bytes = term.toLowerCase().getBytes(StandardCharsets.UTF_8);
+        Varint.write(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * (Helper function) Decode a UTF-8 string of the file
+     */
+    private String decode(int start, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = this.buffer.get(start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * (Helper function) Position of a conceptId in the sorted concepts, or -1 if absent
+     */
+    private int find(long conceptId) {
+        int low = 0, high = this.size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = this.buffer.getLong(this.conceptsStart + 8 * middle);
+            if (id < conceptId) low = middle + 1;
+            else if (id > conceptId) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * Number of concepts having names
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * conceptId at a position (0..size-1) of the sorted concepts
+     */
+    public long getConceptId(int position) {
+        if (position < 0 || position >= this.size)
+            throw new IllegalArgumentException("Position out of range: " + position);
+        return this.buffer.getLong(this.conceptsStart + 8 * position);
+    }
+
+    /**
+     * Does the concept have names?
+     */
+    public boolean contains(long conceptId) {
+        return this.find(conceptId) >= 0;
+    }
+
+    /**
+     * Iterate over the terms of a concept (no terms if the concept is unknown)
+     */
+    public Cursor terms(long conceptId) {
+        int k = this.find(conceptId);
+        if (k < 0) return new Cursor(0, 0);
+        int position = this.recordsStart + this.buffer.getInt(this.offsetsStart + 4 * k);
+        Cursor cursor = new Cursor(position, 0);
+        cursor.remaining = cursor.readVarint();
+        return cursor;
+    }
+
+    /**
+     * Fully Specified Name of a concept, null if none
+     */
+    public String getFSN(long conceptId) {
+        Cursor cursor = this.terms(conceptId);
+        while (cursor.next()) {
+            if (cursor.isFSN()) return cursor.term();
+        }
+        return null;
+    }
+
+    /**
+     * The metadata saved with the names: the options of the loading
+     * (see LoadOptions.toString()), empty if none
+     */
+    public String getMetadata() {
+        return this.metadata;
+    }
+
+    /**
+     * Size of the mapped file in bytes
+     */
+    public int byteSize() {
+        return this.buffer.capacity();
+    }
+}
@@ -1,11 +1,8 @@
 package snomed;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.StringTokenizer;
 
 /**
  * 
@@ -35,7 +32,7 @@ import java.util.StringTokenizer;
 class Description{
     
     private long descriptionId;
-    private String effectiveTime;
+    private int effectiveTime; // yyyymmdd
     private boolean active;
     private long moduleId;
     private long conceptId;
@@ -56,8 +53,8 @@ class Description{
             String caseSignificanceId            
             ) {
         this.descriptionId = Long.parseLong(descriptionId);
-        this.effectiveTime = effectiveTime;
-        if (active =="1") this.active = true;
+        this.effectiveTime = Integer.parseInt(effectiveTime);
+        if (active.equals("1")) this.active = true;
         else this.active = false;
         this.moduleId = Long.parseLong(moduleId);
         this.conceptId = Long.parseLong(conceptId);
@@ -67,6 +64,19 @@ class Description{
         this.caseSignificanceId = Long.parseLong(caseSignificanceId);
     }
 
+    Description(long descriptionId, int effectiveTime, boolean active, long moduleId, long conceptId,
+            String languageCode, long typeId, String term, long caseSignificanceId) {
+        this.descriptionId = descriptionId;
+        this.effectiveTime = effectiveTime;
+        this.active = active;
+        this.moduleId = moduleId;
+        this.conceptId = conceptId;
+        this.languageCode = languageCode;
+        this.typeId = typeId;
+        this.term = term;
+        this.caseSignificanceId = caseSignificanceId;
+    }
+
     public boolean isFSN(){
         return this.typeId == 900000000000003001L;
     }
@@ -78,7 +88,7 @@ class Description{
     }
 
     public String getEffectiveTime() {
-        return effectiveTime;
+        return Integer.toString(effectiveTime);
     }
 
     public boolean isActive() {
@@ -131,6 +141,22 @@ public class DescriptionsTable implements Iterable<Description>{
     }
     
     public DescriptionsTable(String descriptionsFile) throws IOException {
+        this(descriptionsFile, true);
+    }
+
+    /**
+     * Load the rows of the file, all of them (active or not) when activeOnly is
+     * false, as needed to apply a Delta release.
+     */
+    public DescriptionsTable(String descriptionsFile, boolean activeOnly) throws IOException {
+        this(descriptionsFile, activeOnly, null);
+    }
+
+    /**
+     * Load the rows of the file accepted by the options (module, concepts and
+     * attributes), the terms of the other rows are not decoded
+     */
+    public DescriptionsTable(String descriptionsFile, boolean activeOnly, LoadOptions options) throws IOException {
         /* ========================
          * Loading the descriptions
          * ========================
@@ -144,33 +170,32 @@ public class DescriptionsTable implements Iterable<Description>{
          * term
          * caseSignificanceId
          */
-        BufferedReader bufferedReader = null;
-        StringTokenizer st = null;
-        
         // the list of descriptions id --> descriptions
         this.descriptions = new HashMap<Integer, Description>();
 
         // read the file containing the descriptions
-        bufferedReader = new BufferedReader(new FileReader(descriptionsFile));
-
-        // getting the fields
-        st = new StringTokenizer(bufferedReader.readLine());
+        Rf2Scanner scanner = new Rf2Scanner(descriptionsFile);
         
         // print the fields
         System.out.println("Loading descriptions : ");
-        while (st.hasMoreTokens()) System.out.println("\t" + st.nextToken());
+        for (String field : scanner.header()) System.out.println("\t" + field);
         int counter = 0;
-        do{
-            String line = bufferedReader.readLine();
-            if (line == null) break;
-            String[] s = line.split("\t");
-            if (s[2].equals("0")) continue; // ignore inactive terms.
+        while (scanner.nextRow()) {
+            long descriptionId = scanner.nextLong();
+            int effectiveTime = (int) scanner.nextLong();
+            boolean active = scanner.nextLong() == 1;
+            if (activeOnly && !active) continue; // ignore inactive terms.
             // When active = 0 the Description is not a valid and the associated Term should no longer 
             // be regarded as being associated with the Concept referred to by conceptId
-            Description description = new Description(s[0],s[1],s[2],s[3],s[4],s[5],s[6],s[7],s[8]);
+            long moduleId = scanner.nextLong();
+            long conceptId = scanner.nextLong();
+            if (options != null && !options.acceptsDescription(moduleId, conceptId)) continue;
+            Description description = new Description(descriptionId, effectiveTime, active,
+                    moduleId, conceptId, scanner.nextCachedString(),
+                    scanner.nextLong(), scanner.nextString(), scanner.nextLong());
             descriptions.put(counter++, description);
-        } while(true);
-        bufferedReader.close();
+        }
+        scanner.close();
         System.out.println("Loading descriptions done!");
     }
     
@@ -0,0 +1,398 @@
+package snomed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Compiled form (plan) of an expression constraint written in a subset of
+ * the SNOMED-CT Expression Constraint Language (ECL).
+ *
+ * The supported syntax is:
+ *
+ *     expression  := sub ( (AND | OR | MINUS) sub )*
+ *     sub         := [operator] focus [ ':' refinement ]
+ *     focus       := conceptId [ '|' term '|' ] | '*' | '(' expression ')'
+ *     operator    := '<' | '<<' | '<!' | '>' | '>>' | '>!'
+ *     refinement  := item ( (',' | AND | OR) item )*
+ *     item        := attribute | '{' attribute ( (',' | AND) attribute )* '}'
+ *     attribute   := [operator] typeId [ '|' term '|' ] ('=' | '!=') [operator] focus
+ *
+ * As in ECL, different binary operators (AND, OR, MINUS) can not be mixed
+ * without parentheses. Example:
+ *
+ *     << 404684003 |Clinical finding| : 363698007 |Finding site| = << 80891009 |Heart structure|
+ *
+ * Each node of the plan evaluates to the set of the concept indexes (0..N-1)
+ * satisfying it.
+ */
+abstract class EclExpression {
+
+    /**
+     * Evaluate the expression, returns the set of concept indexes satisfying it.
+     * The returned set belongs to the caller.
+     */
+    abstract ConceptSet evaluate(EclQueryEngine engine);
+
+    enum Operator {SELF, DESCENDANT, DESCENDANT_OR_SELF, CHILD, ANCESTOR, ANCESTOR_OR_SELF, PARENT}
+
+    enum Conjunction {AND, OR, MINUS}
+
+    /**
+     * A concept, or all the concepts (*), with an hierarchical operator
+     */
+    static class Focus extends EclExpression {
+        final Operator operator;
+        final long conceptId; // -1 for any concept (*)
+        final EclExpression nested; // not null for '(' expression ')'
+
+        Focus(Operator operator, long conceptId, EclExpression nested) {
+            this.operator = operator;
+            this.conceptId = conceptId;
+            this.nested = nested;
+        }
+
+        @Override
+        ConceptSet evaluate(EclQueryEngine engine) {
+            ConceptSet focus;
+            if (this.nested != null) {
+                focus = this.nested.evaluate(engine);
+            } else if (this.conceptId < 0) {
+                focus = engine.all();
+            } else {
+                focus = engine.concept(this.conceptId);
+            }
+            return engine.apply(this.operator, focus);
+        }
+    }
+
+    /**
+     * Two expressions combined with AND, OR or MINUS
+     */
+    static class Compound extends EclExpression {
+        final Conjunction conjunction;
+        final EclExpression left;
+        final EclExpression right;
+
+        Compound(Conjunction conjunction, EclExpression left, EclExpression right) {
+            this.conjunction = conjunction;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        ConceptSet evaluate(EclQueryEngine engine) {
+            ConceptSet left = this.left.evaluate(engine);
+            ConceptSet right = this.right.evaluate(engine);
+            switch (this.conjunction) {
+                case AND: return left.and(right);
+                case OR: return left.or(right);
+                case MINUS: return left.andNot(right);
+            }
+            throw new IllegalArgumentException("Unkown conjunction: " + this.conjunction);
+        }
+    }
+
+    /**
+     * An expression restricted to the concepts satisfying a refinement
+     */
+    static class Refined extends EclExpression {
+        final EclExpression focus;
+        final Refinement refinement;
+
+        Refined(EclExpression focus, Refinement refinement) {
+            this.focus = focus;
+            this.refinement = refinement;
+        }
+
+        @Override
+        ConceptSet evaluate(EclQueryEngine engine) {
+            ConceptSet candidates = this.focus.evaluate(engine);
+            return this.refinement.filter(engine, candidates);
+        }
+    }
+
+    /**
+     * Filter of a set of candidates by their attributes
+     */
+    static abstract class Refinement {
+        /**
+         * Keep only the candidates satisfying the refinement.
+         */
+        abstract ConceptSet filter(EclQueryEngine engine, ConceptSet candidates);
+    }
+
+    /**
+     * typeId = value or typeId != value
+     */
+    static class Attribute extends Refinement {
+        final Operator typeOperator;
+        final long typeId;
+        final boolean equals;
+        final EclExpression value;
+
+        Attribute(Operator typeOperator, long typeId, boolean equals, EclExpression value) {
+            this.typeOperator = typeOperator;
+            this.typeId = typeId;
+            this.equals = equals;
+            this.value = value;
+        }
+
+        @Override
+        ConceptSet filter(EclQueryEngine engine, ConceptSet candidates) {
+            return engine.filterByAttribute(candidates, engine.attributeTypes(this.typeOperator, this.typeId),
+                    this.equals, this.value.evaluate(engine));
+        }
+    }
+
+    /**
+     * A list of attributes that must be satisfied inside the same relationshipGroup
+     */
+    static class Group extends Refinement {
+        final List<Attribute> attributes;
+
+        Group(List<Attribute> attributes) {
+            this.attributes = attributes;
+        }
+
+        @Override
+        ConceptSet filter(EclQueryEngine engine, ConceptSet candidates) {
+            // each attribute must be satisfied, whatever the group
+            List<long[]> types = new ArrayList<>();
+            List<ConceptSet> values = new ArrayList<>();
+            for (Attribute attribute : this.attributes) {
+                long[] t = engine.attributeTypes(attribute.typeOperator, attribute.typeId);
+                ConceptSet v = attribute.value.evaluate(engine);
+                candidates = engine.filterByAttribute(candidates, t, attribute.equals, v);
+                types.add(t);
+                values.add(v);
+            }
+            // then they must be satisfied by the same group
+            return engine.filterByGroup(candidates, this.attributes, types, values);
+        }
+    }
+
+    /**
+     * Refinements combined with AND (or ',') or OR
+     */
+    static class RefinementSet extends Refinement {
+        final Conjunction conjunction;
+        final List<Refinement> refinements;
+
+        RefinementSet(Conjunction conjunction, List<Refinement> refinements) {
+            this.conjunction = conjunction;
+            this.refinements = refinements;
+        }
+
+        @Override
+        ConceptSet filter(EclQueryEngine engine, ConceptSet candidates) {
+            if (this.conjunction == Conjunction.AND) {
+                for (Refinement refinement : this.refinements) {
+                    candidates = refinement.filter(engine, candidates);
+                }
+                return candidates;
+            }
+            ConceptSet result = new ConceptSet();
+            for (Refinement refinement : this.refinements) {
+                result = result.or(refinement.filter(engine, candidates));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Parse an expression constraint into its plan
+     *
+     * @param ecl the expression constraint
+     * @return the plan of the expression
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    static EclExpression parse(String ecl) {
+        Parser parser = new Parser(ecl);
+        EclExpression expression = parser.expression();
+        parser.skipSpaces();
+        if (parser.position < ecl.length())
+            throw parser.error("unexpected character");
+        return expression;
+    }
+
+    /**
+     * Recursive descent parser of the supported ECL subset
+     */
+    private static class Parser {
+        private final String ecl;
+        private int position;
+
+        Parser(String ecl) {
+            this.ecl = ecl;
+            this.position = 0;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("ECL: " + message + " at " + this.position + " in: " + this.ecl);
+        }
+
+        void skipSpaces() {
+            while (this.position < this.ecl.length()) {
+                char c = this.ecl.charAt(this.position);
+                if (Character.isWhitespace(c)) {
+                    this.position++;
+                } else if (c == '|') {
+                    // skip the term: |Clinical finding|
+                    int end = this.ecl.indexOf('|', this.position + 1);
+                    if (end < 0) throw this.error("unclosed term");
+                    this.position = end + 1;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        boolean accept(String token) {
+            this.skipSpaces();
+            if (this.ecl.startsWith(token, this.position)) {
+                this.position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        void expect(String token) {
+            if (!this.accept(token)) throw this.error("expected '" + token + "'");
+        }
+
+        /**
+         * Read AND, OR, MINUS (case insensitive), or null if none
+         */
+        Conjunction conjunction() {
+            this.skipSpaces();
+            for (Conjunction c : Conjunction.values()) {
+                int end = this.position + c.name().length();
+                if (this.ecl.regionMatches(true, this.position, c.name(), 0, c.name().length())
+                        && (end == this.ecl.length() || !Character.isLetterOrDigit(this.ecl.charAt(end)))) {
+                    this.position = end;
+                    return c;
+                }
+            }
+            return null;
+        }
+
+        EclExpression expression() {
+            EclExpression left = this.sub();
+            Conjunction previous = null;
+            while (true) {
+                int start = this.position;
+                Conjunction c = this.conjunction();
+                if (c == null) break;
+                if (previous != null && previous != c) {
+                    this.position = start;
+                    throw this.error("mixing " + previous + " and " + c + " requires parentheses");
+                }
+                previous = c;
+                left = new Compound(c, left, this.sub());
+            }
+            return left;
+        }
+
+        EclExpression sub() {
+            EclExpression focus = this.focus();
+            if (this.accept(":")) {
+                return new Refined(focus, this.refinement());
+            }
+            return focus;
+        }
+
+        Operator operator() {
+            if (this.accept("<<")) return Operator.DESCENDANT_OR_SELF;
+            if (this.accept("<!")) return Operator.CHILD;
+            if (this.accept("<")) return Operator.DESCENDANT;
+            if (this.accept(">>")) return Operator.ANCESTOR_OR_SELF;
+            if (this.accept(">!")) return Operator.PARENT;
+            if (this.accept(">")) return Operator.ANCESTOR;
+            return Operator.SELF;
+        }
+
+        EclExpression focus() {
+            Operator operator = this.operator();
+            if (this.accept("(")) {
+                EclExpression nested = this.expression();
+                this.expect(")");
+                return new Focus(operator, -1, nested);
+            }
+            if (this.accept("*")) {
+                return new Focus(operator, -1, null);
+            }
+            return new Focus(operator, this.conceptId(), null);
+        }
+
+        long conceptId() {
+            this.skipSpaces();
+            int start = this.position;
+            while (this.position < this.ecl.length() && Character.isDigit(this.ecl.charAt(this.position)))
+                this.position++;
+            if (start == this.position) throw this.error("expected a concept id");
+            return Long.parseLong(this.ecl.substring(start, this.position));
+        }
+
+        Refinement refinement() {
+            List<Refinement> items = new ArrayList<>();
+            items.add(this.refinementItem());
+            Conjunction previous = null;
+            while (true) {
+                int start = this.position;
+                Conjunction c = this.accept(",") ? Conjunction.AND : this.conjunction();
+                if (c == null) break;
+                if (c == Conjunction.MINUS) {
+                    this.position = start;
+                    throw this.error("MINUS is not allowed in a refinement");
+                }
+                if (previous != null && previous != c) {
+                    this.position = start;
+                    throw this.error("mixing AND and OR requires parentheses");
+                }
+                previous = c;
+                items.add(this.refinementItem());
+            }
+            if (items.size() == 1) return items.get(0);
+            return new RefinementSet(previous, items);
+        }
+
+        Refinement refinementItem() {
+            if (this.accept("(")) {
+                Refinement nested = this.refinement();
+                this.expect(")");
+                return nested;
+            }
+            if (this.accept("{")) {
+                List<Attribute> attributes = new ArrayList<>();
+                attributes.add(this.attribute());
+                while (true) {
+                    int start = this.position;
+                    Conjunction c = this.accept(",") ? Conjunction.AND : this.conjunction();
+                    if (c == null) break;
+                    if (c != Conjunction.AND) {
+                        this.position = start;
+                        throw this.error(c + " is not allowed in an attribute group");
+                    }
+                    attributes.add(this.attribute());
+                }
+                this.expect("}");
+                return new Group(attributes);
+            }
+            return this.attribute();
+        }
+
+        Attribute attribute() {
+            Operator typeOperator = this.operator();
+            long typeId = this.conceptId();
+            boolean equals;
+            if (this.accept("!=")) {
+                equals = false;
+            } else {
+                this.expect("=");
+                equals = true;
+            }
+            return new Attribute(typeOperator, typeId, equals, this.focus());
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package snomed;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Evaluates expression constraints (a practical subset of the SNOMED-CT
+ * Expression Constraint Language, see EclExpression) over the loaded SNOMED.
+ *
+ * The queries are evaluated set-at-a-time: each part of the expression gives
+ * a set of concept indexes (ConceptSet), and the sets are combined together
+ * (and, or, and not). The hierarchical operators use the HierarchyIndex and the
+ * refinements use the AttributeIndex.
+ *
+ * The parsed expressions (plans) are kept in a cache, so that an expression
+ * used many times is parsed only once.
+ */
+public class EclQueryEngine {
+
+    // maximum number of plans kept in the cache
+    private static final int PLAN_CACHE_SIZE = 256;
+
+    private final SNOMED snomed;
+    private final HierarchyIndex hierarchy;
+    private final AttributeIndex attributes;
+
+    // expression -> plan (least recently used plans are dropped first)
+    private final Map<String, EclExpression> plans;
+
+    /**
+     * Build a query engine over the loaded ontology
+     * @param snomed
+     */
+    public EclQueryEngine(SNOMED snomed) {
+        this.snomed = snomed;
+        this.hierarchy = snomed.getHierarchy();
+        this.attributes = snomed.getAttributeIndex();
+        this.plans = new LinkedHashMap<String, EclExpression>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EclExpression> eldest) {
+                return size() > PLAN_CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Returns the plan of an expression, from the cache if it was already parsed
+     */
+    private EclExpression plan(String ecl) {
+        String key = ecl.trim();
+        synchronized (this.plans) {
+            EclExpression plan = this.plans.get(key);
+            if (plan == null) {
+                plan = EclExpression.parse(key);
+                this.plans.put(key, plan);
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * Evaluate an expression constraint
+     *
+     * @param ecl expression constraint, ex: {@code << 404684003 : 363698007 = << 80891009}
+     * @return the set of the indexes of the concepts satisfying the expression
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public ConceptSet evaluate(String ecl) {
+        return this.plan(ecl).evaluate(this);
+    }
+
+    /**
+     * Evaluate an expression constraint
+     *
+     * @param ecl expression constraint
+     * @return the SNOMED-CT ids of the concepts satisfying the expression
+     */
+    public long[] evaluateIds(String ecl) {
+        ConceptSet result = this.evaluate(ecl);
+        long[] ids = new long[result.cardinality()];
+        int k = 0;
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            ids[k++] = this.snomed.getConceptId(i);
+        }
+        return ids;
+    }
+
+    /**
+     * Number of concepts satisfying the expression constraint
+     */
+    public int count(String ecl) {
+        return this.evaluate(ecl).cardinality();
+    }
+
+    /* ===================================================
+     * Set operations used by the plans (EclExpression)
+     * =================================================== */
+
+    /**
+     * All the concepts (*)
+     */
+    ConceptSet all() {
+        return ConceptSet.range(0, this.hierarchy.size()).andNot(this.snomed.getInactiveConcepts());
+    }
+
+    /**
+     * The set containing one concept (empty if the concept is unknown)
+     */
+    ConceptSet concept(long conceptId) {
+        ConceptSet result = new ConceptSet();
+        try {
+            result.add(this.snomed.getIndex(conceptId));
+        } catch (IllegalArgumentException e) {
+            // unknown (or inactive) concept: no concept satisfies it
+        }
+        return result;
+    }
+
+    /**
+     * Apply an hierarchical operator to a set of concepts
+     */
+    ConceptSet apply(EclExpression.Operator operator, ConceptSet focus) {
+        switch (operator) {
+            case SELF:
+                return focus;
+            case DESCENDANT_OR_SELF: {
+                return this.descendants(focus).or(focus);
+            }
+            case DESCENDANT:
+                return this.descendants(focus);
+            case CHILD: {
+                ConceptSet result = new ConceptSet();
+                for (int i = focus.nextSetBit(0); i >= 0; i = focus.nextSetBit(i + 1))
+                    for (int c : this.hierarchy.children(i)) result.add(c);
+                return result;
+            }
+            case ANCESTOR_OR_SELF: {
+                ConceptSet result = new ConceptSet();
+                for (int i = focus.nextSetBit(0); i >= 0; i = focus.nextSetBit(i + 1))
+                    for (int a : this.hierarchy.ancestors(i)) result.add(a);
+                return result;
+            }
+            case ANCESTOR: {
+                ConceptSet result = new ConceptSet();
+                for (int i = focus.nextSetBit(0); i >= 0; i = focus.nextSetBit(i + 1))
+                    for (int a : this.hierarchy.ancestors(i)) if (a != i) result.add(a);
+                return result;
+            }
+            case PARENT: {
+                ConceptSet result = new ConceptSet();
+                for (int i = focus.nextSetBit(0); i >= 0; i = focus.nextSetBit(i + 1))
+                    for (int p : this.hierarchy.parents(i)) result.add(p);
+                return result;
+            }
+            default:
+                throw new IllegalArgumentException("Unkown operator: " + operator);
+        }
+    }
+
+    /**
+     * All the descendants of the concepts of focus (excluding focus itself,
+     * unless a concept of focus descends from another one)
+     */
+    private ConceptSet descendants(ConceptSet focus) {
+        BitSet visited = new BitSet(this.hierarchy.size());
+        int[] queue = new int[Math.max(16, focus.cardinality())];
+        int head = 0, tail = 0;
+        for (int i = focus.nextSetBit(0); i >= 0; i = focus.nextSetBit(i + 1)) {
+            for (int c : this.hierarchy.children(i)) {
+                if (!visited.get(c)) {
+                    visited.set(c);
+                    if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+                    queue[tail++] = c;
+                }
+            }
+        }
+        while (head < tail) {
+            int i = queue[head++];
+            for (int c : this.hierarchy.children(i)) {
+                if (!visited.get(c)) {
+                    visited.set(c);
+                    if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+                    queue[tail++] = c;
+                }
+            }
+        }
+        Arrays.sort(queue, 0, tail);
+        return ConceptSet.fromSorted(queue, tail);
+    }
+
+    /**
+     * The typeIds matching an attribute name with its hierarchical operator
+     * (ex. {@code << 363698007} includes the subtypes of finding site)
+     */
+    long[] attributeTypes(EclExpression.Operator operator, long typeId) {
+        ConceptSet self = this.concept(typeId);
+        // unknown type concept: use the typeId as it is
+        if (operator == EclExpression.Operator.SELF || self.isEmpty()) return new long[] {typeId};
+        ConceptSet types = this.apply(operator, self);
+        int count = 0;
+        long[] result = new long[this.attributes.getTypeIds().size()];
+        for (Long t : this.attributes.getTypeIds()) {
+            if (this.concept(t).intersects(types)) result[count++] = t;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Keep the candidates having an attribute of one of the types whose value is
+     * in values (equals) or is not in values (!equals).
+     */
+    ConceptSet filterByAttribute(ConceptSet candidates, long[] types, boolean equals, ConceptSet values) {
+        if (equals && values.cardinality() < candidates.cardinality()) {
+            // few values: look up the concepts pointing to them (reverse index)
+            int[] sources = new int[16];
+            int count = 0;
+            for (long typeId : types) {
+                for (int v = values.nextSetBit(0); v >= 0; v = values.nextSetBit(v + 1)) {
+                    AttributeIndex.Cursor cursor = this.attributes.sources(typeId, v);
+                    while (cursor.next()) {
+                        if (count == sources.length) sources = Arrays.copyOf(sources, count * 2);
+                        sources[count++] = cursor.value();
+                    }
+                }
+            }
+            Arrays.sort(sources, 0, count);
+            return ConceptSet.fromSorted(sources, count).and(candidates);
+        }
+        ConceptSet result = new ConceptSet();
+        // few candidates: check their attributes (forward index)
+        for (int c = candidates.nextSetBit(0); c >= 0; c = candidates.nextSetBit(c + 1)) {
+            search:
+            for (long typeId : types) {
+                AttributeIndex.Cursor cursor = this.attributes.targets(typeId, c);
+                while (cursor.next()) {
+                    if (values.contains(cursor.value()) == equals) {
+                        result.add(c);
+                        break search;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keep the candidates having one relationshipGroup satisfying all the attributes.
+     * As in ECL, each ungrouped relationship (group 0) is a group by itself:
+     * it can only satisfy the attributes that this single relationship matches.
+     */
+    ConceptSet filterByGroup(ConceptSet candidates, List<EclExpression.Attribute> group, List<long[]> types, List<ConceptSet> values) {
+        // a number for each type, to identify the ungrouped relationships
+        HashMap<Long, Integer> typeNumbers = new HashMap<>();
+        for (long[] typeIds : types) {
+            for (long typeId : typeIds) {
+                if (!typeNumbers.containsKey(typeId)) typeNumbers.put(typeId, typeNumbers.size());
+            }
+        }
+        ConceptSet result = new ConceptSet();
+        for (int c = candidates.nextSetBit(0); c >= 0; c = candidates.nextSetBit(c + 1)) {
+            // groups of c satisfying all the attributes seen so far:
+            // relationshipGroup g > 0, or -1 - (type number, value) for an ungrouped relationship
+            HashSet<Long> groups = null;
+            for (int a = 0; a < group.size(); a++) {
+                HashSet<Long> matching = new HashSet<>();
+                for (long typeId : types.get(a)) {
+                    AttributeIndex.Cursor cursor = this.attributes.targets(typeId, c);
+                    while (cursor.next()) {
+                        if (values.get(a).contains(cursor.value()) != group.get(a).equals) continue;
+                        if (cursor.group() != 0) matching.add((long) cursor.group());
+                        else matching.add(-1 - (((long) typeNumbers.get(typeId) << 32) | cursor.value()));
+                    }
+                }
+                if (groups == null) groups = matching;
+                else groups.retainAll(matching);
+                if (groups.isEmpty()) break;
+            }
+            if (groups != null && !groups.isEmpty()) result.add(c);
+        }
+        return result;
+    }
+}
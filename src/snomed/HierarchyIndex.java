@@ -0,0 +1,332 @@
+package snomed;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Compact view of the IS-A hierarchy of SNOMED-CT.
+ *
+ * Every concept is referred to by its sequential index (0..N-1) as assigned
+ * by the class SNOMED. For each concept we keep:
+ *     - its direct parents and children (IS-A only)
+ *     - the sorted list of all its ancestors (the concept itself included)
+ *     - the number of its descendants (the concept itself included)
+ *
+ * The ancestors are computed once, in topological order (parents before
+ * children), by merging the ancestors of the parents. Looking for the common
+ * ancestors of two concepts is then a merge of two small sorted arrays.
+ *
+ * The index is never changed once built. When a Delta release is applied,
+ * update() returns a new index sharing the rows of this one, and recomputes
+ * only the concepts whose parents changed and their descendants.
+ */
+public class HierarchyIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    // parents[i] = direct IS-A parents of the concept i
+    private final int[][] parents;
+
+    // children[i] = direct IS-A children of the concept i
+    private final int[][] children;
+
+    // ancestors[i] = sorted indexes of all the ancestors of i (i included)
+    private final int[][] ancestors;
+
+    // descendants[i] = number of concepts having i as ancestor (i included)
+    private final int[] descendants;
+
+    /**
+     * Build the IS-A index of the concepts loaded in snomed.
+     *
+     * @param snomed the loaded ontology
+     */
+    HierarchyIndex(SNOMED snomed) {
+        int n = snomed.C();
+        this.parents = new int[n][];
+        for (int i = 0; i < n; i++) {
+            this.parents[i] = snomed.isAParents(i);
+        }
+        this.children = invert(this.parents);
+        this.ancestors = new int[n][];
+        this.descendants = new int[n];
+        this.buildAncestors();
+    }
+
+    /**
+     * (Helper function) An index made of the given rows, see update()
+     */
+    private HierarchyIndex(int[][] parents, int[][] children, int[][] ancestors, int[] descendants) {
+        this.parents = parents;
+        this.children = children;
+        this.ancestors = ancestors;
+        this.descendants = descendants;
+    }
+
+    /**
+     * Build the reversed adjacency (parent -> children) of the IS-A graph.
+     */
+    private static int[][] invert(int[][] parents) {
+        int n = parents.length;
+        int[] count = new int[n];
+        for (int[] ps : parents) {
+            for (int p : ps) count[p]++;
+        }
+        int[][] children = new int[n][];
+        for (int i = 0; i < n; i++) {
+            children[i] = count[i] == 0 ? EMPTY : new int[count[i]];
+            count[i] = 0;
+        }
+        for (int c = 0; c < n; c++) {
+            for (int p : parents[c]) children[p][count[p]++] = c;
+        }
+        return children;
+    }
+
+    /**
+     * Compute the ancestors of each concept in topological order (Kahn), and
+     * count the descendants of each concept from the computed ancestors.
+     */
+    private void buildAncestors() {
+        int n = this.parents.length;
+
+        // number of parents not processed yet
+        int[] pending = new int[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        for (int i = 0; i < n; i++) {
+            pending[i] = this.parents[i].length;
+            if (pending[i] == 0) queue[tail++] = i;
+        }
+
+        int[] mark = new int[n];
+        int[] merged = new int[n];
+        int stamp = 0;
+
+        while (head < n) {
+            if (head == tail) {
+                // a cycle in the IS-A relationships (should not happen in SNOMED-CT)
+                // break it by processing the first concept left behind.
+                for (int i = 0; i < n; i++) {
+                    if (pending[i] > 0) {
+                        pending[i] = 0;
+                        queue[tail++] = i;
+                        break;
+                    }
+                }
+            }
+            int c = queue[head++];
+            this.ancestors[c] = this.mergeAncestors(c, mark, ++stamp, merged);
+            for (int a : this.ancestors[c]) this.descendants[a]++;
+
+            for (int child : this.children[c]) {
+                if (--pending[child] == 0) queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * (Helper function) The sorted ancestors of c: c and the ancestors of its parents.
+     * mark is a scratch array of size N, stamp a value not used yet in it,
+     * merged a scratch array of size N too (a concept has at most N ancestors).
+     */
+    private int[] mergeAncestors(int c, int[] mark, int stamp, int[] merged) {
+        int size = 0;
+        mark[c] = stamp;
+        merged[size++] = c;
+        for (int p : this.parents[c]) {
+            int[] ap = this.ancestors[p];
+            if (ap == null) continue; // parent on a broken cycle
+            for (int a : ap) {
+                if (mark[a] != stamp) {
+                    mark[a] = stamp;
+                    merged[size++] = a;
+                }
+            }
+        }
+        int[] ac = Arrays.copyOf(merged, size);
+        Arrays.sort(ac);
+        return ac;
+    }
+
+    /**
+     * Returns the index updated after a Delta release, this one is not
+     * changed: the concepts appended since the index was built are added, and
+     * the concepts whose IS-A parents changed are linked to their new parents.
+     * Only the changed concepts and their descendants get their ancestors
+     * recomputed, and only the counts of their old and new ancestors are
+     * updated. The other rows are shared with this index (a row is never
+     * modified, only replaced).
+     *
+     * @param snomed the ontology, with the Delta applied
+     * @param changed indexes of the concepts whose IS-A parents changed (or new)
+     * @param count number of indexes in changed
+     */
+    HierarchyIndex update(SNOMED snomed, int[] changed, int count) {
+        int n = snomed.C();
+        int old = this.parents.length;
+        HierarchyIndex updated = new HierarchyIndex(Arrays.copyOf(this.parents, n), Arrays.copyOf(this.children, n),
+                Arrays.copyOf(this.ancestors, n), Arrays.copyOf(this.descendants, n));
+        // the new concepts start as isolated roots
+        for (int i = old; i < n; i++) {
+            updated.parents[i] = EMPTY;
+            updated.children[i] = EMPTY;
+            updated.ancestors[i] = new int[] {i};
+            updated.descendants[i] = 1;
+        }
+        updated.relink(snomed, changed, count);
+        return updated;
+    }
+
+    /**
+     * (Helper function) Link the changed concepts to their new parents, and
+     * recompute the ancestors of the changed concepts and their descendants.
+     * Only called on the new index built by update().
+     */
+    private void relink(SNOMED snomed, int[] changed, int count) {
+        int n = this.parents.length;
+
+        // link the changed concepts to their new parents
+        for (int k = 0; k < count; k++) {
+            int c = changed[k];
+            int[] before = this.parents[c];
+            int[] after = snomed.isAParents(c);
+            for (int p : before) {
+                if (!contains(after, p)) this.children[p] = remove(this.children[p], c);
+            }
+            for (int p : after) {
+                if (!contains(before, p)) this.children[p] = add(this.children[p], c);
+            }
+            this.parents[c] = after;
+        }
+
+        // the concepts whose ancestors may change: the changed ones and their descendants
+        boolean[] affected = new boolean[n];
+        int[] queue = new int[16];
+        int tail = 0;
+        for (int k = 0; k < count; k++) {
+            if (affected[changed[k]]) continue;
+            affected[changed[k]] = true;
+            if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+            queue[tail++] = changed[k];
+        }
+        for (int head = 0; head < tail; head++) {
+            for (int c : this.children[queue[head]]) {
+                if (affected[c]) continue;
+                affected[c] = true;
+                if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+                queue[tail++] = c;
+            }
+        }
+
+        // forget their old ancestors
+        for (int k = 0; k < tail; k++) {
+            for (int a : this.ancestors[queue[k]]) this.descendants[a]--;
+            this.ancestors[queue[k]] = null;
+        }
+
+        // compute the new ones in topological order, among the affected concepts
+        int[] pending = new int[n];
+        int[] order = new int[tail];
+        int head = 0, size = 0;
+        for (int k = 0; k < tail; k++) {
+            int c = queue[k];
+            for (int p : this.parents[c]) {
+                if (affected[p]) pending[c]++;
+            }
+            if (pending[c] == 0) order[size++] = c;
+        }
+        int[] mark = new int[n];
+        int[] merged = new int[n];
+        int stamp = 0;
+        while (head < tail) {
+            if (head == size) {
+                // a cycle in the IS-A relationships: break it
+                for (int k = 0; k < tail; k++) {
+                    if (pending[queue[k]] > 0) {
+                        pending[queue[k]] = 0;
+                        order[size++] = queue[k];
+                        break;
+                    }
+                }
+            }
+            int c = order[head++];
+            this.ancestors[c] = this.mergeAncestors(c, mark, ++stamp, merged);
+            for (int a : this.ancestors[c]) this.descendants[a]++;
+            for (int child : this.children[c]) {
+                if (affected[child] && --pending[child] == 0) order[size++] = child;
+            }
+        }
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) return true;
+        }
+        return false;
+    }
+
+    private static int[] add(int[] values, int value) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    private static int[] remove(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                if (values.length == 1) return EMPTY;
+                int[] result = new int[values.length - 1];
+                System.arraycopy(values, 0, result, 0, i);
+                System.arraycopy(values, i + 1, result, i, values.length - i - 1);
+                return result;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the total number of concepts
+     */
+    public int size() {
+        return this.parents.length;
+    }
+
+    /**
+     * Direct IS-A parents of the concept index
+     * (do not modify the returned array)
+     */
+    public int[] parents(int index) {
+        return this.parents[index];
+    }
+
+    /**
+     * Direct IS-A children of the concept index
+     * (do not modify the returned array)
+     */
+    public int[] children(int index) {
+        return this.children[index];
+    }
+
+    /**
+     * Sorted list of all the ancestors of the concept index, the concept
+     * itself included (do not modify the returned array)
+     */
+    public int[] ancestors(int index) {
+        return this.ancestors[index];
+    }
+
+    /**
+     * Number of descendants of the concept index, the concept itself included
+     */
+    public int descendantCount(int index) {
+        return this.descendants[index];
+    }
+
+    /**
+     * Is the concept ancestor an ancestor (or the concept itself) of the concept index?
+     */
+    public boolean isAncestor(int ancestor, int index) {
+        return Arrays.binarySearch(this.ancestors[index], ancestor) >= 0;
+    }
+}
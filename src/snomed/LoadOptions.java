@@ -0,0 +1,316 @@
+package snomed;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ *
+ * Options of the loading of SNOMED-CT, to load only the part of the release
+ * which is used. The rows are filtered by the parsers, before any object is
+ * built for them:
+ *     - modules: keep only the concepts, relationships and descriptions of these modules
+ *     - characteristic types: keep only the relationships of these
+ *       characteristicTypeIds (ex. INFERRED)
+ *     - relationship types: keep only the relationships of these typeIds
+ *       (IS-A is always kept)
+ *     - semantic tags: keep only the concepts whose Fully Specified Name
+ *       ends with one of these tags (ex. "disorder" for "Asthma (disorder)")
+ *       and their IS-A ancestors up to the root (untagged ones included, ex.
+ *       "Clinical finding (finding)"), the relationships between kept
+ *       concepts, and their descriptions: the hierarchy stays connected, so
+ *       {@code << 404684003} still finds the disorders
+ *     - order: order of the concept indexes (see ConceptOrder)
+ *
+ * An option left unset keeps everything. Example:
+ *
+ *     new LoadOptions().characteristicTypes(LoadOptions.INFERRED)
+ *                      .relationshipTypes(363698007L, 246075003L)
+ *                      .semanticTags("disorder", "finding", "body structure")
+ *
+ * The options are saved with the snapshots (AdjacencyStore, DescriptionStore)
+ * as their metadata, see toString().
+ */
+public class LoadOptions {
+
+    public static final long INFERRED = 900000000000011006L;
+    public static final long STATED = 900000000000010007L;
+    public static final long ADDITIONAL = 900000000000227009L;
+
+    private static final long IS_A = 116680003L;
+    private static final long FSN = 900000000000003001L;
+
+    private HashSet<Long> modules;
+    private HashSet<Long> characteristicTypes;
+    private HashSet<Long> relationshipTypes;
+    private HashSet<String> semanticTags;
+    private SNOMED.ConceptOrder order = SNOMED.ConceptOrder.FILE;
+
+    // the concepts having one of the semantic tags (resolved from the descriptions),
+    // and their IS-A ancestors (resolved from the relationships)
+    private HashSet<Long> taggedConcepts;
+    // the attributes (types of the relationships), whose names are always loaded
+    private HashSet<Long> attributes;
+
+    /**
+     * Keep only the rows of these modules
+     */
+    public LoadOptions modules(long... moduleIds) {
+        this.modules = toSet(moduleIds);
+        return this;
+    }
+
+    /**
+     * Keep only the relationships of these characteristic types (INFERRED, STATED, ADDITIONAL)
+     */
+    public LoadOptions characteristicTypes(long... characteristicTypeIds) {
+        this.characteristicTypes = toSet(characteristicTypeIds);
+        return this;
+    }
+
+    /**
+     * Keep only the relationships of these types (IS-A is always kept)
+     */
+    public LoadOptions relationshipTypes(long... typeIds) {
+        this.relationshipTypes = toSet(typeIds);
+        this.relationshipTypes.add(IS_A);
+        return this;
+    }
+
+    /**
+     * Keep only the concepts having one of these semantic tags (without parentheses)
+     */
+    public LoadOptions semanticTags(String... tags) {
+        this.semanticTags = new HashSet<>(Arrays.asList(tags));
+        return this;
+    }
+
+    /**
+     * Order of the concept indexes
+     */
+    public LoadOptions order(SNOMED.ConceptOrder order) {
+        this.order = order;
+        return this;
+    }
+
+    public SNOMED.ConceptOrder getOrder() {
+        return this.order;
+    }
+
+    /**
+     * (Helper function) A copy of the filters, without the semantic tags
+     * resolved for a release: each SNOMED resolves the tags of its own
+     * release into its own copy, so the options given by the caller can be
+     * reused for another release.
+     */
+    LoadOptions copy() {
+        LoadOptions copy = new LoadOptions();
+        copy.modules = this.modules == null ? null : new HashSet<>(this.modules);
+        copy.characteristicTypes = this.characteristicTypes == null ? null : new HashSet<>(this.characteristicTypes);
+        copy.relationshipTypes = this.relationshipTypes == null ? null : new HashSet<>(this.relationshipTypes);
+        copy.semanticTags = this.semanticTags == null ? null : new HashSet<>(this.semanticTags);
+        copy.order = this.order;
+        return copy;
+    }
+
+    /**
+     * (Helper function) A copy of the filters and of the semantic tags
+     * resolved so far, for a SNOMED built by applying a Delta to this one
+     */
+    LoadOptions copyResolved() {
+        LoadOptions copy = this.copy();
+        copy.taggedConcepts = this.taggedConcepts == null ? null : new HashSet<>(this.taggedConcepts);
+        copy.attributes = this.attributes == null ? null : new HashSet<>(this.attributes);
+        return copy;
+    }
+
+    private static HashSet<Long> toSet(long[] values) {
+        HashSet<Long> set = new HashSet<>();
+        for (long v : values) set.add(v);
+        return set;
+    }
+
+    /* ===============================
+     * Filters used by the parsers
+     * =============================== */
+
+    boolean hasSemanticTags() {
+        return this.semanticTags != null;
+    }
+
+    /**
+     * (Helper function) Read the Fully Specified Names of the descriptions
+     * file to find the concepts having one of the semantic tags
+     */
+    void resolveSemanticTags(String descriptionsFile) throws java.io.IOException {
+        this.initTags();
+        Rf2Scanner scanner = new Rf2Scanner(descriptionsFile);
+        while (scanner.nextRow()) {
+            scanner.skip(); // id
+            scanner.skip(); // effectiveTime
+            if (scanner.nextLong() != 1) continue;
+            scanner.skip(); // moduleId
+            long conceptId = scanner.nextLong();
+            scanner.skip(); // languageCode
+            if (scanner.nextLong() != FSN) continue;
+            this.addTagged(conceptId, scanner.nextString());
+        }
+        scanner.close();
+    }
+
+    /**
+     * (Helper function) Find the concepts having one of the semantic tags
+     * from the Fully Specified Names of a description store
+     */
+    void resolveSemanticTags(DescriptionStore descriptions) {
+        this.initTags();
+        for (int k = 0; k < descriptions.size(); k++) {
+            long conceptId = descriptions.getConceptId(k);
+            String fsn = descriptions.getFSN(conceptId);
+            if (fsn != null) this.addTagged(conceptId, fsn);
+        }
+    }
+
+    /**
+     * (Helper function) Add to the tagged concepts their IS-A ancestors, read
+     * from the active IS-A relationships of the modules and characteristic
+     * types kept (for a Delta, only its own relationships are read: the
+     * ancestors already loaded are kept anyway)
+     */
+    void resolveAncestors(String relationshipsFile) throws java.io.IOException {
+        HashMap<Long, List<Long>> parents = new HashMap<>();
+        Rf2Scanner scanner = new Rf2Scanner(relationshipsFile);
+        while (scanner.nextRow()) {
+            scanner.skip(); // id
+            scanner.skip(); // effectiveTime
+            if (scanner.nextLong() != 1) continue;
+            if (!this.acceptsModule(scanner.nextLong())) continue;
+            long sourceId = scanner.nextLong();
+            long destinationId = scanner.nextLong();
+            scanner.skip(); // relationshipGroup
+            if (scanner.nextLong() != IS_A) continue;
+            long characteristicTypeId = scanner.nextLong();
+            if (this.characteristicTypes != null && !this.characteristicTypes.contains(characteristicTypeId)) continue;
+            List<Long> list = parents.get(sourceId);
+            if (list == null) {
+                list = new ArrayList<>();
+                parents.put(sourceId, list);
+            }
+            list.add(destinationId);
+        }
+        scanner.close();
+
+        ArrayDeque<Long> queue = new ArrayDeque<>(this.taggedConcepts);
+        while (!queue.isEmpty()) {
+            List<Long> list = parents.get(queue.poll());
+            if (list == null) continue;
+            for (Long parent : list) {
+                if (this.taggedConcepts.add(parent)) queue.add(parent);
+            }
+        }
+    }
+
+    private void initTags() {
+        // the tags of a Delta are added to the ones already resolved for the same SNOMED
+        if (this.taggedConcepts != null) return;
+        this.taggedConcepts = new HashSet<>();
+        this.attributes = new HashSet<>();
+    }
+
+    private void addTagged(long conceptId, String fsn) {
+        int end = fsn.lastIndexOf(')');
+        int start = end < 0 ? -1 : fsn.lastIndexOf('(', end);
+        if (start < 0) return;
+        String tag = fsn.substring(start + 1, end);
+        if (this.semanticTags.contains(tag)) this.taggedConcepts.add(conceptId);
+        if (tag.equals("attribute")) this.attributes.add(conceptId);
+    }
+
+    boolean acceptsModule(long moduleId) {
+        return this.modules == null || this.modules.contains(moduleId);
+    }
+
+    boolean acceptsConcept(long conceptId) {
+        return this.taggedConcepts == null || this.taggedConcepts.contains(conceptId);
+    }
+
+    boolean acceptsDescription(long moduleId, long conceptId) {
+        return this.acceptsModule(moduleId)
+                && (this.acceptsConcept(conceptId) || this.attributes.contains(conceptId));
+    }
+
+    boolean acceptsRelationship(long moduleId, long sourceId, long destinationId, long typeId, long characteristicTypeId) {
+        return this.acceptsModule(moduleId)
+                && (this.characteristicTypes == null || this.characteristicTypes.contains(characteristicTypeId))
+                && (this.relationshipTypes == null || this.relationshipTypes.contains(typeId))
+                && this.acceptsConcept(sourceId) && this.acceptsConcept(destinationId);
+    }
+
+    /**
+     * The options as text (saved as the metadata of the snapshots), ex:
+     * {@code modules=*;characteristicTypes=900000000000011006;relationshipTypes=116680003,363698007;semanticTags=disorder;order=FILE}
+     */
+    @Override
+    public String toString() {
+        return "modules=" + format(this.modules)
+                + ";characteristicTypes=" + format(this.characteristicTypes)
+                + ";relationshipTypes=" + format(this.relationshipTypes)
+                + ";semanticTags=" + format(this.semanticTags)
+                + ";order=" + this.order;
+    }
+
+    /**
+     * (Helper function) The options saved as text by toString() (the metadata
+     * of a snapshot), the default options if the text is empty
+     *
+     * @throws IllegalArgumentException if the text is not written by toString()
+     */
+    static LoadOptions parse(String text) {
+        LoadOptions options = new LoadOptions();
+        if (text.isEmpty()) return options;
+        for (String entry : text.split(";")) {
+            int equal = entry.indexOf('=');
+            if (equal < 0) throw new IllegalArgumentException("Invalid options: " + text);
+            String key = entry.substring(0, equal);
+            String value = entry.substring(equal + 1);
+            if (key.equals("order")) {
+                options.order = SNOMED.ConceptOrder.valueOf(value);
+                continue;
+            }
+            if (value.equals("*")) continue;
+            String[] values = value.isEmpty() ? new String[0] : value.split(",");
+            try {
+                switch (key) {
+                    case "modules": options.modules = toSet(parseLongs(values)); break;
+                    case "characteristicTypes": options.characteristicTypes = toSet(parseLongs(values)); break;
+                    case "relationshipTypes": options.relationshipTypes = toSet(parseLongs(values)); break;
+                    case "semanticTags": options.semanticTags = new HashSet<>(Arrays.asList(values)); break;
+                    default: throw new IllegalArgumentException("Invalid options: " + text);
+                }
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid options: " + text, ex);
+            }
+        }
+        return options;
+    }
+
+    private static long[] parseLongs(String[] values) {
+        long[] result = new long[values.length];
+        for (int i = 0; i < values.length; i++) result[i] = Long.parseLong(values[i]);
+        return result;
+    }
+
+    private static String format(HashSet<?> values) {
+        if (values == null) return "*";
+        StringBuilder result = new StringBuilder();
+        for (Object v : new TreeSet<Object>(values)) {
+            if (result.length() > 0) result.append(',');
+            result.append(v);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package snomed;
+
+import java.util.Arrays;
+
+/**
+ *
+ * A growable list of primitive longs, used for the lists of SNOMED-CT concept
+ * ids: the ids stay as long from the search to the output, without boxing
+ * them or converting them to Strings.
+ */
+public class LongList {
+
+    private long[] values;
+    private int size;
+
+    public LongList() {
+        this(16);
+    }
+
+    public LongList(int capacity) {
+        this.values = new long[Math.max(capacity, 1)];
+    }
+
+    public void add(long value) {
+        if (this.size == this.values.length) this.values = Arrays.copyOf(this.values, this.size * 2);
+        this.values[this.size++] = value;
+    }
+
+    public void addAll(LongList other) {
+        if (this.size + other.size > this.values.length)
+            this.values = Arrays.copyOf(this.values, Math.max(this.size + other.size, this.size * 2));
+        System.arraycopy(other.values, 0, this.values, this.size, other.size);
+        this.size += other.size;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if i is not in [0..size-1]
+     */
+    public long get(int i) {
+        if (i < 0 || i >= this.size) throw new IndexOutOfBoundsException("Index: " + i + ", size: " + this.size);
+        return this.values[i];
+    }
+
+    public boolean contains(long value) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.values[i] == value) return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(this.values, this.size);
+    }
+
+    /**
+     * The values separated by spaces
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0) result.append(' ');
+            result.append(this.values[i]);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,211 @@
+package snomed;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ *
+ * Builds a reduced SNOMED-CT (a slice) containing only the sub-hierarchies
+ * used by the meta-model, to test and run with a smaller ontology.
+ *
+ * The slice contains:
+ *     - the concepts of the roots (a concept id and its descendants, or an
+ *       expression constraint, as the sn_ codes of the mapping file)
+ *     - the values of their attributes and the types of their relationships
+ *       (is-a and the attributes), so that an expression constraint with a
+ *       refinement evaluates to the same concepts on the slice
+ *     - all their ancestors, so that the slice is still one hierarchy under
+ *       the root concept
+ *     - the relationships between two concepts of the slice
+ *     - the descriptions of the concepts of the slice, and of the types of
+ *       the relationships kept (the names of the attributes)
+ *
+ * The slice is written as a self-contained RF2 Snapshot (the rows are copied
+ * as they are from the release), which can be loaded like the full release:
+ *
+ *     new OntologySlicer(snomed).write(OntologySlicer.mappingRoots("res/mapping/mapping.txt"),
+ *             conceptsFile, relationshipsFile, descriptionsFile, "res/slice");
+ *     new SNOMED("res/slice/" + OntologySlicer.CONCEPTS_FILE, ...);
+ *
+ * The rows end with CRLF, as in the releases.
+ */
+public class OntologySlicer {
+
+    public static final String CONCEPTS_FILE = "sct2_Concept_Snapshot_Slice.txt";
+    public static final String RELATIONSHIPS_FILE = "sct2_Relationship_Snapshot_Slice.txt";
+    public static final String DESCRIPTIONS_FILE = "sct2_Description_Snapshot_Slice.txt";
+
+    private final SNOMED snomed;
+
+    /**
+     * @param snomed the full ontology, used to find the concepts of the slice
+     */
+    public OntologySlicer(SNOMED snomed) {
+        this.snomed = snomed;
+    }
+
+    /**
+     * The sn_ codes of a mapping file (see ResourcesMapper), without duplicates
+     *
+     * @param mappingFile mapping of the meta-model
+     * @throws IOException
+     */
+    public static List<String> mappingRoots(String mappingFile) throws IOException {
+        List<String> roots = new ArrayList<>();
+        BufferedReader reader = ReleaseReader.open(mappingFile);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("sn_") && !roots.contains(line.substring(3).trim()))
+                roots.add(line.substring(3).trim());
+        }
+        reader.close();
+        return roots;
+    }
+
+    /**
+     * The concepts of the slice: the concepts of the roots, the values and
+     * the types of their relationships, and the ancestors of all of them
+     *
+     * @param roots concept ids (the concept and its descendants) or expression constraints
+     * @return indexes of the concepts of the slice
+     * @throws IllegalArgumentException if a root is an unknown concept or an invalid expression
+     */
+    public ConceptSet slice(List<String> roots) {
+        EclQueryEngine ecl = this.snomed.getEclEngine();
+        ConceptSet slice = new ConceptSet();
+        for (String root : roots) {
+            String expression = root.matches("\\d+") ? "<< " + root : root;
+            slice = slice.or(ecl.evaluate(expression));
+        }
+
+        // add the values and the types of the relationships of the concepts of the roots
+        for (int c : slice.toArray()) {
+            int[] values = this.snomed.outNeighbors(c);
+            long[] typeIds = this.snomed.outTypeIds(c);
+            for (int k = 0; k < values.length; k++) {
+                slice.add(values[k]);
+                if (this.snomed.contains(typeIds[k])) slice.add(this.snomed.getIndex(typeIds[k]));
+            }
+        }
+
+        // add the ancestors, going up the IS-A parents of the concepts not seen yet
+        HierarchyIndex hierarchy = this.snomed.getHierarchy();
+        int[] stack = slice.toArray();
+        int size = stack.length;
+        while (size > 0) {
+            int c = stack[--size];
+            for (int p : hierarchy.parents(c)) {
+                if (!slice.add(p)) continue;
+                if (size == stack.length) stack = Arrays.copyOf(stack, stack.length * 2 + 1);
+                stack[size++] = p;
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * Write the slice of the given roots as a RF2 Snapshot, by copying the
+     * rows of the release files (see ReleaseReader for the accepted paths)
+     *
+     * @param roots concept ids (the concept and its descendants) or expression constraints
+     * @param conceptsFile concepts file of the release
+     * @param relationshipsFile relationships file of the release
+     * @param descriptionsFile descriptions file of the release
+     * @param directory directory where the three files of the slice are written
+     * @return number of concepts of the slice
+     * @throws IOException
+     */
+    public int write(List<String> roots, String conceptsFile, String relationshipsFile, String descriptionsFile, String directory) throws IOException {
+        ConceptSet slice = this.slice(roots);
+        HashSet<Long> ids = new HashSet<>();
+        for (int i = slice.nextSetBit(0); i >= 0; i = slice.nextSetBit(i + 1)) {
+            ids.add(this.snomed.getConceptId(i));
+        }
+        new File(directory).mkdirs();
+
+        // concepts: id
+        BufferedReader in = ReleaseReader.open(conceptsFile);
+        BufferedWriter out = create(directory, CONCEPTS_FILE);
+        out.write(in.readLine());
+        out.write("\r\n");
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty() || !ids.contains(field(line, 0))) continue;
+            out.write(line);
+            out.write("\r\n");
+        }
+        in.close();
+        out.close();
+
+        // relationships: sourceId and destinationId, keep the types for their names
+        HashSet<Long> types = new HashSet<>();
+        in = ReleaseReader.open(relationshipsFile);
+        out = create(directory, RELATIONSHIPS_FILE);
+        out.write(in.readLine());
+        out.write("\r\n");
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty() || !ids.contains(field(line, 4)) || !ids.contains(field(line, 5))) continue;
+            types.add(field(line, 7));
+            out.write(line);
+            out.write("\r\n");
+        }
+        in.close();
+        out.close();
+
+        // descriptions: conceptId
+        in = ReleaseReader.open(descriptionsFile);
+        out = create(directory, DESCRIPTIONS_FILE);
+        out.write(in.readLine());
+        out.write("\r\n");
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty()) continue;
+            long conceptId = field(line, 4);
+            if (!ids.contains(conceptId) && !types.contains(conceptId)) continue;
+            out.write(line);
+            out.write("\r\n");
+        }
+        in.close();
+        out.close();
+        return ids.size();
+    }
+
+    /**
+     * (Helper function) Parse the field k (0..) of a tab separated row as a long
+     */
+    private static long field(String line, int k) {
+        int start = 0;
+        for (int i = 0; i < k; i++) {
+            start = line.indexOf('\t', start) + 1;
+            if (start == 0) throw new IllegalArgumentException("RF2: missing field " + k + " in '" + line + "'");
+        }
+        int end = line.indexOf('\t', start);
+        return Long.parseLong(line.substring(start, end < 0 ? line.length() : end).trim());
+    }
+
+    private static BufferedWriter create(String directory, String name) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(directory, name)), StandardCharsets.UTF_8), 1 << 20);
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Slice the release with the roots of the meta-model mapping
+        String conceptsFile = "res/snomed/sct2_Concept_Snapshot_INT_20150731.txt";
+        String relationshipsFile = "res/snomed/sct2_Relationship_Snapshot_INT_20150731.txt";
+        String descriptionsFile = "res/snomed/sct2_Description_Snapshot-en_INT_20150731.txt";
+        String directory = args.length > 0 ? args[0] : "res/snomed/slice";
+
+        SNOMED snomed = new SNOMED(conceptsFile, relationshipsFile, descriptionsFile);
+        List<String> roots = mappingRoots("res/mapping/mapping.txt");
+        int size = new OntologySlicer(snomed).write(roots, conceptsFile, relationshipsFile, descriptionsFile, directory);
+        System.out.printf("Slice of %d roots: %d of %d concepts written to %s\n", roots.size(), size, snomed.C(), directory);
+    }
+}
@@ -1,11 +1,8 @@
 package snomed;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.StringTokenizer;
 
 /**
  * 
@@ -32,7 +29,7 @@ import java.util.StringTokenizer;
 
 class Relationship {
     private long id;
-    private String effectiveTime;
+    private int effectiveTime; // yyyymmdd
     private boolean active;
     private long moduleId;
     private long sourceId; // refers to the Concept to which a defining characteristic (attribute) applies
@@ -44,8 +41,8 @@ class Relationship {
     
     public Relationship(String relationshipId, String effectiveTime, String active, String moduleId, String sourceId, String destinationId, String relationshipGroup,String typeId, String characteristicTypeId, String modifierId) {
         this.id = Long.parseLong(relationshipId);
-        this.effectiveTime = effectiveTime;
-        if (active =="1") this.active = true;
+        this.effectiveTime = Integer.parseInt(effectiveTime);
+        if (active.equals("1")) this.active = true;
         else this.active = false;
         this.moduleId = Long.parseLong(moduleId);
         this.sourceId = Long.parseLong(sourceId);
@@ -56,12 +53,25 @@ class Relationship {
         this.modifierId = Long.parseLong(modifierId);
     }
 
+    Relationship(long relationshipId, int effectiveTime, boolean active, long moduleId, long sourceId, long destinationId, long relationshipGroup, long typeId, long characteristicTypeId, long modifierId) {
+        this.id = relationshipId;
+        this.effectiveTime = effectiveTime;
+        this.active = active;
+        this.moduleId = moduleId;
+        this.sourceId = sourceId;
+        this.destinationId = destinationId;
+        this.relationshipGroup = relationshipGroup;
+        this.typeId = typeId;
+        this.characteristicTypeId = characteristicTypeId;
+        this.modifierId = modifierId;
+    }
+
     public long getId() {
         return id;
     }
 
     public String getEffectiveTime() {
-        return effectiveTime;
+        return Integer.toString(effectiveTime);
     }
 
     public boolean isActive() {
@@ -117,6 +127,22 @@ public class RelationshipsTable implements Iterable<Relationship> {
     }
     
     public RelationshipsTable(String relationshipsFile) throws IOException {
+        this(relationshipsFile, true);
+    }
+
+    /**
+     * Load the rows of the file, all of them (active or not) when activeOnly is
+     * false, as needed to apply a Delta release.
+     */
+    public RelationshipsTable(String relationshipsFile, boolean activeOnly) throws IOException {
+        this(relationshipsFile, activeOnly, null);
+    }
+
+    /**
+     * Load the rows of the file accepted by the options (module, characteristic
+     * type, type, concepts), the other rows are skipped before being built
+     */
+    public RelationshipsTable(String relationshipsFile, boolean activeOnly, LoadOptions options) throws IOException {
         /* =========================
          * Loading the relationships
          * =========================
@@ -131,32 +157,34 @@ public class RelationshipsTable implements Iterable<Relationship> {
          * characteristicTypeId
          * moduleId
          */
-        BufferedReader bufferedReader = null;
-        StringTokenizer st = null;
-        
         // read the file
-        bufferedReader = new BufferedReader(new FileReader(relationshipsFile));
-        
-        // get the fields
-        st = new StringTokenizer(bufferedReader.readLine());
+        Rf2Scanner scanner = new Rf2Scanner(relationshipsFile);
         
         // print the fields
         System.out.println("Loading relationships : ");
-        while (st.hasMoreTokens()) System.out.println("\t" + st.nextToken());
+        for (String field : scanner.header()) System.out.println("\t" + field);
         
         // Load the relationships id --> relationship
         relationships = new HashMap<Integer, Relationship>();
         int counter = 0;
         
-        do{
-            String line = bufferedReader.readLine();
-            if (line == null) break;
-            String[] s = line.split("\t");            
-            if (s[2].equals("0")) continue;
-            Relationship relationship = new Relationship(s[0],s[1],s[2],s[3],s[4],s[5],s[6],s[7],s[8],s[9]);
+        while (scanner.nextRow()) {
+            long relationshipId = scanner.nextLong();
+            int effectiveTime = (int) scanner.nextLong();
+            boolean active = scanner.nextLong() == 1;
+            if (activeOnly && !active) continue;
+            long moduleId = scanner.nextLong();
+            long sourceId = scanner.nextLong();
+            long destinationId = scanner.nextLong();
+            long relationshipGroup = scanner.nextLong();
+            long typeId = scanner.nextLong();
+            long characteristicTypeId = scanner.nextLong();
+            if (options != null && !options.acceptsRelationship(moduleId, sourceId, destinationId, typeId, characteristicTypeId)) continue;
+            Relationship relationship = new Relationship(relationshipId, effectiveTime, active, moduleId,
+                    sourceId, destinationId, relationshipGroup, typeId, characteristicTypeId, scanner.nextLong());
             relationships.put(counter++, relationship);
-        } while(true);
-        bufferedReader.close();
+        }
+        scanner.close();
         System.out.println("Loading relationships done! ");
     }
     
@@ -0,0 +1,126 @@
+package snomed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ *
+ * Opens the files of the releases (SNOMED-CT RF2, UMLS MRCONSO.RRF) directly
+ * from their compressed archives, without extracting them on the disk.
+ *
+ * A path can be:
+ *     - a plain file:              res/snomed/sct2_Concept_Snapshot_INT_20150731.txt
+ *     - a gzip file:               res/eval/MRCONSO.RRF.gz
+ *     - an entry of a zip archive: SnomedCT_RF2Release_INT_20150731.zip!sct2_Concept_Snapshot
+ *       the name after '!' is the full name of the entry, or the end of it, or
+ *       a part of its file name (the first entry matching is used)
+ *     - a zip archive containing only one file: res/eval/MRCONSO.RRF.zip
+ *
+ * The entries are inflated on the fly through large buffers.
+ */
+public class ReleaseReader {
+
+    // size of the buffers of the compressed and decoded streams
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private ReleaseReader() {
+    }
+
+    /**
+     * Open a text file of a release (UTF-8)
+     *
+     * @param path plain file, gzip file, zip entry (archive.zip!name) or zip with one file
+     * @throws IOException if the file or the zip entry can not be found
+     */
+    public static BufferedReader open(String path) throws IOException {
+        return new BufferedReader(new InputStreamReader(openStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Open a file of a release as bytes (buffered)
+     *
+     * @param path plain file, gzip file, zip entry (archive.zip!name) or zip with one file
+     * @throws IOException if the file or the zip entry can not be found
+     */
+    public static InputStream openStream(String path) throws IOException {
+        int separator = path.indexOf('!');
+        String file = separator < 0 ? path : path.substring(0, separator);
+        String lower = file.toLowerCase();
+        if (lower.endsWith(".zip")) {
+            return openZipEntry(file, separator < 0 ? null : path.substring(separator + 1));
+        }
+        InputStream in = new FileInputStream(file);
+        if (lower.endsWith(".gz")) {
+            return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+        }
+        return new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * (Helper function) Open the entry of a zip archive matching name
+     * (the only file of the archive if name is null). The archive is closed
+     * with the returned stream.
+     */
+    private static InputStream openZipEntry(String archive, String name) throws IOException {
+        final ZipFile zip = new ZipFile(archive);
+        ZipEntry entry = null;
+        try {
+            entry = findEntry(zip, name);
+        } finally {
+            if (entry == null) zip.close();
+        }
+        if (entry == null) {
+            throw new FileNotFoundException((name == null ? "No single file" : "No entry matching " + name) + " in " + archive);
+        }
+        InputStream in = new FilterInputStream(zip.getInputStream(entry)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    zip.close();
+                }
+            }
+        };
+        return new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * (Helper function) The entry named name, or ending with /name, or whose file
+     * name contains name. If name is null, the only file of the archive.
+     */
+    private static ZipEntry findEntry(ZipFile zip, String name) {
+        if (name != null) {
+            ZipEntry entry = zip.getEntry(name);
+            if (entry != null && !entry.isDirectory()) return entry;
+        }
+        ZipEntry found = null;
+        int files = 0;
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory()) continue;
+            files++;
+            if (name == null) {
+                found = entry;
+                continue;
+            }
+            String fileName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+            if (entry.getName().endsWith("/" + name)) return entry;
+            if (found == null && fileName.contains(name)) found = entry;
+        }
+        if (name == null && files != 1) return null;
+        return found;
+    }
+}
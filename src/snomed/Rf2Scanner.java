@@ -0,0 +1,199 @@
+package snomed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *
+ * Byte level reader of the tab separated files of the releases (RF2).
+ *
+ * The rows are read field by field straight from a large byte buffer:
+ *     - nextLong() parses the digits of a field without building a String
+ *     - skip() jumps over a field
+ *     - nextString() decodes a field (UTF-8), only for the fields really used
+ *       such as the term of the descriptions
+ *
+ * The buffer always holds the whole current row, it is refilled (and grown
+ * for very long rows) when a row does not fit in what is left of it.
+ *
+ * Usage:
+ *     Rf2Scanner scanner = new Rf2Scanner(file);
+ *     while (scanner.nextRow()) {
+ *         long id = scanner.nextLong();
+ *         scanner.skip();
+ *         ...
+ *     }
+ *     scanner.close();
+ */
+class Rf2Scanner implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final InputStream in;
+    private final String[] header;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int limit;      // end of the bytes read in the buffer
+    private int position;   // current position in the current row
+    private int rowEnd;     // position of the end of the current row ('\n' or end of file)
+    private boolean eof;
+
+    // last value returned by nextCachedString()
+    private byte[] cachedBytes = new byte[0];
+    private String cachedString;
+
+    /**
+     * Open a release file (see ReleaseReader for the accepted paths) and read its header
+     *
+     * @param path file of the release
+     * @throws IOException
+     */
+    Rf2Scanner(String path) throws IOException {
+        this.in = ReleaseReader.openStream(path);
+        this.position = 0;
+        this.rowEnd = -1;
+        if (!this.nextRow()) {
+            this.header = new String[0];
+            return;
+        }
+        this.header = new String(this.buffer, this.position, this.rowEnd - this.position, StandardCharsets.UTF_8)
+                .replace("\r", "").split("\t");
+    }
+
+    /**
+     * The names of the columns (first row of the file)
+     */
+    String[] header() {
+        return this.header;
+    }
+
+    /**
+     * Move to the next row, skipping what is left of the current one.
+     * Empty rows are skipped.
+     *
+     * @return false at the end of the file
+     */
+    boolean nextRow() throws IOException {
+        int start = this.rowEnd + 1;
+        while (true) {
+            // look for the end of the row in the bytes already read
+            int end = start;
+            while (end < this.limit && this.buffer[end] != '\n') end++;
+            if (end < this.limit || (this.eof && end > start)) {
+                if (end == start || (end == start + 1 && this.buffer[start] == '\r')) {
+                    // empty row
+                    start = end + 1;
+                    continue;
+                }
+                this.position = start;
+                this.rowEnd = end;
+                return true;
+            }
+            if (this.eof) return false;
+
+            // the row is not complete: move it to the beginning of the buffer and read more
+            int length = this.limit - start;
+            if (length == this.buffer.length) {
+                byte[] larger = new byte[this.buffer.length * 2];
+                System.arraycopy(this.buffer, start, larger, 0, length);
+                this.buffer = larger;
+            } else {
+                System.arraycopy(this.buffer, start, this.buffer, 0, length);
+            }
+            this.limit = length;
+            start = 0;
+            int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            while (read == 0) read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (read < 0) this.eof = true;
+            else this.limit += read;
+        }
+    }
+
+    /**
+     * (Helper function) End of the current field (tab, end of row or '\r' before it)
+     */
+    private int fieldEnd() {
+        int end = this.position;
+        while (end < this.rowEnd && this.buffer[end] != '\t') end++;
+        if (end == this.rowEnd && end > this.position && this.buffer[end - 1] == '\r') end--;
+        return end;
+    }
+
+    /**
+     * (Helper function) Move after the field ending at end
+     */
+    private void advance(int end) {
+        this.position = end < this.rowEnd && this.buffer[end] == '\t' ? end + 1 : this.rowEnd;
+    }
+
+    /**
+     * Parse the current field as a long, and move to the next field
+     *
+     * @throws IllegalArgumentException if the field is not a number
+     */
+    long nextLong() {
+        int end = this.fieldEnd();
+        int i = this.position;
+        boolean negative = i < end && this.buffer[i] == '-';
+        if (negative) i++;
+        if (i == end) throw this.error("expected a number");
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = this.buffer[i] - '0';
+            if (digit < 0 || digit > 9) throw this.error("expected a number");
+            value = value * 10 + digit;
+        }
+        this.advance(end);
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decode the current field (UTF-8), and move to the next field
+     */
+    String nextString() {
+        int end = this.fieldEnd();
+        String value = new String(this.buffer, this.position, end - this.position, StandardCharsets.UTF_8);
+        this.advance(end);
+        return value;
+    }
+
+    /**
+     * Same as nextString(), but returns the same String as the previous call
+     * when the field did not change: for the fields having few distinct values
+     * (ex. the language code)
+     */
+    String nextCachedString() {
+        int end = this.fieldEnd();
+        int length = end - this.position;
+        boolean same = this.cachedString != null && length == this.cachedBytes.length;
+        for (int i = 0; same && i < length; i++) {
+            same = this.buffer[this.position + i] == this.cachedBytes[i];
+        }
+        if (!same) {
+            this.cachedBytes = new byte[length];
+            System.arraycopy(this.buffer, this.position, this.cachedBytes, 0, length);
+            this.cachedString = new String(this.cachedBytes, StandardCharsets.UTF_8);
+        }
+        this.advance(end);
+        return this.cachedString;
+    }
+
+    /**
+     * Skip the current field
+     */
+    void skip() {
+        this.advance(this.fieldEnd());
+    }
+
+    private IllegalArgumentException error(String message) {
+        int end = this.fieldEnd();
+        return new IllegalArgumentException("RF2: " + message + ", found '"
+                + new String(this.buffer, this.position, end - this.position, StandardCharsets.UTF_8) + "'");
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+}
@@ -2,13 +2,15 @@ package snomed;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Scanner;
-import java.util.Stack;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,16 +33,34 @@ Distributed in the following three textual files:
      - Description: contains the names of the relationships and concepts
 
     (Other files exist too, but not required for our usage)
+
+Once loaded, SNOMED is a read-only snapshot: all its public methods only read
+it, and the indexes built on the first request (hierarchy, attributes, ECL,
+similarity) are built once and published safely. Any number of threads can
+query the same SNOMED without locks, as long as it was itself published safely
+(final or volatile field, concurrent collection, thread start...).
+A Delta release is not applied to it: withDelta() returns a new snapshot, to
+be swapped in its place (see SnomedHolder). The interactive console is in
+SnomedConsole.
 */
 
 public class SNOMED {
 	
     private static final float LEVENSHTEIN_THRESHOLD = 0.1f;
+    private static final long IS_A = 116680003L;
 	private final static String CONCEPTS_FILE_PATH = "res/snomed/sct2_Concept_Snapshot_INT_20150731.txt";
     private final static String RELATIONSHIPS_FILE_PATH = "res/snomed/sct2_Relationship_Snapshot_INT_20150731.txt";
     private final static String DESCRIPTIONS_FILE_PATH = "res/snomed/sct2_Description_Snapshot-en_INT_20150731.txt";
     
     public enum SearchMethod {REG_EXP, LEVENSHTEIN};
+
+    /**
+     * Order of the concept indexes (0..N-1), see ConceptOrdering:
+     *     - FILE: order of the rows of the concepts file
+     *     - BFS, DFS: breadth or depth first from the root, following the IS-A children
+     *     - RCM: reverse Cuthill-McKee over all the relationships
+     */
+    public enum ConceptOrder {FILE, BFS, DFS, RCM};
     
     /**
      * 
@@ -90,18 +110,57 @@ public class SNOMED {
      * The list of the names of each concept
      * From concept ID, to its nomenclature
      */
-    HashMap<Long, Nomenclature> nomenclatureOfConcepts;
+    private final HashMap<Long, Nomenclature> nomenclatureOfConcepts = new HashMap<Long, Nomenclature>();
 
     /**
      * The list of the names of each relationship
      * From concept ID, to its nomenclature
      */
-    HashMap<Long, Nomenclature> nomenclatureOfRelationships;
+    private final HashMap<Long, Nomenclature> nomenclatureOfRelationships = new HashMap<Long, Nomenclature>();
+    
+    /**
+     * A description loaded in the names above: the Delta releases identify
+     * the descriptions by their id, not by their term
+     */
+    private static final class DescriptionEntry {
+        private final long conceptId;
+        private final String term;
+        private final boolean fsn;
+
+        private DescriptionEntry(long conceptId, String term, boolean fsn) {
+            this.conceptId = conceptId;
+            this.term = term;
+            this.fsn = fsn;
+        }
+    }
+
+    /**
+     * From description ID, to the name it gives to its concept or relationship
+     * (to apply the Delta releases)
+     */
+    private final HashMap<Long, DescriptionEntry> descriptionsById = new HashMap<Long, DescriptionEntry>();
+
+    /**
+     * The names of the concepts inactivated by a Delta release, given back
+     * if they are reactivated
+     */
+    private final HashMap<Long, Nomenclature> nomenclatureOfInactiveConcepts = new HashMap<Long, Nomenclature>();
+
+    /**
+     * The names of the concepts and relationships kept off-heap,
+     * null when they are loaded in the nomenclatures above (empty otherwise)
+     */
+    private final DescriptionStore descriptionStore;
+
+    /**
+     * The options of the loading (filters and order), saved with the snapshots
+     */
+    private final LoadOptions options;
     
     /**
      * List of codes of the relationships
      */
-    HashSet<Long> relationshipsCodes;
+    private final HashSet<Long> relationshipsCodes = new HashSet<Long>();
 
     /**
      * 
@@ -183,7 +242,7 @@ public class SNOMED {
         }
 
         public boolean isA() {
-            return this.typeId == 116680003;
+            return this.typeId == IS_A;
         }
     }
 
@@ -197,14 +256,46 @@ public class SNOMED {
      * Used to get the index number of a concept id to improve the lookup of
      * concepts indexes
      */
-    private HashMap<Long, Integer> reversedIndex;
+    private final HashMap<Long, Integer> reversedIndex = new HashMap<Long, Integer>();
+
+    /**
+     * The relationships graph kept off-heap, null when it is loaded in the
+     * nodes above (the nodes and the reversedIndex are then not used)
+     */
+    private final AdjacencyStore adjacency;
 
     /**
      * Total number of relationships
      */
-    int R;
+    private int R;
 
-	private static Scanner in;
+    /**
+     * IS-A hierarchy index (built on the first request)
+     * The indexes are volatile: a thread building one publishes it safely to the others.
+     */
+    private volatile HierarchyIndex hierarchy;
+
+    /**
+     * Information content based similarity (built on the first request)
+     */
+    private volatile SemanticSimilarity similarity;
+
+    /**
+     * Relationships indexed by their typeId (built on the first request)
+     */
+    private volatile AttributeIndex attributes;
+
+    /**
+     * Expression constraints query engine (built on the first request)
+     */
+    private volatile EclQueryEngine eclEngine;
+
+    /**
+     * Indexes of the concepts inactivated by a Delta release. Their index is
+     * not reused by another concept: they stay in the array of concepts
+     * without relationships, and get the same index if they are reactivated.
+     */
+    private ConceptSet inactiveConcepts = new ConceptSet();
 
     /**
      * 
@@ -217,6 +308,165 @@ public class SNOMED {
      * @throws IOException
      */
     public SNOMED(String conceptsFile, String relationshipsFile, String descriptionsFile) throws IOException {
+        this(conceptsFile, relationshipsFile, descriptionsFile, ConceptOrder.FILE);
+    }
+
+    /**
+     * 
+     * The constructor loads SNOMED into memory from three textual files of
+     * SNOMED-CT, and renumbers the concepts in the given order to improve the
+     * memory locality of the graph traversals.
+     * 
+     * @param concepts file containing_the_concepts
+     * @param relationships file_containing_the_relationships
+     * @param descriptions file_contains_the_descriptions
+     * @param order order of the concept indexes
+     * @throws IOException
+     */
+    public SNOMED(String conceptsFile, String relationshipsFile, String descriptionsFile, ConceptOrder order) throws IOException {
+        this(conceptsFile, relationshipsFile, descriptionsFile, new LoadOptions().order(order));
+    }
+
+    /**
+     * 
+     * The constructor loads into memory only the part of SNOMED-CT accepted
+     * by the options (modules, characteristic types, relationship types,
+     * semantic tags), the other rows are skipped by the parsers.
+     * 
+     * @param concepts file containing_the_concepts
+     * @param relationships file_containing_the_relationships
+     * @param descriptions file_contains_the_descriptions
+     * @param options filters and order of the loading
+     * @throws IOException
+     */
+    public SNOMED(String conceptsFile, String relationshipsFile, String descriptionsFile, LoadOptions options) throws IOException {
+        // the semantic tags are read from the Fully Specified Names first,
+        // into a copy of the options: the caller's options are not changed
+        this.options = options.copy();
+        if (this.options.hasSemanticTags()) {
+            this.options.resolveSemanticTags(descriptionsFile);
+            this.options.resolveAncestors(relationshipsFile);
+        }
+        this.descriptionStore = null;
+        this.adjacency = null;
+        this.loadGraph(conceptsFile, relationshipsFile);
+        this.loadDescriptions(descriptionsFile);
+    }
+
+    /**
+     * 
+     * The constructor loads the graph of SNOMED into memory from the concepts
+     * and relationships files of SNOMED-CT, the names of the concepts are
+     * read on demand from a description store (see saveDescriptions()).
+     * 
+     * @param concepts file containing_the_concepts
+     * @param relationships file_containing_the_relationships
+     * @param descriptions memory-mapped names of the concepts
+     * @param order order of the concept indexes
+     * @throws IOException
+     */
+    public SNOMED(String conceptsFile, String relationshipsFile, DescriptionStore descriptions, ConceptOrder order) throws IOException {
+        this(conceptsFile, relationshipsFile, descriptions, new LoadOptions().order(order));
+    }
+
+    /**
+     * 
+     * Same as above, loading only the part of SNOMED-CT accepted by the options
+     * 
+     * @param concepts file containing_the_concepts
+     * @param relationships file_containing_the_relationships
+     * @param descriptions memory-mapped names of the concepts
+     * @param options filters and order of the loading
+     * @throws IOException
+     */
+    public SNOMED(String conceptsFile, String relationshipsFile, DescriptionStore descriptions, LoadOptions options) throws IOException {
+        this.options = options.copy();
+        if (this.options.hasSemanticTags()) {
+            this.options.resolveSemanticTags(descriptions);
+            this.options.resolveAncestors(relationshipsFile);
+        }
+        this.descriptionStore = descriptions;
+        this.adjacency = null;
+        this.loadGraph(conceptsFile, relationshipsFile);
+    }
+
+    /**
+     * 
+     * The constructor opens SNOMED from its snapshots: the graph is read from
+     * an adjacency store (see saveAdjacency()) and the names from a
+     * description store (see saveDescriptions()). Both stay off-heap, in
+     * memory-mapped files shared by all the JVMs opening them; only the
+     * indexes built on the first request (hierarchy, attributes, ...) are on
+     * the heap. The concepts keep the indexes they had when the graph was saved.
+     * 
+     * @param graph memory-mapped relationships graph
+     * @param descriptions memory-mapped names of the concepts
+     * @throws IllegalArgumentException if the metadata of the graph are not valid options
+     */
+    public SNOMED(AdjacencyStore graph, DescriptionStore descriptions) {
+        this.options = LoadOptions.parse(graph.getMetadata());
+        this.descriptionStore = descriptions;
+        this.adjacency = graph;
+        for (long typeId : graph.getTypeIds()) this.relationshipsCodes.add(typeId);
+        this.R = graph.edgeCount();
+    }
+
+    /**
+     * (Helper function) A copy of base, for withDelta(): the nodes, their
+     * edges and the names are copied so that the Delta does not change base.
+     * The indexes built on base are kept, withDelta() replaces them by their
+     * updated copies (they are never changed in place).
+     */
+    private SNOMED(SNOMED base) {
+        this.options = base.options.copyResolved();
+        this.descriptionStore = base.descriptionStore;
+        this.adjacency = null;
+        this.relationshipsCodes.addAll(base.relationshipsCodes);
+        this.reversedIndex.putAll(base.reversedIndex);
+        this.R = base.R;
+        this.inactiveConcepts = base.inactiveConcepts;
+
+        // the nodes, then their edges
+        int n = base.concepts.length;
+        this.concepts = new Node[n];
+        for (int i = 0; i < n; i++) {
+            this.concepts[i] = new Node(i, base.concepts[i].getId());
+        }
+        for (int i = 0; i < n; i++) {
+            for (Edge e : base.concepts[i].getRelationships()) {
+                this.concepts[i].addEdge(new Edge(e.getId(), this.concepts[e.next.getIndex()], e.getTypeId(), e.getRelationshipGroup()));
+            }
+        }
+
+        // the names (a description entry is never changed, it can be shared)
+        this.copyNames(base.nomenclatureOfConcepts, this.nomenclatureOfConcepts);
+        this.copyNames(base.nomenclatureOfRelationships, this.nomenclatureOfRelationships);
+        this.copyNames(base.nomenclatureOfInactiveConcepts, this.nomenclatureOfInactiveConcepts);
+        this.descriptionsById.putAll(base.descriptionsById);
+
+        this.hierarchy = base.hierarchy;
+        this.attributes = base.attributes;
+        this.similarity = base.similarity;
+    }
+
+    /**
+     * (Helper function) Copy the names of the concepts from one map to another
+     */
+    private void copyNames(HashMap<Long, Nomenclature> from, HashMap<Long, Nomenclature> to) {
+        for (Map.Entry<Long, Nomenclature> entry : from.entrySet()) {
+            Nomenclature nmc = new Nomenclature();
+            nmc.setFNS(entry.getValue().getFNS());
+            for (String synonym : entry.getValue().getSynonyms()) nmc.addSynonym(synonym);
+            to.put(entry.getKey(), nmc);
+        }
+    }
+
+    /**
+     * (Helper function) Load the concepts and the relationships
+     */
+    private void loadGraph(String conceptsFile, String relationshipsFile) throws IOException {
+        LoadOptions options = this.options;
+
         /*
          * ====================
          * Loading the concepts 
@@ -234,10 +484,7 @@ public class SNOMED {
          */
 
         // Load the concepts table from the file
-        ConceptsTable c = new ConceptsTable(conceptsFile);
-
-        // Initialize the reversedIndex of concepts id -> index
-        reversedIndex = new HashMap<Long, Integer>(); 
+        ConceptsTable c = new ConceptsTable(conceptsFile, true, options);
 
         // total number of active concepts in SNOMED-CT
         int N = c.size();
@@ -282,27 +529,27 @@ public class SNOMED {
          * =========================
          */
 
-        // keep track of the list of relationships available in SNOMED.
-        relationshipsCodes = new HashSet<Long>();
-
         // count the number of relationships in the graph
         R = 0;
 
         // Load the relationships table from the file
-        RelationshipsTable r = new RelationshipsTable(relationshipsFile);
+        RelationshipsTable r = new RelationshipsTable(relationshipsFile, true, options);
 
         Iterator<Relationship> relIterator = r.iterator();
         while (relIterator.hasNext()) {
             Relationship rel = relIterator.next();
             
             // get the index of the starting node (concept) of the relationship
-            int indexFrom = reversedIndex.get(rel.getSourceId());
+            Integer indexFrom = reversedIndex.get(rel.getSourceId());
             
             // get the index of the finish node (concept) of the relationship
-            int indexTo = reversedIndex.get(rel.getDestinationId());
+            Integer indexTo = reversedIndex.get(rel.getDestinationId());
             
-            // build the edge (reltionId, conceptIdTo, relationTypeId, relationCharacteTypeId)
-            Edge edge = new Edge(rel.getId(), concepts[indexTo], rel.getTypeId(), rel.getCharacteristicTypeId());
+            // skip the relationships of the concepts filtered out by the options
+            if (indexFrom == null || indexTo == null) continue;
+            
+            // build the edge (reltionId, conceptIdTo, relationTypeId, relationshipGroup)
+            Edge edge = new Edge(rel.getId(), concepts[indexTo], rel.getTypeId(), rel.getRelationshipGroup());
             
             // add the edge to the list of edges of the conceptIdFrom
             concepts[indexFrom].addEdge(edge);
@@ -313,7 +560,18 @@ public class SNOMED {
             // count the number of relationships
             R++; 
         }
+        r = null; // free the memory
+
+        // renumber the concepts
+        if (options.getOrder() != ConceptOrder.FILE) {
+            this.reorder(options.getOrder());
+        }
+    }
 
+    /**
+     * (Helper function) Load the names of the concepts and relationships
+     */
+    private void loadDescriptions(String descriptionsFile) throws IOException {
         /*
          * ========================
          * Loading the descriptions
@@ -330,18 +588,11 @@ public class SNOMED {
          * ========================
          */
 
-        // Initialize the list of names for concepts and relationships
-        nomenclatureOfConcepts = new HashMap<Long, Nomenclature>();
-        nomenclatureOfRelationships = new HashMap<Long, Nomenclature>();
-
         // Load the descriptions table from the file
-        DescriptionsTable d = new DescriptionsTable(descriptionsFile);
+        DescriptionsTable d = new DescriptionsTable(descriptionsFile, true, this.options);
 
         Iterator<Description> dstIterator = d.iterator();
-        int counter = 0;
         while (dstIterator.hasNext()) {
-        	//TODO remove this (used for testing performances with different Ontology sizes
-        	//if (counter++ == 300000) break;
             Description dst = dstIterator.next();
             Long conceptId = dst.getConceptId();
 
@@ -360,6 +611,7 @@ public class SNOMED {
                 else
                     // add it as a Synonym
                     this.nomenclatureOfRelationships.get(conceptId).addSynonym(dst.getTerm());
+                this.descriptionsById.put(dst.getDescriptionId(), new DescriptionEntry(conceptId, dst.getTerm(), dst.isFSN()));
             }
             else
             {
@@ -379,6 +631,7 @@ public class SNOMED {
                     else
                         // add it as a Synonym
                         this.nomenclatureOfConcepts.get(conceptId).addSynonym(dst.getTerm());
+                    this.descriptionsById.put(dst.getDescriptionId(), new DescriptionEntry(conceptId, dst.getTerm(), dst.isFSN()));
                 }
             }
             
@@ -397,7 +650,24 @@ public class SNOMED {
      * @return closestAncestralConcept
      */
     public Node closestAncestralConcept(Node conceptA, Node conceptB) {
-        return null;
+        int index = this.getSemanticSimilarity().mostInformativeCommonAncestor(conceptA.getIndex(), conceptB.getIndex());
+        if (index < 0) return null;
+        return this.concepts[index];
+    }
+
+    /**
+     * 
+     * Return the id of the closest common concept in the IS-A hierarchy of
+     * SNOMED linking conceptIdA and conceptIdB together.
+     * 
+     * @param conceptIdA
+     * @param conceptIdB
+     * @return closestAncestralConceptId or -1 if none
+     */
+    public long closestAncestralConcept(long conceptIdA, long conceptIdB) {
+        int index = this.getSemanticSimilarity().mostInformativeCommonAncestor(this.getIndex(conceptIdA), this.getIndex(conceptIdB));
+        if (index < 0) return -1;
+        return this.getConceptId(index);
     }
 
     /**
@@ -450,179 +720,754 @@ public class SNOMED {
         return null;
     }
 
+    /**
+     * (Helper function) Renumber the concepts in the given order.
+     * The nodes and their edges are allocated again in the new order, so that
+     * the related concepts are close in memory too.
+     */
+    private void reorder(ConceptOrder order) {
+        int n = this.concepts.length;
+        int[] permutation;
+        if (order == ConceptOrder.RCM) {
+            // all the relationships, in both directions
+            int[] offsets = new int[n + 1];
+            for (Node node : this.concepts) {
+                for (Edge e : node.getRelationships()) {
+                    offsets[node.getIndex() + 1]++;
+                    offsets[e.next.getIndex() + 1]++;
+                }
+            }
+            for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+            int[] position = Arrays.copyOf(offsets, n);
+            int[] neighbors = new int[offsets[n]];
+            for (Node node : this.concepts) {
+                for (Edge e : node.getRelationships()) {
+                    neighbors[position[node.getIndex()]++] = e.next.getIndex();
+                    neighbors[position[e.next.getIndex()]++] = node.getIndex();
+                }
+            }
+            permutation = ConceptOrdering.reverseCuthillMcKee(n, offsets, neighbors);
+        } else {
+            // the IS-A children of each concept
+            int[] offsets = new int[n + 1];
+            boolean[] isRoot = new boolean[n];
+            Arrays.fill(isRoot, true);
+            for (Node node : this.concepts) {
+                for (Edge e : node.getRelationships()) {
+                    if (!e.isA()) continue;
+                    offsets[e.next.getIndex() + 1]++;
+                    isRoot[node.getIndex()] = false;
+                }
+            }
+            for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+            int[] position = Arrays.copyOf(offsets, n);
+            int[] children = new int[offsets[n]];
+            for (Node node : this.concepts) {
+                for (Edge e : node.getRelationships()) {
+                    if (e.isA()) children[position[e.next.getIndex()]++] = node.getIndex();
+                }
+            }
+            permutation = ConceptOrdering.hierarchical(n, offsets, children, isRoot, order == ConceptOrder.DFS);
+        }
+
+        // allocate the nodes in the new order
+        Node[] reordered = new Node[n];
+        for (Node node : this.concepts) {
+            int index = permutation[node.getIndex()];
+            reordered[index] = new Node(index, node.getId());
+            this.reversedIndex.put(node.getId(), index);
+        }
+        // then their edges
+        int[] inverse = new int[n];
+        for (int i = 0; i < n; i++) inverse[permutation[i]] = i;
+        for (int i = 0; i < n; i++) {
+            for (Edge e : this.concepts[inverse[i]].getRelationships()) {
+                Node next = reordered[permutation[e.next.getIndex()]];
+                reordered[i].addEdge(new Edge(e.getId(), next, e.getTypeId(), e.getRelationshipGroup()));
+            }
+        }
+        this.concepts = reordered;
+    }
+
+    /**
+     * (Helper function) Returns the names of a concept, decoded from the
+     * description store if any. null if the concept has no names.
+     */
+    private Nomenclature getNomenclature(long conceptId) {
+        if (this.descriptionStore == null) {
+            Nomenclature nomenclature = this.nomenclatureOfConcepts.get(conceptId);
+            return nomenclature != null ? nomenclature : this.nomenclatureOfRelationships.get(conceptId);
+        }
+        DescriptionStore.Cursor cursor = this.descriptionStore.terms(conceptId);
+        if (!cursor.next()) return null;
+        Nomenclature nomenclature = new Nomenclature();
+        do {
+            if (cursor.isFSN()) nomenclature.setFNS(cursor.term());
+            else nomenclature.addSynonym(cursor.term());
+        } while (cursor.next());
+        return nomenclature;
+    }
+
+    /**
+     * (Helper function) Iterate over the ids of the concepts having names
+     * (the store also gives the relationships, skip them with relationshipsCodes)
+     */
+    private Iterator<Long> namedConcepts() {
+        if (this.descriptionStore == null)
+            return this.nomenclatureOfConcepts.keySet().iterator();
+        final DescriptionStore store = this.descriptionStore;
+        return new Iterator<Long>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.position < store.size();
+            }
+
+            @Override
+            public Long next() {
+                return store.getConceptId(this.position++);
+            }
+        };
+    }
+
+    /**
+     * Save the names of the concepts and relationships into a description
+     * store file, to be used with SNOMED(concepts, relationships, DescriptionStore.open(path), order)
+     *
+     * @param path description store file to write
+     * @throws IOException
+     */
+    public void saveDescriptions(String path) throws IOException {
+        HashMap<Long, String> fsn = new HashMap<>();
+        HashMap<Long, List<String>> synonyms = new HashMap<>();
+        List<Long> ids = new ArrayList<>(this.relationshipsCodes);
+        Iterator<Long> concepts = this.namedConcepts();
+        while (concepts.hasNext()) ids.add(concepts.next());
+        for (Long id : ids) {
+            Nomenclature nomenclature = this.getNomenclature(id);
+            if (nomenclature == null) continue;
+            if (nomenclature.getFNS() != null) fsn.put(id, nomenclature.getFNS());
+            if (!nomenclature.getSynonyms().isEmpty()) synonyms.put(id, nomenclature.getSynonyms());
+        }
+        DescriptionStore.write(path, fsn, synonyms, this.options.toString());
+    }
+
+    /**
+     * The changes made by a Delta release, used to update the derived indexes
+     */
+    private static class DeltaChanges {
+        // relationships added or removed
+        private int count;
+        private int[] sources = new int[16];
+        private int[] destinations = new int[16];
+        private long[] typeIds = new long[16];
+        private int[] groups = new int[16];
+        private boolean[] added = new boolean[16];
+
+        // concepts whose IS-A parents changed
+        private int isACount;
+        private int[] isAChanged = new int[16];
+
+        private void relationship(int source, Edge e, boolean added) {
+            if (this.count == this.sources.length) {
+                int size = this.count * 2;
+                this.sources = Arrays.copyOf(this.sources, size);
+                this.destinations = Arrays.copyOf(this.destinations, size);
+                this.typeIds = Arrays.copyOf(this.typeIds, size);
+                this.groups = Arrays.copyOf(this.groups, size);
+                this.added = Arrays.copyOf(this.added, size);
+            }
+            this.sources[this.count] = source;
+            this.destinations[this.count] = e.next.getIndex();
+            this.typeIds[this.count] = e.getTypeId();
+            this.groups[this.count] = (int) e.getRelationshipGroup();
+            this.added[this.count] = added;
+            this.count++;
+            if (e.isA()) this.isA(source);
+        }
+
+        private void isA(int index) {
+            if (this.isACount == this.isAChanged.length)
+                this.isAChanged = Arrays.copyOf(this.isAChanged, this.isACount * 2);
+            this.isAChanged[this.isACount++] = index;
+        }
+    }
+
+    /**
+     * Returns a new SNOMED with a Delta release of SNOMED-CT applied (only
+     * the rows changed since the loaded release), without reloading
+     * everything. This SNOMED is not changed: the readers using it can go on,
+     * and the new one can be published in its place (see SnomedHolder).
+     *
+     * @param conceptsFile Delta concepts file (null if none)
+     * @param relationshipsFile Delta relationships file (null if none)
+     * @param descriptionsFile Delta descriptions file (null if none)
+     * @return the new SNOMED
+     * @throws IOException
+     * @throws IllegalStateException if the graph is in a read-only adjacency
+     *         store, or if the Delta changes descriptions and the names are in
+     *         a read-only description store
+     */
+    public SNOMED withDelta(String conceptsFile, String relationshipsFile, String descriptionsFile) throws IOException {
+        if (descriptionsFile != null && this.descriptionStore != null)
+            throw new IllegalStateException("The descriptions are in a read-only store, apply the Delta to a SNOMED loaded from the descriptions file");
+        if (this.adjacency != null)
+            throw new IllegalStateException("The graph is in a read-only store, apply the Delta to a SNOMED loaded from the release files");
+        SNOMED updated = new SNOMED(this);
+        updated.applyDelta(conceptsFile, relationshipsFile, descriptionsFile);
+        return updated;
+    }
+
+    /**
+     * (Helper function) Apply a Delta release to this copy, for withDelta():
+     *     - concepts: the new ones are appended (index N, N+1, ...), the
+     *       inactivated ones lose their relationships and names, the
+     *       reactivated ones get back their previous index and names
+     *     - relationships: added, modified (same relationship id) or removed
+     *     - descriptions: added, modified or removed (same description id)
+     *
+     * The id index and the names of the copy are updated in place, the
+     * indexes already built are replaced by updated copies: the IS-A closure
+     * (only the changed concepts and their descendants) and the attributes
+     * (only the keys touched).
+     */
+    private void applyDelta(String conceptsFile, String relationshipsFile, String descriptionsFile) throws IOException {
+        DeltaChanges changes = new DeltaChanges();
+
+        // the new concepts are filtered by the semantic tags of their names in the Delta
+        if (descriptionsFile != null && this.options.hasSemanticTags()) {
+            this.options.resolveSemanticTags(descriptionsFile);
+            if (relationshipsFile != null) this.options.resolveAncestors(relationshipsFile);
+        }
+
+        if (conceptsFile != null) {
+            ConceptsTable c = new ConceptsTable(conceptsFile, false, this.options);
+
+            // the concepts inactivated by a previous Delta keep their index
+            HashMap<Long, Integer> inactiveIndexes = new HashMap<>();
+            for (int i = this.inactiveConcepts.nextSetBit(0); i >= 0; i = this.inactiveConcepts.nextSetBit(i + 1)) {
+                inactiveIndexes.put(this.concepts[i].getId(), i);
+            }
+
+            // the new concepts are appended, the reactivated ones get their index back
+            List<Long> newConcepts = new ArrayList<>();
+            ConceptSet inactivated = new ConceptSet();
+            ConceptSet reactivated = new ConceptSet();
+            for (Concept cpt : c) {
+                Integer index = this.reversedIndex.get(cpt.getConceptId());
+                if (cpt.isActive() && index == null) {
+                    Integer previous = inactiveIndexes.remove(cpt.getConceptId());
+                    if (previous == null) {
+                        newConcepts.add(cpt.getConceptId());
+                    } else {
+                        reactivated.add(previous);
+                        this.reversedIndex.put(cpt.getConceptId(), previous);
+                        if (this.descriptionStore == null) {
+                            Nomenclature names = this.nomenclatureOfInactiveConcepts.remove(cpt.getConceptId());
+                            if (names != null) this.nomenclatureOfConcepts.put(cpt.getConceptId(), names);
+                        }
+                    }
+                } else if (!cpt.isActive() && index != null) {
+                    inactivated.add(index);
+                }
+            }
+            this.inactiveConcepts = this.inactiveConcepts.andNot(reactivated);
+            int n = this.concepts.length;
+            this.concepts = Arrays.copyOf(this.concepts, n + newConcepts.size());
+            for (Long id : newConcepts) {
+                this.concepts[n] = new Node(n, id);
+                this.reversedIndex.put(id, n);
+                n++;
+            }
+
+            // the relationships going out of or coming to an inactivated concept are removed
+            if (!inactivated.isEmpty()) {
+                for (Node node : this.concepts) {
+                    Iterator<Edge> edges = node.getRelationships().iterator();
+                    while (edges.hasNext()) {
+                        Edge e = edges.next();
+                        if (inactivated.contains(node.getIndex()) || inactivated.contains(e.next.getIndex())) {
+                            edges.remove();
+                            changes.relationship(node.getIndex(), e, false);
+                            R--;
+                        }
+                    }
+                }
+                for (int i = inactivated.nextSetBit(0); i >= 0; i = inactivated.nextSetBit(i + 1)) {
+                    long id = this.concepts[i].getId();
+                    this.reversedIndex.remove(id);
+                    if (this.descriptionStore == null) {
+                        Nomenclature names = this.nomenclatureOfConcepts.remove(id);
+                        if (names != null) this.nomenclatureOfInactiveConcepts.put(id, names);
+                    }
+                }
+                this.inactiveConcepts = this.inactiveConcepts.or(inactivated);
+            }
+        }
+
+        if (relationshipsFile != null) {
+            RelationshipsTable r = new RelationshipsTable(relationshipsFile, false, this.options);
+            for (Relationship rel : r) {
+                Integer from = this.reversedIndex.get(rel.getSourceId());
+                if (from == null) continue; // unknown or inactive concept
+
+                // remove the previous version of the relationship
+                Iterator<Edge> edges = this.concepts[from].getRelationships().iterator();
+                while (edges.hasNext()) {
+                    Edge e = edges.next();
+                    if (e.getId() == rel.getId()) {
+                        edges.remove();
+                        changes.relationship(from, e, false);
+                        R--;
+                        break;
+                    }
+                }
+
+                // add the new version
+                Integer to = this.reversedIndex.get(rel.getDestinationId());
+                if (rel.isActive() && to != null) {
+                    Edge edge = new Edge(rel.getId(), this.concepts[to], rel.getTypeId(), rel.getRelationshipGroup());
+                    this.concepts[from].addEdge(edge);
+                    changes.relationship(from, edge, true);
+                    relationshipsCodes.add(rel.getTypeId());
+                    R++;
+                }
+            }
+        }
+
+        if (descriptionsFile != null) {
+            DescriptionsTable d = new DescriptionsTable(descriptionsFile, false, this.options);
+            for (Description dst : d) {
+                // remove the previous version of the description (its term may have changed)
+                DescriptionEntry previous = this.descriptionsById.remove(dst.getDescriptionId());
+                if (previous != null) {
+                    Nomenclature nmc = this.getLoadedNomenclature(previous.conceptId);
+                    if (nmc != null) {
+                        if (!previous.fsn) nmc.getSynonyms().remove(previous.term);
+                        else if (previous.term.equals(nmc.getFNS())) nmc.setFNS(null);
+                    }
+                }
+                if (!dst.isActive()) continue;
+
+                // add the new version
+                Long conceptId = dst.getConceptId();
+                HashMap<Long, Nomenclature> names;
+                if (relationshipsCodes.contains(conceptId)) {
+                    names = this.nomenclatureOfRelationships;
+                } else if (reversedIndex.containsKey(conceptId)) {
+                    names = this.nomenclatureOfConcepts;
+                } else if (this.nomenclatureOfInactiveConcepts.containsKey(conceptId)) {
+                    names = this.nomenclatureOfInactiveConcepts;
+                } else {
+                    continue; // unknown concept
+                }
+                Nomenclature nmc = names.get(conceptId);
+                if (nmc == null) {
+                    nmc = new Nomenclature();
+                    names.put(conceptId, nmc);
+                }
+                if (dst.isFSN())
+                    nmc.setFNS(dst.getTerm());
+                else
+                    nmc.addSynonym(dst.getTerm());
+                this.descriptionsById.put(dst.getDescriptionId(), new DescriptionEntry(conceptId, dst.getTerm(), dst.isFSN()));
+            }
+        }
+
+        // update the indexes already built
+        if (this.hierarchy != null) {
+            this.hierarchy = this.hierarchy.update(this, changes.isAChanged, changes.isACount);
+        }
+        if (this.attributes != null) {
+            this.attributes = this.attributes.update(changes.count, changes.sources, changes.destinations, changes.typeIds, changes.groups, changes.added);
+        }
+        if (this.similarity != null) {
+            // the information content depends on N and on all the descendant counts
+            this.similarity = new SemanticSimilarity(this.hierarchy, this.C() - this.inactiveConcepts.cardinality());
+        }
+    }
+
+    /**
+     * (Helper function) The names loaded for a concept or relationship, active
+     * or inactivated, null if none
+     */
+    private Nomenclature getLoadedNomenclature(long conceptId) {
+        Nomenclature nomenclature = this.nomenclatureOfConcepts.get(conceptId);
+        if (nomenclature == null) nomenclature = this.nomenclatureOfRelationships.get(conceptId);
+        if (nomenclature == null) nomenclature = this.nomenclatureOfInactiveConcepts.get(conceptId);
+        return nomenclature;
+    }
+
+    /**
+     * (Helper function) The indexes of the concepts inactivated by a Delta release
+     */
+    ConceptSet getInactiveConcepts() {
+        return this.inactiveConcepts;
+    }
+
+    /**
+     * The options (filters and order) SNOMED was loaded with
+     */
+    public LoadOptions getLoadOptions() {
+        return this.options.copy();
+    }
+
     /**
      * Returns the total number of Relationships
      */
-    private int R() {
+    int R() {
         return R;
     }
 
     /**
      * Returns the total number of Concepts
      */
-    private int C() {
-        return this.concepts.length;
+    int C() {
+        return this.adjacency != null ? this.adjacency.size() : this.concepts.length;
     }
 
     /**
-     * Print the whole list of relationships available in SNOMED
+     * Returns the sequential index of a concept id
+     * 
+     * @param conceptId SNOMED-CT id of the concept
+     * @return index [0..N-1]
+     * @throws IllegalArgumentException if the concept is unknown
      */
-    public void printRelationships() {
-        /*
-        System.out.println("Total number of relationships:" + this.R());
-        System.out.println("Number of relationship types: " + this.relationshipsCodes.size());
-        for (long lc : this.relationshipsCodes) {
-            System.out.println("Code: " + lc + "\n" + this.nomenclature.get(lc));
+    public int getIndex(long conceptId) {
+        int index = this.indexOf(conceptId);
+        if (index < 0)
+            throw new IllegalArgumentException("Unkown concept: " + conceptId);
+        return index;
+    }
+
+    /**
+     * (Helper function) Returns the sequential index of a concept id, -1 if
+     * the concept is unknown
+     */
+    private int indexOf(long conceptId) {
+        if (this.adjacency != null) return this.adjacency.indexOf(conceptId);
+        Integer index = this.reversedIndex.get(conceptId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the SNOMED-CT id of a concept index
+     * 
+     * @param index [0..N-1]
+     * @return conceptId
+     */
+    public long getConceptId(int index) {
+        if (this.adjacency != null) return this.adjacency.getConceptId(index);
+        return this.concepts[index].getId();
+    }
+
+    /**
+     * (Helper function) Returns the indexes of the direct IS-A parents of a concept index
+     */
+    int[] isAParents(int index) {
+        if (this.adjacency != null) {
+            AdjacencyStore.Cursor cursor = this.adjacency.relationships(index);
+            int[] parents = new int[this.adjacency.degree(index)];
+            int count = 0;
+            while (cursor.next()) {
+                if (cursor.typeId() == IS_A) parents[count++] = cursor.target();
+            }
+            return Arrays.copyOf(parents, count);
         }
-        */
-        System.out.println("Total number of relationships:" + this.R());
-        System.out.println("Number of relationship types: " + this.nomenclatureOfRelationships.size());
-        for (Long lc : this.nomenclatureOfRelationships.keySet()) {
-            System.out.println("Code: " + lc + "\n" + this.nomenclatureOfRelationships.get(lc));
+        int count = 0;
+        for (Edge e : this.concepts[index].getRelationships()) {
+            if (e.isA()) count++;
         }
+        int[] parents = new int[count];
+        count = 0;
+        for (Edge e : this.concepts[index].getRelationships()) {
+            if (e.isA()) parents[count++] = e.next.getIndex();
+        }
+        return parents;
     }
 
     /**
-     * Find all the nodes that are crossed on the way up to the root
-     * including multi-parents nodes. The path is not organized.
-     * @param snomedIdFromWord
-     * @return the list of codes from the snomedIdStartNode to the root
-     */
-	public HashSet<String> getNodesToRoot(Long snomedIdStartNode) {
-		
-		HashSet<String> result = new HashSet<String>();
-		HashSet<Long> visited = new HashSet<>();
-		Stack<Long> stack = new Stack<>();
-		stack.push(snomedIdStartNode);
-		
-        while (!stack.isEmpty()) {
-        	Long current = stack.pop();
-        	result.add(current.toString());
-        	visited.add(current);
-            for (Edge e : this.concepts[this.reversedIndex.get(current)].getRelationships()) {
-                if (e.isA()) {
-                    Long next = e.next.getId();
-                    if (!visited.contains(next))
-                    	stack.push(next);
-                }
+     * Returns the index of the IS-A hierarchy.
+     * It is built on the first call and kept for the next ones.
+     */
+    public HierarchyIndex getHierarchy() {
+        HierarchyIndex hierarchy = this.hierarchy;
+        if (hierarchy == null) {
+            synchronized (this) {
+                hierarchy = this.hierarchy;
+                if (hierarchy == null)
+                    this.hierarchy = hierarchy = new HierarchyIndex(this);
             }
         }
-		return result;
-	}
-	
-	
+        return hierarchy;
+    }
+
     /**
-     * (Helper function) Print the path from the concept id to the root. Prints
-     * only the first found path. (Many path may exists because a concept can
-     * have many parents)
-     */
-    private void getPathToRoot(int index) {
-        System.out.println("Concept ID: " + this.concepts[index].getId());
-        System.out.println(this.nomenclatureOfConcepts.get(this.concepts[index].getId()));
-        System.out.println("Relationships:");
-        boolean root = false;
-        while (!root) {
-            root = true;
-            for (Edge e : this.concepts[index].getRelationships()) {
-                if (e.isA()) {
-                    System.out.println("Relationship:");
-                    System.out.println(this.nomenclatureOfRelationships.get(e.getTypeId()));
-                    System.out.println("Concept:");
-                    System.out.println(this.nomenclatureOfConcepts.get(e.next.getId()));
-                    index = this.reversedIndex.get(e.next.getId());
-                    root = false;
-                    // TODO find only one path ! change the break to get all the
-                    // paths
-                    break;
+     * Save the relationships graph into a compressed adjacency file,
+     * to be opened off-heap with AdjacencyStore.open()
+     *
+     * @param path adjacency file to write
+     * @throws IOException
+     */
+    public void saveAdjacency(String path) throws IOException {
+        long[] conceptIds = new long[this.C()];
+        for (int i = 0; i < conceptIds.length; i++) conceptIds[i] = this.getConceptId(i);
+        int[] sources = new int[this.R];
+        int[] destinations = new int[this.R];
+        long[] typeIds = new long[this.R];
+        int[] groups = new int[this.R];
+        int r = this.relationships(sources, destinations, typeIds, groups);
+        AdjacencyStore.write(path, conceptIds, r, sources, destinations, typeIds, groups, this.options.toString());
+    }
+
+    /**
+     * (Helper function) Fill the parallel arrays (of size R) with all the
+     * relationships of the graph, on the heap or in the adjacency store
+     *
+     * @return number of relationships
+     */
+    private int relationships(int[] sources, int[] destinations, long[] typeIds, int[] groups) {
+        int r = 0;
+        if (this.adjacency != null) {
+            for (int i = 0; i < this.adjacency.size(); i++) {
+                AdjacencyStore.Cursor cursor = this.adjacency.relationships(i);
+                while (cursor.next()) {
+                    sources[r] = i;
+                    destinations[r] = cursor.target();
+                    typeIds[r] = cursor.typeId();
+                    groups[r] = cursor.group();
+                    r++;
                 }
             }
+            return r;
         }
+        for (Node n : this.concepts) {
+            for (Edge e : n.getRelationships()) {
+                sources[r] = n.getIndex();
+                destinations[r] = e.next.getIndex();
+                typeIds[r] = e.getTypeId();
+                groups[r] = (int) e.getRelationshipGroup();
+                r++;
+            }
+        }
+        return r;
     }
 
     /**
-     * Print the path from the concept index (1..N) to the root. N = total
-     * number of concepts. Prints only the first found path. (Many path may
-     * exists because a concept can have many parents)
+     * Returns the index of the relationships by typeId.
+     * It is built on the first call and kept for the next ones.
      */
-    public void getPathToRootIndex() {
-        System.out.println("(Path to Root) Introduce an Integer between [0 - " + this.C() + "]: ");
-        in = new Scanner(System.in);
-        int input = in.nextInt();
-        this.getPathToRoot(input);
+    public AttributeIndex getAttributeIndex() {
+        AttributeIndex attributes = this.attributes;
+        if (attributes != null) return attributes;
+        synchronized (this) {
+            if (this.attributes != null) return this.attributes;
+            int[] sources = new int[this.R];
+            int[] destinations = new int[this.R];
+            long[] typeIds = new long[this.R];
+            int[] groups = new int[this.R];
+            int r = this.relationships(sources, destinations, typeIds, groups);
+            this.attributes = attributes = new AttributeIndex(this.C(), r, sources, destinations, typeIds, groups);
+        }
+        return attributes;
     }
 
     /**
-     * Print the path from the concept id to the root. Prints only the first
-     * found path. (Many path may exists because a concept can have many
-     * parents)
+     * Returns the engine evaluating the expression constraints (ECL) over SNOMED.
+     * It is built on the first call and kept for the next ones.
      */
-    public void getPathToRootId() {
-        System.out.println("(Path to Root) Introduce the concept Id or something else to abort: ");
-        in = new Scanner(System.in);
-        long input = in.nextLong();
-        if (this.reversedIndex.containsKey(input)) {
-            int index = this.reversedIndex.get(input);
-            this.getPathToRoot(index);
-        } else {
-            System.out.println("Unkown concept: " + input);
+    public EclQueryEngine getEclEngine() {
+        EclQueryEngine eclEngine = this.eclEngine;
+        if (eclEngine == null) {
+            synchronized (this) {
+                eclEngine = this.eclEngine;
+                if (eclEngine == null)
+                    this.eclEngine = eclEngine = new EclQueryEngine(this);
+            }
         }
+        return eclEngine;
     }
 
+    /**
+     * Check if a concept has an attribute of type typeId whose value is
+     * valueId or one of its descendants (ex. finding site = heart structure)
+     * 
+     * @param conceptId the concept to check
+     * @param typeId the type of the attribute (relationship)
+     * @param valueId the expected value
+     * @return true if the concept has such attribute
+     */
+    public boolean hasAttribute(long conceptId, long typeId, long valueId) {
+        int value = this.getIndex(valueId);
+        AttributeIndex.Cursor cursor = this.getAttributeIndex().targets(typeId, this.getIndex(conceptId));
+        while (cursor.next()) {
+            if (cursor.value() == value || this.getHierarchy().isAncestor(value, cursor.value()))
+                return true;
+        }
+        return false;
+    }
 
-	
-	
     /**
-     * Search for a word in the list of concepts names
-     */
-    public void searchWords() {
-        System.out.println("Search for the word : ");
-        in = new Scanner(System.in);
-        String query = in.next();
-        if (query.length() > 0) {
-            System.out.println("Seaching for:" + query);
-            for (Long n : this.nomenclatureOfConcepts.keySet()) {
-                if (this.searchWithRegExp(this.nomenclatureOfConcepts.get(n), query)) {
-                    if (!this.reversedIndex.containsKey(n))
-                        System.out.print("[Unlinked Term]");
-                    if (this.relationshipsCodes.contains(n))
-                        // remove this line later (we are searching only the concepts)
-                        System.out.println("Rel:" + n + "\t" + this.nomenclatureOfRelationships.get(n).getFNS());
-                    else
-                        System.out.println("Cpt:" + n + "\t" + this.nomenclatureOfConcepts.get(n).getFNS());
-                }
+     * Returns all the concepts having an attribute of type typeId whose value
+     * is exactly valueId (ex. all the concepts with finding site = heart)
+     * 
+     * @param typeId the type of the attribute (relationship)
+     * @param valueId the value of the attribute
+     * @return the ids of the concepts found
+     */
+    public long[] getConceptsWithAttribute(long typeId, long valueId) {
+        int[] sources = this.getAttributeIndex().getSources(typeId, this.getIndex(valueId));
+        long[] result = new long[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            result[i] = this.getConceptId(sources[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the information content based similarity (Resnik, Lin, Jiang-Conrath)
+     * between the concepts. It is built on the first call and kept for the next ones.
+     */
+    public SemanticSimilarity getSemanticSimilarity() {
+        SemanticSimilarity similarity = this.similarity;
+        if (similarity == null) {
+            synchronized (this) {
+                similarity = this.similarity;
+                if (similarity == null)
+                    this.similarity = similarity = new SemanticSimilarity(this.getHierarchy(), this.C() - this.inactiveConcepts.cardinality());
             }
         }
+        return similarity;
     }
 
     /**
-     * Search for concepts where a list of words appears in the
-     * concepts names
+     * Find all the nodes that are crossed on the way up to the root
+     * including multi-parents nodes. The path is not organized.
+     * @param snomedIdStartNode
+     * @return the ids of the concepts from the snomedIdStartNode to the root
      */
-    public void searchAlistOfwords() {
-        // initialize the list of words
-        List<String> words = new LinkedList<String>();
-        in = new Scanner(System.in);
-        
-        // reading the list of words
-        while (true) {
-            System.out.println("List of words (stop to stop) : ");
-            String word = in.next();
-            if (word.equals("stop"))
-                break;
-            
-            words.add(word);
+	public LongList getNodesToRoot(long snomedIdStartNode) {
+		int[] ancestors = this.getHierarchy().ancestors(this.getIndex(snomedIdStartNode));
+		LongList result = new LongList(ancestors.length);
+		for (int a : ancestors) {
+			result.add(this.getConceptId(a));
+		}
+		return result;
+	}
+
+    /**
+     * Returns the concept and all its ancestors in the IS-A hierarchy
+     * @param conceptId
+     * @return the set of the indexes of the ancestors (the concept included)
+     */
+    public ConceptSet getAncestors(long conceptId) {
+        return ConceptSet.of(this.getHierarchy().ancestors(this.getIndex(conceptId)));
+    }
+
+    /**
+     * Returns the concept and all its descendants in the IS-A hierarchy
+     * @param conceptId
+     * @return the set of the indexes of the descendants (the concept included)
+     */
+    public ConceptSet getDescendants(long conceptId) {
+        return this.getEclEngine().evaluate("<< " + conceptId);
+    }
+
+    /**
+     * Is the id a concept of the loaded SNOMED?
+     */
+    public boolean contains(long conceptId) {
+        return this.indexOf(conceptId) >= 0;
+    }
+
+    /**
+     * Is the id the type of some relationships (ex. finding site)?
+     */
+    public boolean isRelationshipType(long id) {
+        return this.relationshipsCodes.contains(id);
+    }
+
+    /**
+     * Returns the types of the relationships (read-only)
+     */
+    public Set<Long> getRelationshipTypes() {
+        return Collections.unmodifiableSet(this.relationshipsCodes);
+    }
+
+    /**
+     * Returns the Fully Specified Name of a concept or relationship type, null if none
+     */
+    public String getFSN(long conceptId) {
+        Nomenclature nomenclature = this.getNomenclature(conceptId);
+        return nomenclature == null ? null : nomenclature.getFNS();
+    }
+
+    /**
+     * Returns the synonyms of a concept or relationship type (read-only)
+     */
+    public List<String> getSynonyms(long conceptId) {
+        Nomenclature nomenclature = this.getNomenclature(conceptId);
+        if (nomenclature == null) return Collections.emptyList();
+        return Collections.unmodifiableList(nomenclature.getSynonyms());
+    }
+
+    /**
+     * Search for a word (regular expression, case insensitive) in the names
+     * of the concepts. The terms whose concept is not in the graph (inactive
+     * or filtered out) are returned too, see contains().
+     * 
+     * @param word
+     * @return the ids of the concepts found
+     */
+    public LongList searchConcepts(String word) {
+        LongList result = new LongList();
+        Iterator<Long> ids = this.namedConcepts();
+        while (ids.hasNext()) {
+            Long n = ids.next();
+            // search only the concepts
+            if (this.relationshipsCodes.contains(n))
+                continue;
+            if (this.searchWithRegExp(this.getNomenclature(n), word))
+                result.add(n);
         }
-        
-        HashMap<String,Object> results = this.getMatchesForListOfWords(words, SearchMethod.REG_EXP);
-        HashSet<String> result = (HashSet<String>) results.get("SNOMED_IDs");
-    	
-        System.out.println(result.size() + " Match(s)");
-        for (String string : result) {
-            System.out.println(" -> " + string + "\t" + this.nomenclatureOfConcepts.get(Long.parseLong(string)).getFNS());
+        return result;
+    }
+
+    /**
+     * (Helper function) Returns the indexes of the destinations of the
+     * relationships going out of a concept index
+     */
+    int[] outNeighbors(int index) {
+        if (this.adjacency != null) {
+            AdjacencyStore.Cursor cursor = this.adjacency.relationships(index);
+            int[] neighbors = new int[this.adjacency.degree(index)];
+            for (int k = 0; cursor.next(); k++) neighbors[k] = cursor.target();
+            return neighbors;
         }
-        
+        int[] neighbors = new int[this.concepts[index].getRelationships().size()];
+        int k = 0;
+        for (Edge e : this.concepts[index].getRelationships()) neighbors[k++] = e.next.getIndex();
+        return neighbors;
     }
-    
+
+    /**
+     * (Helper function) Returns the typeIds of the relationships going out of
+     * a concept index, in the same order as outNeighbors()
+     */
+    long[] outTypeIds(int index) {
+        if (this.adjacency != null) {
+            AdjacencyStore.Cursor cursor = this.adjacency.relationships(index);
+            long[] types = new long[this.adjacency.degree(index)];
+            for (int k = 0; cursor.next(); k++) types[k] = cursor.typeId();
+            return types;
+        }
+        long[] types = new long[this.concepts[index].getRelationships().size()];
+        int k = 0;
+        for (Edge e : this.concepts[index].getRelationships()) types[k++] = e.getTypeId();
+        return types;
+    }
+
     /**
      * Search all the concepts (and relationships after adaptation) 
      * where all the words appear using a cumulative search,
@@ -640,31 +1485,45 @@ public class SNOMED {
     	System.out.println(" ");
     	*/
     	
-        // Intersect the sets returned for each word queried
-        HashSet<String> intersection = new HashSet<String>();
+        // Intersect the sets (of concepts indexes) returned for each word queried
+        ConceptSet intersection = null;
 
         // Keep only the best value of Levenshtein, in case of equality take the longer
         double bestLevenshteinValueFound = 1;
         double levenshteinValueFound = 1;
         
-        // Don't intersect for the first word
-        boolean firstWord = true;
         for (String word : words) {
             // Build the temporary result of the query
-            HashSet<String> newIntersection = new HashSet<String>();
+            ConceptSet newIntersection = new ConceptSet();
             System.out.println("Seaching for: " + word);
             
             // Search only in the concepts name (not in the relationships)
-            for (Long n : this.nomenclatureOfConcepts.keySet()) {
+            // For the first word search all the concepts, then only the concepts found so far
+            Iterator<Long> candidates;
+            if (intersection == null) {
+                candidates = this.namedConcepts();
+            } else {
+                List<Long> ids = new ArrayList<>(intersection.cardinality());
+                for (int i = intersection.nextSetBit(0); i >= 0; i = intersection.nextSetBit(i + 1))
+                    ids.add(this.getConceptId(i));
+                candidates = ids.iterator();
+            }
+            
+            while (candidates.hasNext()) {
+            	Long n = candidates.next();
+            	
+            	// keep only the concepts (not the relationships)
+            	if (this.relationshipsCodes.contains(n) || !this.contains(n))
+            		continue;
             	
             	// compare word to nomenclature using (Reg_Exp, or Levenshtein)
             	boolean searchResult = false;
 				switch (searchMethod) {
 					case REG_EXP:
-						searchResult = this.searchWithRegExp(this.nomenclatureOfConcepts.get(n), word);
+						searchResult = this.searchWithRegExp(this.getNomenclature(n), word);
 					break;
 					case LEVENSHTEIN:
-						levenshteinValueFound = this.searchWithLevenshtein(this.nomenclatureOfConcepts.get(n), word);
+						levenshteinValueFound = this.searchWithLevenshtein(n, word);
 				        if (levenshteinValueFound < LEVENSHTEIN_THRESHOLD) {
 				        	searchResult = true;
 				        } else {
@@ -673,104 +1532,29 @@ public class SNOMED {
 					break;
 				}
             	
-            	
                 if (searchResult) {
-                    if (this.relationshipsCodes.contains(n)) {
-                        //remove this test later! (only concepts)
-                        //String name = "Rel:" + n + "\t" +this.nomenclatureOfRelationships.get(n).getFNS();
-                        //relationship
-                        //if (firstWord || intersection.contains(name) ) newIntersection.add(name);                                
-                    } else {
-                        //String name = "Cpt:" + n + "\t" +this.nomenclatureOfConcepts.get(n).getFNS();
-                    	String snomed_id = n.toString();
-                        // concept
-                        if (firstWord || intersection.contains(snomed_id) ) {
-                        	
-            				switch (searchMethod) {
-        					case REG_EXP: newIntersection.add(snomed_id); break;
-        					case LEVENSHTEIN:
-        						// add only the best match
-        						/*
-        						if (bestLevenshteinValueFound > levenshteinValueFound) {
-        							bestLevenshteinValueFound = levenshteinValueFound;
-        							newIntersection.clear();
-        							newIntersection.add(snomed_id);
-        						}
-        						*/
-        						//add all found matches
-        						newIntersection.add(snomed_id);
-        						break;
-            				}
-            				
-                        	
-                        }
-                    }
+                    // add all found matches
+                    newIntersection.add(this.indexOf(n));
                 }
             }
-            firstWord = false;
             intersection = newIntersection;
         }
+        if (intersection == null) intersection = new ConceptSet();
+        
+        // convert the indexes found to SNOMED ids
+        LongList snomedIds = new LongList(intersection.cardinality());
+        for (int i = intersection.nextSetBit(0); i >= 0; i = intersection.nextSetBit(i + 1))
+            snomedIds.add(this.getConceptId(i));
         
     	HashMap<String, Object> result = new HashMap<>();
     	
-    	result.put("SNOMED_IDs", intersection);
+    	result.put("SNOMED_IDs", snomedIds);
+    	result.put("SNOMED_CONCEPTS", intersection);
     	result.put("LEVENSHTEIN_VAL", new Double(bestLevenshteinValueFound));
     	
         return result;
     }
 
-    /**
-     * Print the list of relationships and concepts coming out from conceptId.
-     */
-    public void getAllOutneighborsId() {
-        System.out.println("(Out Neighbors) Introduce the concept Id or something else to abort: ");
-        in = new Scanner(System.in);
-        long input = in.nextLong();
-        if (this.relationshipsCodes.contains(input)) {
-            System.out.println("It's a relationship: ");
-            System.out.println(this.nomenclatureOfRelationships.get(input));
-        } else {
-            if (this.reversedIndex.containsKey(input)) {
-                int index = this.reversedIndex.get(input);
-                this.getAllOutneighbors(index);
-            } else {
-                System.out.println("Unkown concept: " + input);
-            }
-        }
-    }
-
-    /**
-     * Print the list of relationships and concepts coming out of the concept
-     * index.
-     */
-    public void getAllOutneighborsIndex() {
-        System.out.println("(Out Neighbors) Introduce an Integer between [0 - " + (this.C() - 1)
-                + "] or something else to abort: ");
-        in = new Scanner(System.in);
-        int input = in.nextInt();
-        if (input >= 0 && input <= this.C() - 1) {
-            this.getAllOutneighbors(input);
-        } else {
-            System.out.println("Abort. Input: " + input);
-        }
-    }
-
-    /**
-     * (Helper function) Print the list of relationships and concepts coming out
-     * of a concept index.
-     */
-    private void getAllOutneighbors(int index) {
-        System.out.println("Concept ID: " + this.concepts[index].getId());
-        System.out.println(this.nomenclatureOfConcepts.get(this.concepts[index].getId()));
-        System.out.println("Relationships:");
-        for (Edge e : this.concepts[index].getRelationships()) {
-            System.out.println("Relationship:");
-            System.out.println(this.nomenclatureOfRelationships.get(e.getTypeId()));
-            System.out.println("Concept:");
-            System.out.println(this.nomenclatureOfConcepts.get(e.next.getId()));
-        }
-    }
-
     /**
      * (Helper function)
      * 
@@ -789,10 +1573,12 @@ public class SNOMED {
         int flags = 0;
         flags += Pattern.CASE_INSENSITIVE;
         Pattern p = Pattern.compile(q,flags);
-        Matcher m = p.matcher(fsn);
-
-        if (m.matches())
-            return true;
+        Matcher m;
+        if (fsn != null) {
+            m = p.matcher(fsn);
+            if (m.matches())
+                return true;
+        }
         for (String input : nomenclature.getSynonyms()) {
             m = p.matcher(input);
             if (m.matches())
@@ -801,6 +1587,26 @@ public class SNOMED {
         return false;
     }
     
+    /**
+     * (Helper function)
+     * 
+     * Best Levenshtein distance between a word and the names of a concept,
+     * using the normalized terms of the description store if any
+     */
+    private double searchWithLevenshtein(long conceptId, String word) {
+        if (this.descriptionStore == null)
+            return this.searchWithLevenshtein(this.getNomenclature(conceptId), word);
+        String s2 = word.toLowerCase();
+        double bestVal = 1;
+        DescriptionStore.Cursor cursor = this.descriptionStore.terms(conceptId);
+        while (cursor.next()) {
+            double tmpVal = Levenshtein.distanceNormalized(cursor.normalized(), s2);
+            if (tmpVal < bestVal)
+                bestVal = tmpVal;
+        }
+        return bestVal;
+    }
+
     private double searchWithLevenshtein(Nomenclature nomenclature, String word) {    	
         // Search using Levenshtein distance
     	String fsn = nomenclature.getFNS();
@@ -808,12 +1614,14 @@ public class SNOMED {
     	//TODO remove this later (used only with incomplete trimmed ontologies  test different sizes)
     	//if (fsn == null) return 0;
     	
-        String s1 = fsn.toLowerCase();
         String s2 = word.toLowerCase();
         double bestVal = 1;
-        double tmpVal = Levenshtein.distanceNormalized(s1.toLowerCase(), s2.toLowerCase());
-        if (tmpVal < bestVal)
-        	bestVal = tmpVal;
+        double tmpVal;
+        if (fsn != null) {
+            tmpVal = Levenshtein.distanceNormalized(fsn.toLowerCase(), s2);
+            if (tmpVal < bestVal)
+                bestVal = tmpVal;
+        }
         
         for (String input : nomenclature.getSynonyms()) {
         	tmpVal = Levenshtein.distanceNormalized(input.toLowerCase(), s2.toLowerCase());
@@ -824,6 +1632,19 @@ public class SNOMED {
         return bestVal;
     }
 
+    /**
+     * Load the Snapshot of SNOMED-CT directly from the zip archive of the
+     * RF2 release, without extracting it (see ReleaseReader).
+     * 
+     * @param archive zip archive of the release
+     * @throws IOException
+     */
+    public static SNOMED loadRelease(String archive) throws IOException {
+        return new SNOMED(archive + "!sct2_Concept_Snapshot",
+                archive + "!sct2_Relationship_Snapshot",
+                archive + "!sct2_Description_Snapshot");
+    }
+
     public static SNOMED loadSnomed() throws IOException {
     	System.out.println("Heap size: "+java.lang.Runtime.getRuntime().maxMemory()+" Bytes");
     	
@@ -839,54 +1660,6 @@ public class SNOMED {
     
     
     
-    
-    /**
-     * Search for concepts where a list of words appears in the
-     * concepts names
-     */
-    public void searchSnomedConceptsInsideAlistOfwords() {
-        // initialize the list of words from where to extract information
-        List<String> wordsList = new LinkedList<String>();
-        in = new Scanner(System.in);
-        
-        // reading the list of words and formatting them
-        while (true) {
-            System.out.println("List of words ( (End of Report) to stop) : ");
-            String line = in.nextLine();
-            if (line.equals("(End of Report)")) {
-                break;
-            }
-            else {
-                line.replaceAll("-", " ");
-                line.replaceAll(",", " ");
-                line.replaceAll(".", " ");
-                String[] listOfWords = line.split(" ");
-                for (String string : listOfWords) {
-                	wordsList.add(string);	
-				}
-            }
-            
-        }
-        
-        // put the list of words into a String[]
-        String[] words = new String[wordsList.size()];
-        words = wordsList.toArray(words);
-        
-        // search the possible concepts cited in the words.
-        
-        //List<String> result = this.getAllFoundConceptsSweep(words);
-        List<String> result = this.getAllFoundConceptsNoSweep(words);
-        
-        // print the found matches
-        System.out.println(result.size() + " Match(s)");
-        for (String string : result) {
-            System.out.println(" -> " + string + "\t" + this.nomenclatureOfConcepts.get(Long.parseLong(string)).getFNS());
-        }
-        
-    }
-    
-    
-    
     /**
      * We sweep the words from left to right 
      * We increase the number of words to query each time until no result is returned.
@@ -896,12 +1669,12 @@ public class SNOMED {
      * @param words a list of words contained in a medical document
      * @return a list of all possible concepts found in the list of words
      */
-    public List<String> getAllFoundConceptsSweep(String[] words){
+    public LongList getAllFoundConceptsSweep(String[] words){
     	
     	// sort the list of concepts found by SIMILARITY in case of equality take the longer chaine
     	
     	// initialize the list containing the founds concepts
-    	List<String> snomedConceptsFound = new LinkedList<>();
+    	LongList snomedConceptsFound = new LongList();
     	
     	// keep track of the best Levenshtein value so far
     	double bestLevenshteinValue = 1;
@@ -911,7 +1684,7 @@ public class SNOMED {
     	for (int startWordPos = 0; startWordPos < words.length; startWordPos++) {
     		
     		// save the previous found result of the longest chain so far
-			HashSet<String> previousChaineCollectedCpt = new HashSet<String>();
+			LongList previousChaineCollectedCpt = new LongList();
 			
 			// the chain of words
 			String chaine = "";
@@ -925,7 +1698,7 @@ public class SNOMED {
     			List<String> chaineToQuery = new LinkedList<String>();
     			chaineToQuery.add(chaine.trim());
     			HashMap<String,Object> results = getMatchesForListOfWords(chaineToQuery, SearchMethod.LEVENSHTEIN);
-    			HashSet<String> tmpRes = (HashSet<String>) results.get("SNOMED_IDs");
+    			LongList tmpRes = (LongList) results.get("SNOMED_IDs");
     			double levenshteinValue = (double) results.get("LEVENSHTEIN_VAL");
     	    	
     			if (bestLevenshteinValue < levenshteinValue) {
@@ -944,7 +1717,7 @@ public class SNOMED {
 				if ( tmpRes.size() == 0 || endWordPos == (words.length-1) ) {
 					snomedConceptsFound.addAll(previousChaineCollectedCpt);
 					System.out.println("[" + chaine.trim() + "] : " + previousChaineCollectedCpt.size() + " (concepts found)");
-					for (String string : previousChaineCollectedCpt) System.out.println("SNOMED_ID: " + string);
+					for (int i = 0; i < previousChaineCollectedCpt.size(); i++) System.out.println("SNOMED_ID: " + previousChaineCollectedCpt.get(i));
 					break;
 				}
 				
@@ -964,10 +1737,10 @@ public class SNOMED {
      * @param words a list of words contained in a medical document
      * @return a list of all possible concepts found in the list of words
      */
-    public List<String> getAllFoundConceptsNoSweep(String[] words){
+    public LongList getAllFoundConceptsNoSweep(String[] words){
     	
     	// initialize the list containing the founds concepts
-    	List<String> snomedConceptsFound = new LinkedList<>();
+    	LongList snomedConceptsFound = new LongList();
     	
     	// keep track of the best Levenshtein value so far
     	String chaine = "";
@@ -979,84 +1752,22 @@ public class SNOMED {
 		List<String> chaineToQuery = new LinkedList<String>();
 		chaineToQuery.add(chaine.trim());
 		HashMap<String,Object> results = getMatchesForListOfWords(chaineToQuery, SearchMethod.LEVENSHTEIN);
-		HashSet<String> tmpRes = (HashSet<String>) results.get("SNOMED_IDs");
+		LongList tmpRes = (LongList) results.get("SNOMED_IDs");
 		double levenshteinValue = (double) results.get("LEVENSHTEIN_VAL");
 
 		// if we don't get any result or we reach the end of the chain
 		if ( tmpRes.size() != 0 ) {
 			snomedConceptsFound.addAll(tmpRes);
 			System.out.println("[" + chaine.trim() + "] : " + tmpRes.size() + " (concepts found)");
-			for (String string : tmpRes) System.out.println("SNOMED_ID: " + string);
+			for (int i = 0; i < tmpRes.size(); i++) System.out.println("SNOMED_ID: " + tmpRes.get(i));
 		}
-				
 
 		return snomedConceptsFound;
-    }    
-    
-    
-    // Used for tests and debugging
-    public static void main(String[] args) throws IOException {
-
-
-    	SNOMED snomed = SNOMED.loadSnomed();
-    	
+    }
 
-        while (true) {
-            try {
-                System.out.println("Choose from the list below:"
-                		+ "\n0:stop"
-                		+ "\n1:Get all the out-neighbors of a concept index."
-                        + "\n2:Get all the out-neighbors of a concept id."
-                        + "\n3:Search for the concepts where the word appears"
-                        + "\n4:Get the path to the root of a concept index"
-                        + "\n5:Get the path to the root of a concept id"
-                        + "\n6:Print the list of relationships and their names" 
-                        + "\n7:Search for a list of words: "
-                        + "\n8:Search concepts in a list of lines '(End of Report)' to end");
-
-                in = new Scanner(System.in);
-            	int choice = in.nextInt();
-
-            	if (choice == 0)
-            		break;
-            	
-                if (choice == 1)
-                    // Get all the out-neighbors of a concept index
-                    snomed.getAllOutneighborsIndex();
-
-                if (choice == 2)
-                    // Get all the out-neighbors of a concept id
-                    snomed.getAllOutneighborsId();
-
-                if (choice == 3)
-                    // Search for the concepts where the word appears
-                    snomed.searchWords();
-
-                if (choice == 4)
-                    // Get the path to the root of a concept.
-                    snomed.getPathToRootIndex();
-
-                if (choice == 5)
-                    // Get the path to the root of a concept.
-                    snomed.getPathToRootId();
-
-                if (choice == 6)
-                    // Print the list of relationships and their names
-                    snomed.printRelationships();
-
-                if (choice == 7)
-                    // Print the list of relationships and their names
-                    snomed.searchAlistOfwords();
-
-                if (choice == 8)
-                    // Print the list of concepts found in a chaine of characters and their names
-                	snomed.searchSnomedConceptsInsideAlistOfwords();
-                
-            } catch (Exception e) {
-                e.printStackTrace();
-                break;
-            }
-        }
+    // Used for tests and debugging, see SnomedConsole
+    public static void main(String[] args) throws IOException {
+        SnomedConsole.main(args);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package snomed;
+
+/**
+ *
+ * Semantic similarity between SNOMED-CT concepts based on the information
+ * content (IC) of the concepts in the IS-A hierarchy.
+ *
+ * The information content is intrinsic (Seco et al. 2004): it is computed
+ * from the structure of the hierarchy only, using the number of descendants
+ * of each concept:
+ *
+ *     IC(c) = 1 - log(descendants(c)) / log(N)
+ *
+ * where N is the total number of concepts. The root has an IC of 0 and the
+ * leaves have an IC of 1.
+ *
+ * The following measures are offered (for two concepts a and b, and their
+ * most informative common ancestor mica):
+ *     - Resnik:          IC(mica)
+ *     - Lin:             2 * IC(mica) / (IC(a) + IC(b))
+ *     - Jiang-Conrath:   IC(a) + IC(b) - 2 * IC(mica)   (distance)
+ *
+ * The IC values are computed once into an array, and the common ancestors
+ * are found by merging the sorted ancestors of the HierarchyIndex.
+ */
+public class SemanticSimilarity {
+
+    // the IS-A hierarchy used to find the common ancestors
+    private final HierarchyIndex hierarchy;
+
+    // ic[i] = information content of the concept index i
+    private final float[] ic;
+
+    /**
+     * Compute the information content of all the concepts of the hierarchy
+     *
+     * @param hierarchy IS-A hierarchy of SNOMED-CT
+     */
+    public SemanticSimilarity(HierarchyIndex hierarchy) {
+        this(hierarchy, hierarchy.size());
+    }
+
+    /**
+     * Compute the information content of all the concepts of the hierarchy
+     *
+     * @param hierarchy IS-A hierarchy of SNOMED-CT
+     * @param n number of active concepts (without the ones inactivated by a Delta release)
+     */
+    SemanticSimilarity(HierarchyIndex hierarchy, int n) {
+        this.hierarchy = hierarchy;
+        this.ic = new float[hierarchy.size()];
+        double logN = Math.log(n);
+        for (int i = 0; i < this.ic.length; i++) {
+            if (n <= 1) {
+                this.ic[i] = 1f;
+            } else {
+                this.ic[i] = (float) (1.0 - Math.log(hierarchy.descendantCount(i)) / logN);
+            }
+        }
+    }
+
+    /**
+     * Information content of the concept index
+     */
+    public float informationContent(int index) {
+        return this.ic[index];
+    }
+
+    /**
+     * Returns the common ancestor of a and b having the highest information
+     * content (the lowest common ancestor in the IS-A hierarchy).
+     * In case of equality, the concept with the lowest index is returned.
+     *
+     * @param a concept index
+     * @param b concept index
+     * @return the index of the most informative common ancestor, -1 if none
+     */
+    public int mostInformativeCommonAncestor(int a, int b) {
+        int[] ancestorsA = this.hierarchy.ancestors(a);
+        int[] ancestorsB = this.hierarchy.ancestors(b);
+        int best = -1;
+        float bestIC = -1f;
+        int i = 0, j = 0;
+        while (i < ancestorsA.length && j < ancestorsB.length) {
+            int x = ancestorsA[i], y = ancestorsB[j];
+            if (x < y) {
+                i++;
+            } else if (x > y) {
+                j++;
+            } else {
+                if (this.ic[x] > bestIC) {
+                    bestIC = this.ic[x];
+                    best = x;
+                }
+                i++;
+                j++;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Resnik similarity: information content of the most informative common ancestor
+     *
+     * @return similarity in [0, 1], 0 if there is no common ancestor
+     */
+    public double resnik(int a, int b) {
+        int mica = this.mostInformativeCommonAncestor(a, b);
+        return mica < 0 ? 0.0 : this.ic[mica];
+    }
+
+    /**
+     * Lin similarity: 2 * IC(mica) / (IC(a) + IC(b))
+     *
+     * @return similarity in [0, 1], 0 if there is no common ancestor
+     */
+    public double lin(int a, int b) {
+        if (a == b) return 1.0;
+        int mica = this.mostInformativeCommonAncestor(a, b);
+        if (mica < 0) return 0.0;
+        double sum = this.ic[a] + this.ic[b];
+        if (sum == 0) return 1.0;
+        return 2.0 * this.ic[mica] / sum;
+    }
+
+    /**
+     * Jiang-Conrath distance: IC(a) + IC(b) - 2 * IC(mica)
+     *
+     * @return distance in [0, 2], 2 if there is no common ancestor
+     */
+    public double jiangConrathDistance(int a, int b) {
+        if (a == b) return 0.0;
+        int mica = this.mostInformativeCommonAncestor(a, b);
+        double micaIC = mica < 0 ? 0.0 : this.ic[mica];
+        return this.ic[a] + this.ic[b] - 2.0 * micaIC;
+    }
+
+    /**
+     * Jiang-Conrath similarity, the distance brought back to [0, 1]
+     *
+     * @return similarity in [0, 1]
+     */
+    public double jiangConrath(int a, int b) {
+        return 1.0 - this.jiangConrathDistance(a, b) / 2.0;
+    }
+
+    /**
+     * do performance testing of this class
+     * @param args
+     * @throws java.io.IOException
+     */
+    public static void main(String[] args) throws java.io.IOException {
+        SNOMED snomed = SNOMED.loadSnomed();
+        long start = System.nanoTime();
+        SemanticSimilarity similarity = snomed.getSemanticSimilarity();
+        System.out.println("IC computed in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        int n = similarity.hierarchy.size();
+        int pairs = 1000000;
+        java.util.Random random = new java.util.Random(42);
+        double checksum = 0;
+        start = System.nanoTime();
+        for (int k = 0; k < pairs; k++) {
+            checksum += similarity.lin(random.nextInt(n), random.nextInt(n));
+        }
+        long duration = System.nanoTime() - start;
+        System.out.printf("%d Lin similarities in %d ms (%.2f us/pair) [%f]%n",
+                pairs, duration / 1000000, duration / 1000.0 / pairs, checksum);
+    }
+}
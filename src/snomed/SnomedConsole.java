@@ -0,0 +1,304 @@
+package snomed;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ *
+ * Interactive console over a loaded SNOMED-CT (used for tests and debugging).
+ *
+ * The console only uses the read methods of SNOMED, and keeps its own
+ * Scanner: the ontology itself has no console state and can be shared by
+ * other threads while the console is used.
+ */
+public class SnomedConsole {
+
+    private static final long IS_A = 116680003L;
+
+    private final SNOMED snomed;
+    private final Scanner in;
+
+    public SnomedConsole(SNOMED snomed, Scanner in) {
+        this.snomed = snomed;
+        this.in = in;
+    }
+
+    /**
+     * (Helper function) The names of a concept or relationship, as printed by the console
+     */
+    private String names(long conceptId) {
+        String fsn = this.snomed.getFSN(conceptId);
+        List<String> synonyms = this.snomed.getSynonyms(conceptId);
+        if (fsn == null && synonyms.isEmpty()) return "null";
+        StringBuilder res = new StringBuilder();
+        res.append("FSN:  ");
+        res.append(fsn + "\n");
+        for (String s : synonyms) {
+            res.append("SYN:  " + s + "\n");
+        }
+        return res.toString();
+    }
+
+    /**
+     * Print the whole list of relationships available in SNOMED
+     */
+    public void printRelationships() {
+        System.out.println("Total number of relationships:" + this.snomed.R());
+        System.out.println("Number of relationship types: " + this.snomed.getRelationshipTypes().size());
+        for (Long lc : this.snomed.getRelationshipTypes()) {
+            System.out.println("Code: " + lc + "\n" + this.names(lc));
+        }
+    }
+
+    /**
+     * (Helper function) Print the path from the concept id to the root. Prints
+     * only the first found path. (Many path may exists because a concept can
+     * have many parents)
+     */
+    private void getPathToRoot(int index) {
+        System.out.println("Concept ID: " + this.snomed.getConceptId(index));
+        System.out.println(this.names(this.snomed.getConceptId(index)));
+        System.out.println("Relationships:");
+        int[] parents = this.snomed.isAParents(index);
+        while (parents.length > 0) {
+            // TODO find only one path ! take all the parents to get all the paths
+            index = parents[0];
+            System.out.println("Relationship:");
+            System.out.println(this.names(IS_A));
+            System.out.println("Concept:");
+            System.out.println(this.names(this.snomed.getConceptId(index)));
+            parents = this.snomed.isAParents(index);
+        }
+    }
+
+    /**
+     * Print the path from the concept index (1..N) to the root. N = total
+     * number of concepts. Prints only the first found path. (Many path may
+     * exists because a concept can have many parents)
+     */
+    public void getPathToRootIndex() {
+        System.out.println("(Path to Root) Introduce an Integer between [0 - " + this.snomed.C() + "]: ");
+        int input = this.in.nextInt();
+        this.getPathToRoot(input);
+    }
+
+    /**
+     * Print the path from the concept id to the root. Prints only the first
+     * found path. (Many path may exists because a concept can have many
+     * parents)
+     */
+    public void getPathToRootId() {
+        System.out.println("(Path to Root) Introduce the concept Id or something else to abort: ");
+        long input = this.in.nextLong();
+        if (this.snomed.contains(input)) {
+            this.getPathToRoot(this.snomed.getIndex(input));
+        } else {
+            System.out.println("Unkown concept: " + input);
+        }
+    }
+
+    /**
+     * Search for a word in the list of concepts names
+     */
+    public void searchWords() {
+        System.out.println("Search for the word : ");
+        String query = this.in.next();
+        if (query.length() > 0) {
+            System.out.println("Seaching for:" + query);
+            LongList found = this.snomed.searchConcepts(query);
+            for (int i = 0; i < found.size(); i++) {
+                long n = found.get(i);
+                if (!this.snomed.contains(n))
+                    System.out.print("[Unlinked Term]");
+                System.out.println("Cpt:" + n + "\t" + this.snomed.getFSN(n));
+            }
+        }
+    }
+
+    /**
+     * Search for concepts where a list of words appears in the
+     * concepts names
+     */
+    public void searchAlistOfwords() {
+        // initialize the list of words
+        List<String> words = new LinkedList<String>();
+
+        // reading the list of words
+        while (true) {
+            System.out.println("List of words (stop to stop) : ");
+            String word = this.in.next();
+            if (word.equals("stop"))
+                break;
+
+            words.add(word);
+        }
+
+        HashMap<String,Object> results = this.snomed.getMatchesForListOfWords(words, SNOMED.SearchMethod.REG_EXP);
+        LongList result = (LongList) results.get("SNOMED_IDs");
+
+        System.out.println(result.size() + " Match(s)");
+        for (int i = 0; i < result.size(); i++) {
+            System.out.println(" -> " + result.get(i) + "\t" + this.snomed.getFSN(result.get(i)));
+        }
+    }
+
+    /**
+     * Print the list of relationships and concepts coming out from conceptId.
+     */
+    public void getAllOutneighborsId() {
+        System.out.println("(Out Neighbors) Introduce the concept Id or something else to abort: ");
+        long input = this.in.nextLong();
+        if (this.snomed.isRelationshipType(input)) {
+            System.out.println("It's a relationship: ");
+            System.out.println(this.names(input));
+        } else {
+            if (this.snomed.contains(input)) {
+                this.getAllOutneighbors(this.snomed.getIndex(input));
+            } else {
+                System.out.println("Unkown concept: " + input);
+            }
+        }
+    }
+
+    /**
+     * Print the list of relationships and concepts coming out of the concept
+     * index.
+     */
+    public void getAllOutneighborsIndex() {
+        System.out.println("(Out Neighbors) Introduce an Integer between [0 - " + (this.snomed.C() - 1)
+                + "] or something else to abort: ");
+        int input = this.in.nextInt();
+        if (input >= 0 && input <= this.snomed.C() - 1) {
+            this.getAllOutneighbors(input);
+        } else {
+            System.out.println("Abort. Input: " + input);
+        }
+    }
+
+    /**
+     * (Helper function) Print the list of relationships and concepts coming out
+     * of a concept index.
+     */
+    private void getAllOutneighbors(int index) {
+        System.out.println("Concept ID: " + this.snomed.getConceptId(index));
+        System.out.println(this.names(this.snomed.getConceptId(index)));
+        System.out.println("Relationships:");
+        int[] neighbors = this.snomed.outNeighbors(index);
+        long[] types = this.snomed.outTypeIds(index);
+        for (int k = 0; k < neighbors.length; k++) {
+            System.out.println("Relationship:");
+            System.out.println(this.names(types[k]));
+            System.out.println("Concept:");
+            System.out.println(this.names(this.snomed.getConceptId(neighbors[k])));
+        }
+    }
+
+    /**
+     * Search for concepts where a list of words appears in the
+     * concepts names
+     */
+    public void searchSnomedConceptsInsideAlistOfwords() {
+        // initialize the list of words from where to extract information
+        List<String> wordsList = new LinkedList<String>();
+
+        // reading the list of words and formatting them
+        while (true) {
+            System.out.println("List of words ( (End of Report) to stop) : ");
+            String line = this.in.nextLine();
+            if (line.equals("(End of Report)")) {
+                break;
+            }
+            else {
+                String[] listOfWords = line.split(" ");
+                for (String string : listOfWords) {
+                    wordsList.add(string);
+                }
+            }
+        }
+
+        // put the list of words into a String[]
+        String[] words = new String[wordsList.size()];
+        words = wordsList.toArray(words);
+
+        // search the possible concepts cited in the words.
+
+        //LongList result = this.snomed.getAllFoundConceptsSweep(words);
+        LongList result = this.snomed.getAllFoundConceptsNoSweep(words);
+
+        // print the found matches
+        System.out.println(result.size() + " Match(s)");
+        for (int i = 0; i < result.size(); i++) {
+            System.out.println(" -> " + result.get(i) + "\t" + this.snomed.getFSN(result.get(i)));
+        }
+    }
+
+    /**
+     * Read the choices of the user until 0 (stop)
+     */
+    public void run() {
+        while (true) {
+            try {
+                System.out.println("Choose from the list below:"
+                        + "\n0:stop"
+                        + "\n1:Get all the out-neighbors of a concept index."
+                        + "\n2:Get all the out-neighbors of a concept id."
+                        + "\n3:Search for the concepts where the word appears"
+                        + "\n4:Get the path to the root of a concept index"
+                        + "\n5:Get the path to the root of a concept id"
+                        + "\n6:Print the list of relationships and their names"
+                        + "\n7:Search for a list of words: "
+                        + "\n8:Search concepts in a list of lines '(End of Report)' to end");
+
+                int choice = this.in.nextInt();
+
+                if (choice == 0)
+                    break;
+
+                if (choice == 1)
+                    // Get all the out-neighbors of a concept index
+                    this.getAllOutneighborsIndex();
+
+                if (choice == 2)
+                    // Get all the out-neighbors of a concept id
+                    this.getAllOutneighborsId();
+
+                if (choice == 3)
+                    // Search for the concepts where the word appears
+                    this.searchWords();
+
+                if (choice == 4)
+                    // Get the path to the root of a concept.
+                    this.getPathToRootIndex();
+
+                if (choice == 5)
+                    // Get the path to the root of a concept.
+                    this.getPathToRootId();
+
+                if (choice == 6)
+                    // Print the list of relationships and their names
+                    this.printRelationships();
+
+                if (choice == 7)
+                    // Print the list of relationships and their names
+                    this.searchAlistOfwords();
+
+                if (choice == 8)
+                    // Print the list of concepts found in a chaine of characters and their names
+                    this.searchSnomedConceptsInsideAlistOfwords();
+
+            } catch (Exception e) {
+                e.printStackTrace();
+                break;
+            }
+        }
+    }
+
+    // Used for tests and debugging
+    public static void main(String[] args) throws IOException {
+        SNOMED snomed = SNOMED.loadSnomed();
+        new SnomedConsole(snomed, new Scanner(System.in)).run();
+    }
+}
@@ -0,0 +1,232 @@
+package snomed;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *
+ * Holds the SNOMED-CT snapshot in use by a long-running service, and replaces
+ * it by a new release at runtime without stopping the readers (read-copy-update).
+ *
+ * A reader takes a lease on the current snapshot for the time of its work
+ * (ex. a document), and keeps the same snapshot until it closes the lease:
+ *
+ *     try (SnomedHolder.Lease lease = holder.acquire()) {
+ *         SNOMED snomed = lease.get();
+ *         ...
+ *     }
+ *
+ * A new release is loaded in a background thread (reload(), or reloadDelta()
+ * for a Delta release applied to the current snapshot), then swapped in
+ * atomically: the next leases get the new snapshot, the leases already taken
+ * keep the old one. The old snapshot is released (its reference dropped, so
+ * that it can be garbage collected) when the last of its leases is closed.
+ *
+ * Each snapshot counts its leases, plus one for the holder while it is the
+ * current snapshot. A lease can only be taken on a snapshot whose count is
+ * not zero yet, so a released snapshot is never handed out again.
+ */
+public class SnomedHolder {
+
+    /**
+     * A snapshot and the number of its users (leases + the holder)
+     */
+    private static final class Snapshot {
+        private volatile SNOMED snomed;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Snapshot(SNOMED snomed) {
+            this.snomed = snomed;
+        }
+
+        /**
+         * Take a reference, unless the snapshot is already released
+         */
+        private boolean retain() {
+            while (true) {
+                int count = this.references.get();
+                if (count == 0) return false;
+                if (this.references.compareAndSet(count, count + 1)) return true;
+            }
+        }
+
+        /**
+         * Drop a reference, the last one releases the snapshot
+         */
+        private void release(SnomedHolder holder) {
+            if (this.references.decrementAndGet() == 0) {
+                this.snomed = null;
+                holder.retired.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A reader's use of a snapshot, to be closed when the reader is done
+     */
+    public final class Lease implements AutoCloseable {
+        private Snapshot snapshot;
+
+        private Lease(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * The snapshot of the lease (the same one until the lease is closed)
+         *
+         * @throws IllegalStateException if the lease is closed
+         */
+        public SNOMED get() {
+            if (this.snapshot == null)
+                throw new IllegalStateException("Lease closed");
+            return this.snapshot.snomed;
+        }
+
+        /**
+         * Give the snapshot back (closing twice has no effect)
+         */
+        @Override
+        public void close() {
+            if (this.snapshot == null) return;
+            this.snapshot.release(SnomedHolder.this);
+            this.snapshot = null;
+        }
+    }
+
+    private final AtomicReference<Snapshot> current;
+
+    // number of replaced snapshots still used by some leases
+    private final AtomicInteger retired = new AtomicInteger();
+
+    // loads the new releases, one at a time
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "snomed-reload");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * @param snomed the first snapshot (not modified after this call)
+     */
+    public SnomedHolder(SNOMED snomed) {
+        if (snomed == null) throw new IllegalArgumentException("snomed is null");
+        this.current = new AtomicReference<Snapshot>(new Snapshot(snomed));
+    }
+
+    /**
+     * Take a lease on the current snapshot
+     */
+    public Lease acquire() {
+        while (true) {
+            Snapshot snapshot = this.current.get();
+            // fails only if the snapshot was swapped and released meanwhile
+            if (snapshot.retain()) return new Lease(snapshot);
+        }
+    }
+
+    /**
+     * Replace the current snapshot. The leases already taken keep the previous
+     * one, which is released when they are all closed.
+     *
+     * @param snomed the new snapshot (not modified after this call)
+     */
+    public void swap(SNOMED snomed) {
+        if (snomed == null) throw new IllegalArgumentException("snomed is null");
+        Snapshot previous = this.current.getAndSet(new Snapshot(snomed));
+        this.retired.incrementAndGet();
+        previous.release(this);
+    }
+
+    /**
+     * (Helper function) Replace the current snapshot only if it is still the
+     * expected one
+     *
+     * @return false if another snapshot was swapped in meanwhile
+     */
+    private boolean swap(Snapshot expected, SNOMED snomed) {
+        if (!this.current.compareAndSet(expected, new Snapshot(snomed))) return false;
+        this.retired.incrementAndGet();
+        expected.release(this);
+        return true;
+    }
+
+    /**
+     * Load a new snapshot in the background, then swap it in.
+     * If the loading fails the current snapshot is kept, and the error is
+     * thrown by the returned Future.
+     *
+     * @param load builds the new snapshot
+     * @return the new snapshot, once it is in use
+     */
+    public Future<SNOMED> reload(final Callable<SNOMED> load) {
+        return this.loader.submit(new Callable<SNOMED>() {
+            @Override
+            public SNOMED call() throws Exception {
+                SNOMED snomed = load.call();
+                // build the main indexes before the readers use it
+                snomed.getEclEngine();
+                swap(snomed);
+                return snomed;
+            }
+        });
+    }
+
+    /**
+     * Load a new release from its three files in the background, then swap it in
+     */
+    public Future<SNOMED> reload(final String conceptsFile, final String relationshipsFile, final String descriptionsFile) {
+        return this.reload(new Callable<SNOMED>() {
+            @Override
+            public SNOMED call() throws IOException {
+                return new SNOMED(conceptsFile, relationshipsFile, descriptionsFile);
+            }
+        });
+    }
+
+    /**
+     * Apply a Delta release to the current snapshot in the background, then
+     * swap in the new snapshot (the current one is not changed, see
+     * SNOMED.withDelta()).
+     * The new snapshot replaces only the one the Delta was applied to: if
+     * another snapshot was swapped in meanwhile, it is kept, and the returned
+     * Future throws an IllegalStateException.
+     */
+    public Future<SNOMED> reloadDelta(final String conceptsFile, final String relationshipsFile, final String descriptionsFile) {
+        return this.loader.submit(new Callable<SNOMED>() {
+            @Override
+            public SNOMED call() throws IOException {
+                try (Lease lease = acquire()) {
+                    SNOMED snomed = lease.get().withDelta(conceptsFile, relationshipsFile, descriptionsFile);
+                    // build the main indexes before the readers use it
+                    snomed.getEclEngine();
+                    if (!swap(lease.snapshot, snomed))
+                        throw new IllegalStateException("The snapshot was replaced while the Delta was applied");
+                    return snomed;
+                }
+            }
+        });
+    }
+
+    /**
+     * Number of replaced snapshots still held by some leases
+     */
+    public int retiredInUse() {
+        return this.retired.get();
+    }
+
+    /**
+     * Stop the background loader (the loading in progress, if any, is finished)
+     */
+    public void shutdown() {
+        this.loader.shutdown();
+    }
+}
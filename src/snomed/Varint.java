@@ -0,0 +1,54 @@
+package snomed;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * Variable length encoding of the non negative ints used by the binary
+ * stores (AdjacencyStore, DescriptionStore): 7 bits per byte, low bits
+ * first, the high bit set on all the bytes but the last one.
+ * Small values (deltas, counts, lengths) take a single byte.
+ */
+final class Varint {
+
+    private Varint() {
+    }
+
+    /**
+     * Write a non negative int as a varint
+     */
+    static void write(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Read the varint at a position of the buffer (see size() for its length)
+     */
+    static int read(ByteBuffer buffer, int position) {
+        int value = 0, shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Number of bytes of the varint of value, as written by write()
+     */
+    static int size(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,73 @@
+package wordnet;
+
+import java.util.Arrays;
+
+/**
+ * The ancestors of a synset with their minimum depth: the smallest number of
+ * links from the synset up to the ancestor (see GraphAlgorithms.ancestors()
+ * and WordNet.getAncestors()). The synset itself is its ancestor of depth 0.
+ *
+ * With the same relations, these are the synsets of the paths of
+ * getPathsToRoot(), found by a BFS without enumerating the paths (both follow
+ * the hypernyms by default). A BFS also accepts relations making cycles
+ * (RelationMask.ALL), for which getPathsToRoot() fails.
+ */
+public final class AncestorDepths {
+
+	// by increasing depth (order of the BFS)
+	private final int[] ancestors;
+	private final int[] depths;
+	// by increasing SynsetID, for depthOf()
+	private final int[] sortedAncestors;
+	private final int[] sortedDepths;
+
+	AncestorDepths(int[] ancestors, int[] depths) {
+		this.ancestors = ancestors;
+		this.depths = depths;
+		long[] keys = new long[ancestors.length];
+		for (int k = 0; k < keys.length; k++) keys[k] = ((long) ancestors[k] << 32) | depths[k];
+		Arrays.sort(keys);
+		this.sortedAncestors = new int[keys.length];
+		this.sortedDepths = new int[keys.length];
+		for (int k = 0; k < keys.length; k++) {
+			this.sortedAncestors[k] = (int) (keys[k] >>> 32);
+			this.sortedDepths[k] = (int) keys[k];
+		}
+	}
+
+	/**
+	 * Number of ancestors (the synset included)
+	 */
+	public int size() {
+		return this.ancestors.length;
+	}
+
+	/**
+	 * The k-th ancestor (SynsetID), by increasing depth
+	 */
+	public int ancestor(int k) {
+		return this.ancestors[k];
+	}
+
+	/**
+	 * Depth of the k-th ancestor
+	 */
+	public int depth(int k) {
+		return this.depths[k];
+	}
+
+	/**
+	 * Minimum depth of an ancestor (binary search); -1 if it is not an ancestor
+	 */
+	public int depthOf(int synsetID) {
+		int k = Arrays.binarySearch(this.sortedAncestors, synsetID);
+		return k < 0 ? -1 : this.sortedDepths[k];
+	}
+
+	/**
+	 * Is the synset an ancestor?
+	 */
+	public boolean contains(int synsetID) {
+		return Arrays.binarySearch(this.sortedAncestors, synsetID) >= 0;
+	}
+}
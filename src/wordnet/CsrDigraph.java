@@ -0,0 +1,279 @@
+package wordnet;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ *  The {@code CsrDigraph} class represents an immutable directed graph of
+ *  vertices named 0 through <em>V</em> - 1, with labeled edges.
+ *  <p>
+ *  The edges are stored in compressed sparse rows (CSR): the edges of the
+ *  vertex v are at the positions start(v)..end(v)-1 of two arrays, the target
+ *  vertices (int) and the labels (byte). A label is the code of a pointer
+ *  symbol of WordNet (see WORDNET_RELATIONS.code()), so no Edge or String is
+ *  kept per edge.
+ *  </p>
+ *  <p>
+ *  The edges of a vertex are kept in the reverse order of their insertion,
+ *  the order in which the {@link Bag} of {@link Digraph} returned them, so that
+ *  the traversals give the same results.
+ *  Being immutable, the graph can be shared (by GraphAlgorithms and several threads).
+ *  </p>
+ */
+public class CsrDigraph {
+
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    private final int V;           // number of vertices in this digraph
+    private final int[] offsets;   // offsets[v] = position of the first edge of v, offsets[V] = E
+    private final int[] targets;   // target vertex of each edge
+    private final byte[] labels;   // code of the label of each edge
+
+    /**
+     * Build a digraph from its edges given as parallel arrays.
+     *
+     * @param V the number of vertices
+     * @param count the number of edges in the arrays
+     * @param sources tail vertex of each edge
+     * @param heads head vertex of each edge
+     * @param codes label of each edge (see WORDNET_RELATIONS.code())
+     * @throws IndexOutOfBoundsException unless all the vertices are in 0..V-1
+     */
+    CsrDigraph(int V, int count, int[] sources, int[] heads, byte[] codes) {
+        if (V < 0) throw new IllegalArgumentException("Number of vertices in a Digraph must be nonnegative");
+        this.V = V;
+        this.offsets = new int[V + 1];
+        this.targets = new int[count];
+        this.labels = new byte[count];
+        for (int e = 0; e < count; e++) {
+            validateVertex(sources[e]);
+            validateVertex(heads[e]);
+            this.offsets[sources[e] + 1]++;
+        }
+        for (int v = 0; v < V; v++) this.offsets[v + 1] += this.offsets[v];
+        // fill each vertex from its end: the last edge inserted comes first
+        int[] fill = new int[V];
+        for (int v = 0; v < V; v++) fill[v] = this.offsets[v + 1];
+        for (int e = 0; e < count; e++) {
+            int position = --fill[sources[e]];
+            this.targets[position] = heads[e];
+            this.labels[position] = codes[e];
+        }
+    }
+
+    /**
+     * Use the CSR arrays as they are (not copied)
+     *
+     * @param V the number of vertices
+     * @param offsets position of the first edge of each vertex, then the number of edges (V+1 values)
+     * @param targets head vertex of each edge
+     * @param codes label of each edge (see WORDNET_RELATIONS.code())
+     */
+    CsrDigraph(int V, int[] offsets, int[] targets, byte[] codes) {
+        if (offsets.length != V + 1 || targets.length != offsets[V] || codes.length != offsets[V])
+            throw new IllegalArgumentException("Inconsistent CSR arrays");
+        this.V = V;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.labels = codes;
+    }
+
+    /**
+     * Initializes a new digraph with the vertices and edges of a {@link Digraph},
+     * in the same order.
+     *
+     * @param G the digraph to copy
+     * @throws IllegalArgumentException if a label is not a pointer symbol of WORDNET_RELATIONS
+     */
+    public CsrDigraph(Digraph G) {
+        this.V = G.V();
+        this.offsets = new int[V + 1];
+        for (int v = 0; v < V; v++) this.offsets[v + 1] = this.offsets[v] + G.outdegree(v);
+        this.targets = new int[this.offsets[V]];
+        this.labels = new byte[this.offsets[V]];
+        int position = 0;
+        for (int v = 0; v < V; v++) {
+            for (Edge w : G.adj(v)) {
+                WORDNET_RELATIONS relation = WORDNET_RELATIONS.typeOf(w.label());
+                if (relation == null) throw new IllegalArgumentException("Unknown label: " + w.label());
+                this.targets[position] = w.index();
+                this.labels[position] = relation.code();
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of vertices in this digraph.
+     *
+     * @return the number of vertices in this digraph
+     */
+    public int V() {
+        return V;
+    }
+
+    /**
+     * Returns the number of edges in this digraph.
+     *
+     * @return the number of edges in this digraph
+     */
+    public int E() {
+        return this.offsets[V];
+    }
+
+    // throw an IndexOutOfBoundsException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= V)
+            throw new IndexOutOfBoundsException("vertex " + v + " is not between 0 and " + (V-1));
+    }
+
+    /**
+     * Position of the first edge of v (no check of v, for the traversals)
+     */
+    int start(int v) {
+        return this.offsets[v];
+    }
+
+    /**
+     * Position after the last edge of v (no check of v, for the traversals)
+     */
+    int end(int v) {
+        return this.offsets[v + 1];
+    }
+
+    /**
+     * Head vertex of the edge at a position
+     */
+    int target(int e) {
+        return this.targets[e];
+    }
+
+    /**
+     * Label code of the edge at a position (see WORDNET_RELATIONS.code())
+     */
+    byte label(int e) {
+        return this.labels[e];
+    }
+
+    /**
+     * Returns the edges going out of vertex {@code v}.
+     *
+     * @param  v the vertex
+     * @return the edges going out of {@code v}, as an iterable
+     * @throws IndexOutOfBoundsException unless {@code 0 <= v < V}
+     */
+    public Iterable<Edge> adj(int v) {
+        return this.adj(v, RelationMask.ALL);
+    }
+
+    /**
+     * Returns the edges going out of vertex {@code v} whose label is in the mask.
+     *
+     * @param  v the vertex
+     * @param  relations the labels accepted
+     * @return the edges going out of {@code v}, as an iterable
+     * @throws IndexOutOfBoundsException unless {@code 0 <= v < V}
+     */
+    public Iterable<Edge> adj(final int v, RelationMask relations) {
+        validateVertex(v);
+        final long mask = relations.bits();
+        return new Iterable<Edge>() {
+            @Override
+            public Iterator<Edge> iterator() {
+                return new Iterator<Edge>() {
+                    private int position = skip(offsets[v]);
+
+                    private int skip(int e) {
+                        while (e < offsets[v + 1] && (mask & (1L << labels[e])) == 0) e++;
+                        return e;
+                    }
+
+                    public boolean hasNext() {
+                        return position < offsets[v + 1];
+                    }
+
+                    public Edge next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Edge edge = new Edge(WORDNET_RELATIONS.label(labels[position]), targets[position]);
+                        position = skip(position + 1);
+                        return edge;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the number of directed edges incident from vertex {@code v}.
+     * This is known as the <em>outdegree</em> of vertex {@code v}.
+     *
+     * @param  v the vertex
+     * @return the outdegree of vertex {@code v}
+     * @throws IndexOutOfBoundsException unless {@code 0 <= v < V}
+     */
+    public int outdegree(int v) {
+        validateVertex(v);
+        return this.offsets[v + 1] - this.offsets[v];
+    }
+
+    /**
+     * Returns the number of directed edges incident to vertex {@code v}.
+     * This is known as the <em>indegree</em> of vertex {@code v}.
+     * It is not stored: this takes time proportional to <em>E</em>.
+     *
+     * @param  v the vertex
+     * @return the indegree of vertex {@code v}
+     * @throws IndexOutOfBoundsException unless {@code 0 <= v < V}
+     */
+    public int indegree(int v) {
+        validateVertex(v);
+        int indegree = 0;
+        for (int target : this.targets) {
+            if (target == v) indegree++;
+        }
+        return indegree;
+    }
+
+    /**
+     * Returns the reverse of the digraph, with the same labels.
+     * The edges are in the order of {@link Digraph#reverse()}.
+     *
+     * @return the reverse of the digraph
+     */
+    public CsrDigraph reverse() {
+        int E = E();
+        int[] sources = new int[E];
+        int[] heads = new int[E];
+        for (int v = 0; v < V; v++) {
+            for (int e = this.offsets[v]; e < this.offsets[v + 1]; e++) {
+                sources[e] = this.targets[e];
+                heads[e] = v;
+            }
+        }
+        return new CsrDigraph(V, E, sources, heads, this.labels);
+    }
+
+    /**
+     * Returns a string representation of the graph.
+     *
+     * @return the number of vertices <em>V</em>, followed by the number of edges <em>E</em>,
+     *         followed by the <em>V</em> adjacency lists
+     */
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append(V + " vertices, " + E() + " edges " + NEWLINE);
+        for (int v = 0; v < V; v++) {
+            s.append(String.format("%d: ", v));
+            for (Edge w : adj(v)) {
+                s.append(String.format("%s ", w));
+            }
+            s.append(NEWLINE);
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,240 @@
+package wordnet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Byte level reader of the WordNet data files (data.noun, data.verb, data.adj, data.adv).
+ *
+ * The file is read at once (or mapped, see MappedWordNet), and the fields of a
+ * synset line (see wndb.5) are parsed straight from the bytes, with absolute
+ * reads only (a mapped buffer can be shared by several scanners):
+ *     - nextDecimal() and nextHex() parse the numbers without building a String
+ *     - nextWord() builds a String only for the words of the synset
+ *     - nextPointerSymbol() finds the relation type through the table of WORDNET_RELATIONS
+ *     - gloss() decodes the gloss, only when it is asked for
+ *     - nextRow() skips the rest of the line (frames and gloss)
+ *
+ * The license lines at the beginning of the file start with a space and are skipped.
+ *
+ * Usage:
+ *     DataFileScanner scanner = new DataFileScanner(file);
+ *     while (scanner.nextRow()) {
+ *         int offset = scanner.nextDecimal();
+ *         ...
+ *     }
+ */
+class DataFileScanner {
+
+    private final String path;
+    private final byte[] array;      // the file read in memory, or
+    private final ByteBuffer buffer; // the file mapped (absolute reads only)
+    private final int limit;         // end of the bytes
+    private int position;   // current position in the current line
+    private int rowStart;   // position of the start of the current line
+    private int rowEnd;     // position of the end of the current line ('\n' or end of file)
+    private int row;        // number of the current line (1..)
+
+    /**
+     * Read a data file
+     * @param path path to the WordNet data.TYPE file
+     * @throws IOException
+     */
+    DataFileScanner(String path) throws IOException {
+        this(path, Files.readAllBytes(Paths.get(path)));
+    }
+
+    /**
+     * Read lines already in memory
+     * @param path path to the WordNet data.TYPE file, for the error messages
+     * @param bytes content of the file
+     */
+    DataFileScanner(String path, byte[] bytes) {
+        this.path = path;
+        this.array = bytes;
+        this.buffer = null;
+        this.limit = bytes.length;
+        this.rowEnd = -1;
+    }
+
+    /**
+     * Read lines of a mapped file in place, without copying them
+     * @param path path to the WordNet data.TYPE file, for the error messages
+     * @param bytes content of the file (from 0 to its limit)
+     */
+    DataFileScanner(String path, ByteBuffer bytes) {
+        this.path = path;
+        this.array = null;
+        this.buffer = bytes;
+        this.limit = bytes.limit();
+        this.rowEnd = -1;
+    }
+
+    /**
+     * (Helper function) The byte at position i, from the array or the buffer
+     */
+    private byte at(int i) {
+        return this.array != null ? this.array[i] : this.buffer.get(i);
+    }
+
+    /**
+     * Move to the line starting at offset (a synset_offset), as nextRow() does
+     * @return false if no line starts there, or if it is not a synset line
+     */
+    boolean rowAt(int offset) {
+        if (offset < 0 || offset >= this.limit || (offset > 0 && this.at(offset - 1) != '\n'))
+            return false;
+        this.rowEnd = offset - 1;
+        this.row = -1; // unknown, the errors give the offset instead
+        return this.nextRow() && this.position == offset;
+    }
+
+    /**
+     * Byte offset of the current line in the file (its synset_offset)
+     */
+    int rowStart() {
+        return this.rowStart;
+    }
+
+    /**
+     * Move to the next synset line, skipping what is left of the current one.
+     * Empty lines and license lines are skipped.
+     * @return false at the end of the file
+     */
+    boolean nextRow() {
+        int start = this.rowEnd + 1;
+        while (start < this.limit) {
+            int end = start;
+            while (end < this.limit && this.at(end) != '\n') end++;
+            this.row++;
+            byte first = this.at(start);
+            if (first != ' ' && first != '\r' && first != '\n') {
+                this.position = start;
+                this.rowStart = start;
+                this.rowEnd = end;
+                return true;
+            }
+            start = end + 1;
+        }
+        this.rowEnd = this.limit;
+        return false;
+    }
+
+    /**
+     * (Helper function) Move to the first char of the next field, and return the end of the field
+     */
+    private int fieldEnd() {
+        while (this.position < this.rowEnd && isSpace(this.at(this.position))) this.position++;
+        int end = this.position;
+        while (end < this.rowEnd && !isSpace(this.at(end))) end++;
+        return end;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Parse the current field as a decimal number, and move to the next field
+     * @throws IllegalArgumentException if the field is not a number
+     */
+    int nextDecimal() {
+        int end = this.fieldEnd();
+        if (end == this.position) throw this.error("expected a number", end);
+        int value = 0;
+        for (int i = this.position; i < end; i++) {
+            int digit = this.at(i) - '0';
+            if (digit < 0 || digit > 9) throw this.error("expected a number", end);
+            value = value * 10 + digit;
+        }
+        this.position = end;
+        return value;
+    }
+
+    /**
+     * Parse the current field as a hexadecimal number, and move to the next field
+     * @throws IllegalArgumentException if the field is not a number
+     */
+    int nextHex() {
+        int end = this.fieldEnd();
+        if (end == this.position) throw this.error("expected a hexadecimal number", end);
+        int value = 0;
+        for (int i = this.position; i < end; i++) {
+            int digit = Character.digit(this.at(i), 16);
+            if (digit < 0) throw this.error("expected a hexadecimal number", end);
+            value = value * 16 + digit;
+        }
+        this.position = end;
+        return value;
+    }
+
+    /**
+     * The current field as a String, and move to the next field
+     */
+    String nextWord() {
+        int end = this.fieldEnd();
+        String value = this.text(this.position, end);
+        this.position = end;
+        return value;
+    }
+
+    /**
+     * The relation of the current pointer symbol, and move to the next field
+     * @return the relation (see WORDNET_RELATIONS.typeOf()), or null if the symbol is not a relation loaded
+     */
+    WORDNET_RELATIONS nextPointerSymbol() {
+        int end = this.fieldEnd();
+        int length = end - this.position;
+        WORDNET_RELATIONS type = WORDNET_RELATIONS.typeOf(length > 0 ? this.at(this.position) : 0,
+                length > 1 ? this.at(this.position + 1) : 0, length);
+        this.position = end;
+        return type;
+    }
+
+    /**
+     * The first char of the current field, and move to the next field
+     */
+    char nextChar() {
+        int end = this.fieldEnd();
+        if (end == this.position) throw this.error("expected a character", end);
+        char value = (char) (this.at(this.position) & 0xff);
+        this.position = end;
+        return value;
+    }
+
+    /**
+     * The gloss of the synset: the text after '|' at the end of the line, or
+     * null if there is none. Moves to the end of the line.
+     */
+    String gloss() {
+        int start = this.position;
+        while (start < this.rowEnd && this.at(start) != '|') start++;
+        this.position = this.rowEnd;
+        if (start == this.rowEnd) return null;
+        return this.text(start + 1, this.rowEnd).trim();
+    }
+
+    /**
+     * Skip the current field
+     */
+    void skip() {
+        this.position = this.fieldEnd();
+    }
+
+    /**
+     * (Helper function) The bytes [start, end) as ISO-8859-1 text
+     */
+    private String text(int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) chars[i] = (char) (this.at(start + i) & 0xff);
+        return new String(chars);
+    }
+
+    private IllegalArgumentException error(String message, int end) {
+        String where = this.row > 0 ? " line " + this.row : " offset " + this.rowStart;
+        return new IllegalArgumentException("WordNet: " + message + " in " + this.path + where
+                + ", found '" + this.text(this.position, end) + "'");
+    }
+}
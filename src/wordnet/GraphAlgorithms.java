@@ -1,21 +1,159 @@
 package wordnet;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
-
-import edu.princeton.cs.algs4.Queue;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
+/**
+ * Shortest ancestral paths (SAP) and paths to the root in the WordNet digraph.
+ *
+ * The searches of a thread reuse the same workspace: the visited marks are
+ * generation stamps (a vertex is marked when its stamp is the number of the
+ * current search), so nothing is cleared or allocated between two searches
+ * and a search costs the part of the graph it explores.
+ */
 public class GraphAlgorithms {
 	
 	private final static int GET_SAP_LENGTH = 0;
 	private final static int GET_SAP_ANCESTOR = 1;
 	
     // An immutable data type SAP
-    private final Digraph G;
+    private final CsrDigraph G;
+    // The reverse of G, built by the first search of descendants
+    private volatile CsrDigraph reverse;
+
+    /**
+     * The arrays of a BFS, reused by all the searches of a thread
+     */
+    private static final class Workspace {
+        // stampV[x] == generationV: x is visited from the set v (resp. w)
+        private final int[] stampV;
+        private final int[] stampW;
+        // distance from the set v (resp. w), valid only for the visited vertices
+        private final int[] distToV;
+        private final int[] distToW;
+        private int generationV = 0;
+        private int generationW = 0;
+
+        // FIFO ring buffer (power of two capacity)
+        private int[] queue = new int[256];
+        private int head;
+        private int size;
+
+        private Workspace(int V) {
+            this.stampV = new int[V];
+            this.stampW = new int[V];
+            this.distToV = new int[V];
+            this.distToW = new int[V];
+        }
+
+        /**
+         * Start a new search: all the vertices become not visited
+         */
+        private void begin() {
+            if (this.generationV == Integer.MAX_VALUE) {
+                // the stamps would come back: clear them once
+                Arrays.fill(this.stampV, 0);
+                this.generationV = 0;
+            }
+            this.generationV++;
+            this.beginW();
+        }
+
+        /**
+         * Start a new search from the side w only: the vertices visited from v stay visited
+         */
+        private void beginW() {
+            if (this.generationW == Integer.MAX_VALUE) {
+                Arrays.fill(this.stampW, 0);
+                this.generationW = 0;
+            }
+            this.generationW++;
+            this.head = 0;
+            this.size = 0;
+        }
+
+        private void startV(int v) {
+            if (v < 0 || v >= this.stampV.length) throw new IndexOutOfBoundsException();
+            this.enqueue(v); // start at v
+            this.markV(v, 0);
+        }
+
+        private void startW(int w) {
+            if (w < 0 || w >= this.stampW.length) throw new IndexOutOfBoundsException();
+            this.enqueue(-w-1); // start at w
+            this.markW(w, 0);
+        }
+
+        private boolean markedV(int x) {
+            return this.stampV[x] == this.generationV;
+        }
+
+        private boolean markedW(int x) {
+            return this.stampW[x] == this.generationW;
+        }
+
+        private void markV(int x, int distance) {
+            this.stampV[x] = this.generationV;
+            this.distToV[x] = distance;
+        }
+
+        private void markW(int x, int distance) {
+            this.stampW[x] = this.generationW;
+            this.distToW[x] = distance;
+        }
+
+        private boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        private void enqueue(int x) {
+            if (this.size == this.queue.length) {
+                // grow, putting the queue back at the beginning
+                int[] larger = new int[this.queue.length * 2];
+                for (int k = 0; k < this.size; k++) larger[k] = this.queue[(this.head + k) & (this.queue.length - 1)];
+                this.queue = larger;
+                this.head = 0;
+            }
+            this.queue[(this.head + this.size) & (this.queue.length - 1)] = x;
+            this.size++;
+        }
+
+        private int dequeue() {
+            int x = this.queue[this.head];
+            this.head = (this.head + 1) & (this.queue.length - 1);
+            this.size--;
+            return x;
+        }
+    }
+
+    // one workspace per thread using this object
+    private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace(G.V());
+        }
+    };
 
     public GraphAlgorithms(Digraph G) {
-        // constructor takes a DiGraph (not necessarily a DAG)
-        this.G = new Digraph(G);
+        // constructor takes a DiGraph (not necessarily a DAG), copied into an immutable one
+        this(new CsrDigraph(G));
+    }
+
+    /**
+     * The digraph is immutable, it is shared and not copied
+     * @param G digraph (not necessarily a DAG)
+     */
+    public GraphAlgorithms(CsrDigraph G) {
+        this.G = G;
     }
 
     /**
@@ -26,119 +164,106 @@ public class GraphAlgorithms {
      * @return shortest path length between v and w
      */
     public int length(int v, int w) {
-        LinkedList<Integer> V = new LinkedList<Integer>();
-        LinkedList<Integer> W = new LinkedList<Integer>();
-        V.add(v);
-        W.add(w);
-        return this.length(V, W);
+        return this.length(v, w, RelationMask.ALL);
+    }
+
+    /**
+     * length of the shortest ancestral path between v and w, following only
+     * the given relations; -1 if no such path
+     * @param v first set
+     * @param w second set
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return shortest path length between v and w
+     */
+    public int length(int v, int w, RelationMask relations) {
+        return this.calculator(v, w, GET_SAP_LENGTH, relations);
     }
 
-    private int calculator(Iterable<Integer> v, Iterable<Integer> w, int method) {
+    private int calculator(Iterable<Integer> v, Iterable<Integer> w, int method, RelationMask relations) {
+        Workspace workspace = this.workspace.get();
+        workspace.begin();
+        for (int vi : v) workspace.startV(vi);
+        for (int wi : w) workspace.startW(wi);
+        return this.calculator(workspace, method, relations);
+    }
+
+    private int calculator(int v, int w, int method, RelationMask relations) {
+        Workspace workspace = this.workspace.get();
+        workspace.begin();
+        workspace.startV(v);
+        workspace.startW(w);
+        return this.calculator(workspace, method, relations);
+    }
+
+    /**
+     * (Helper function) The BFS from the initial nodes already in the workspace
+     */
+    private int calculator(Workspace ws, int method, RelationMask relations) {
         // method=0 --> length()
         // method=1 --> ancestor()
+        // only the edges whose label is in the mask are followed
+        long mask = relations.bits();
         
         // a common ancestor that participates in shortest ancestral path; -1 if
         // no such path
-        // keep track of the visited nodes from each node seperately
-        boolean[] markedV = new boolean[G.V()];
-        boolean[] markedW = new boolean[G.V()];
-
-        // keep track of the distance from each node
-        int[] distToV = new int[G.V()];
-        int[] distToW = new int[G.V()];
-        
-        
+        // the visited nodes and their distance from each set are kept
+        // separately in the workspace
         int returnResult = Integer.MAX_VALUE;
         int bestI = -1;
-        
-        // Do a BFS
-        Queue<Integer> queue = new Queue<Integer>();
-        
-        // put the the initial node in the queue
-        for (int vi : v){
-            if (vi <0 || vi >=G.V()) throw new IndexOutOfBoundsException();
-            queue.enqueue(vi); // start at v
-            markedV[vi] = true;
-        }
 
-        // put all the others initial nodes in the queues
+        // Do a BFS: the initial nodes of v are in the queue, then the ones of w.
         // to distinguish between them we use the negative sign in the queue, to avoid
         // -0 we shift negative with -1 to -0 = -1; -1 = -2 ...
         // so when we enqueue we know we side of the set we are picking from
-        for (int wi : w){
-            if (wi <0 || wi >=G.V()) throw new IndexOutOfBoundsException();
-            queue.enqueue(-wi-1); // start at w
-            markedW[wi] = true;
-        }
-
 
         // repeat until no available vertex to explore
         // and prune when it is impossible to find a better distance
-        while (!queue.isEmpty()) {
-            //System.out.println("\nQueue:"+queue);
-      
-            int i = queue.dequeue();
+        while (!ws.isEmpty()) {
+            int i = ws.dequeue();
             if (i < 0) {
-                // we mark it as visited
-                markedW[-i-1] = true;
-                
+                int x = -i-1;
                 // for all the neighbors nodes check if they are visited
-                if (markedV[-i-1]){
+                if (ws.markedV(x)){
                     // if the left reaches the right, than compute the distance
-                    int distance = distToV[-i-1] + distToW[-i-1];
-                    
-                    //System.out.println(distance);
+                    int distance = ws.distToV[x] + ws.distToW[x];
                     // update the min distance if necessary
                     if ( distance < returnResult){
                         returnResult = distance;
-                        bestI = -i-1;
+                        bestI = x;
                     }
                 }
 
-                for (Edge e : G.adj(-i-1)) {
-                	int n = e.index();
+                for (int e = G.start(x); e < G.end(x); e++) {
+                	if ((mask & (1L << G.label(e))) == 0) continue;
+                	int n = G.target(e);
                     // queue the neignbors if not visited yet and the current distance to them
                     // is less than or equal to the min distance already found
-                    if (!markedW[n] && (returnResult >= distToW[-i-1])) {
-                        markedW[n] = true;
-                        queue.enqueue(-n-1);
-                        distToW[n] = distToW[-i-1] + 1;
+                    if (!ws.markedW(n) && (returnResult >= ws.distToW[x])) {
+                        ws.markW(n, ws.distToW[x] + 1);
+                        ws.enqueue(-n-1);
                     }
                 }
             } else {
-                // mark it as visited
-                markedV[i] = true;
                 // for all the neighbors nodes check if they are visited
-                if (markedW[i]){
-                    int distance = distToV[i] + distToW[i];
-                    //System.out.println(distance);
+                if (ws.markedW(i)){
+                    int distance = ws.distToV[i] + ws.distToW[i];
                     // update the min distance if necessary
                     if ( distance < returnResult){
                         returnResult = distance;
                         bestI = i;
                     }
                 }
-                for (Edge e : G.adj(i)) {
-                	int n = e.index();
-                    if (!markedV[n] && (returnResult >= distToV[i])) {
+                for (int e = G.start(i); e < G.end(i); e++) {
+                	if ((mask & (1L << G.label(e))) == 0) continue;
+                	int n = G.target(e);
+                    if (!ws.markedV(n) && (returnResult >= ws.distToV[i])) {
                         // queue the neignbors if not visited yet and the current distance to them
                         // is less than or equal to the min distance already found
-                        markedV[n] = true;
-                        queue.enqueue(n);
-                        distToV[n] = distToV[i] + 1;
+                        ws.markV(n, ws.distToV[i] + 1);
+                        ws.enqueue(n);
                     }
                 }                
             }
-            /*
-            System.out.print("MarkedV:");
-            for (int k = 0; k < distToW.length; k++) {
-                System.out.print(markedV[k]+" ");
-            }
-            System.out.print("\nMarkedW:");
-            for (int k = 0; k < distToW.length; k++) {
-                System.out.print(markedW[k]+" ");
-            } 
-            */                 
         }
         if (method==GET_SAP_LENGTH) {
             if (returnResult == Integer.MAX_VALUE)
@@ -154,14 +279,19 @@ public class GraphAlgorithms {
     }
 
     public int ancestor(int v, int w) {
-        // a common ancestor of v and w that participates in a shortest
-        // ancestral path; -1 if no such path
-        // keep track of the visited nodes from each node sepretly
-        LinkedList<Integer> V = new LinkedList<Integer>();
-        LinkedList<Integer> W = new LinkedList<Integer>();
-        V.add(v);
-        W.add(w);
-        return this.ancestor(V, W);
+        return this.ancestor(v, w, RelationMask.ALL);
+    }
+
+    /**
+     * a common ancestor of v and w that participates in a shortest
+     * ancestral path, following only the given relations; -1 if no such path
+     * @param v first set
+     * @param w second set
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return shortest ancestral path between the v and w
+     */
+    public int ancestor(int v, int w, RelationMask relations) {
+        return this.calculator(v, w, GET_SAP_ANCESTOR, relations);
     }
 
     /**
@@ -173,7 +303,18 @@ public class GraphAlgorithms {
      * @return shortest ancestral path length between the v and w
      */
     public int length(Iterable<Integer> v, Iterable<Integer> w) {
-        return this.calculator(v, w, GET_SAP_LENGTH);
+        return this.length(v, w, RelationMask.ALL);
+    }
+
+    /**
+     * Same as length(v, w), following only the given relations
+     * @param v first set
+     * @param w second set
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return shortest ancestral path length between the v and w
+     */
+    public int length(Iterable<Integer> v, Iterable<Integer> w, RelationMask relations) {
+        return this.calculator(v, w, GET_SAP_LENGTH, relations);
     }
 	/**
 	 * a common ancestor that participates in shortest ancestral path; 
@@ -184,7 +325,319 @@ public class GraphAlgorithms {
 	 * @return shortest ancestral path between the v and w
 	 */
     public int ancestor(Iterable<Integer> v, Iterable<Integer> w) {
-        return this.calculator(v, w, GET_SAP_ANCESTOR);
+        return this.ancestor(v, w, RelationMask.ALL);
+    }
+
+    /**
+     * Same as ancestor(v, w), following only the given relations
+     * @param v first set
+     * @param w second set
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return shortest ancestral path between the v and w
+     */
+    public int ancestor(Iterable<Integer> v, Iterable<Integer> w, RelationMask relations) {
+        return this.calculator(v, w, GET_SAP_ANCESTOR, relations);
+    }
+
+    /**
+     * Shortest ancestral paths of many pairs (v.get(k), w.get(k)) in one call.
+     * The pairs having the same set v (the same object) form a group: the
+     * distances from v are computed once by a complete BFS, then each w of the
+     * group only explores until no shorter path can be found. The groups are
+     * computed in parallel (common fork-join pool).
+     * The lengths are the ones of length(); with several shortest paths, the
+     * ancestor may be another one than the one of ancestor().
+     * @param v first set of each pair
+     * @param w second set of each pair
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return the length and ancestor of each pair
+     */
+    public SapResults sapAll(List<? extends Iterable<Integer>> v, List<? extends Iterable<Integer>> w, RelationMask relations) {
+        if (v.size() != w.size()) throw new IllegalArgumentException("Not the same number of sets: " + v.size() + " " + w.size());
+        // the pairs of each first set, in the order of the pairs
+        IdentityHashMap<Iterable<Integer>, List<Integer>> groups = new IdentityHashMap<>();
+        List<List<Integer>> order = new ArrayList<>();
+        for (int k = 0; k < v.size(); k++) {
+            List<Integer> pairs = groups.get(v.get(k));
+            if (pairs == null) {
+                pairs = new ArrayList<>();
+                groups.put(v.get(k), pairs);
+                order.add(pairs);
+            }
+            pairs.add(k);
+        }
+        int[] lengths = new int[v.size()];
+        int[] ancestors = new int[v.size()];
+        if (order.isEmpty()) return new SapResults(lengths, ancestors);
+        ForkJoinPool.commonPool().invoke(new SapTask(order, 0, order.size(), v, w, relations, lengths, ancestors));
+        return new SapResults(lengths, ancestors);
+    }
+
+    /**
+     * Computes a range of groups of pairs, split in halves down to one group
+     */
+    private final class SapTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<List<Integer>> groups;
+        private final int from;
+        private final int to;
+        private final List<? extends Iterable<Integer>> v;
+        private final List<? extends Iterable<Integer>> w;
+        private final RelationMask relations;
+        private final int[] lengths;
+        private final int[] ancestors;
+
+        private SapTask(List<List<Integer>> groups, int from, int to, List<? extends Iterable<Integer>> v,
+                List<? extends Iterable<Integer>> w, RelationMask relations, int[] lengths, int[] ancestors) {
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+            this.v = v;
+            this.w = w;
+            this.relations = relations;
+            this.lengths = lengths;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= 1) {
+                if (this.to == this.from) return;
+                sapGroup(this.groups.get(this.from), this.v, this.w, this.relations, this.lengths, this.ancestors);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new SapTask(this.groups, this.from, middle, this.v, this.w, this.relations, this.lengths, this.ancestors),
+                    new SapTask(this.groups, middle, this.to, this.v, this.w, this.relations, this.lengths, this.ancestors));
+        }
+    }
+
+    /**
+     * (Helper function) The pairs of a group (same first set): one complete
+     * BFS from the first set, then a bounded BFS from each second set
+     */
+    private void sapGroup(List<Integer> pairs, List<? extends Iterable<Integer>> v, List<? extends Iterable<Integer>> w,
+            RelationMask relations, int[] lengths, int[] ancestors) {
+        long mask = relations.bits();
+        Workspace ws = this.workspace.get();
+
+        // distances from the first set to all the vertices it reaches
+        ws.begin();
+        for (int vi : v.get(pairs.get(0))) ws.startV(vi);
+        while (!ws.isEmpty()) {
+            int i = ws.dequeue();
+            for (int e = G.start(i); e < G.end(i); e++) {
+                if ((mask & (1L << G.label(e))) == 0) continue;
+                int n = G.target(e);
+                if (!ws.markedV(n)) {
+                    ws.markV(n, ws.distToV[i] + 1);
+                    ws.enqueue(n);
+                }
+            }
+        }
+
+        for (int k : pairs) {
+            ws.beginW();
+            for (int wi : w.get(k)) {
+                if (wi < 0 || wi >= G.V()) throw new IndexOutOfBoundsException();
+                if (ws.markedW(wi)) continue;
+                ws.markW(wi, 0);
+                ws.enqueue(wi);
+            }
+            int returnResult = Integer.MAX_VALUE;
+            int bestI = -1;
+            // the vertices come by increasing distance: stop when no shorter path can be found
+            while (!ws.isEmpty()) {
+                int i = ws.dequeue();
+                if (ws.distToW[i] >= returnResult) break;
+                if (ws.markedV(i) && ws.distToV[i] + ws.distToW[i] < returnResult) {
+                    returnResult = ws.distToV[i] + ws.distToW[i];
+                    bestI = i;
+                }
+                for (int e = G.start(i); e < G.end(i); e++) {
+                    if ((mask & (1L << G.label(e))) == 0) continue;
+                    int n = G.target(e);
+                    if (!ws.markedW(n)) {
+                        ws.markW(n, ws.distToW[i] + 1);
+                        ws.enqueue(n);
+                    }
+                }
+            }
+            lengths[k] = returnResult == Integer.MAX_VALUE ? -1 : returnResult;
+            ancestors[k] = bestI;
+        }
+    }
+
+    /**
+     * The ancestors of v with their minimum depth (number of links from v),
+     * v included at depth 0, by a single BFS. The relations may make cycles.
+     * @param v SynsetID
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return the ancestors by increasing depth
+     * @throws IndexOutOfBoundsException unless {@code 0 <= v < V}
+     */
+    public AncestorDepths ancestors(int v, RelationMask relations) {
+        long mask = relations.bits();
+        Workspace ws = this.workspace.get();
+        ws.begin();
+        ws.startV(v);
+        int[] ancestors = new int[16];
+        int[] depths = new int[16];
+        int count = 0;
+        while (!ws.isEmpty()) {
+            int i = ws.dequeue();
+            if (count == ancestors.length) {
+                ancestors = Arrays.copyOf(ancestors, count * 2);
+                depths = Arrays.copyOf(depths, count * 2);
+            }
+            ancestors[count] = i;
+            depths[count] = ws.distToV[i];
+            count++;
+            for (int e = G.start(i); e < G.end(i); e++) {
+                if ((mask & (1L << G.label(e))) == 0) continue;
+                int n = G.target(e);
+                if (!ws.markedV(n)) {
+                    ws.markV(n, ws.distToV[i] + 1);
+                    ws.enqueue(n);
+                }
+            }
+        }
+        return new AncestorDepths(Arrays.copyOf(ancestors, count), Arrays.copyOf(depths, count));
+    }
+
+    /**
+     * The descendants of v: the vertices having v as ancestor through the
+     * given relations, v included (ex. all the hyponyms of any depth of v
+     * with RelationMask.HYPERNYMS). The edges are followed backwards, on the
+     * reverse of the graph.
+     * @param v SynsetID
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return the set of the descendants, indexed by SynsetID
+     * @throws IndexOutOfBoundsException unless {@code 0 <= v < V}
+     */
+    public BitSet descendants(int v, RelationMask relations) {
+        if (v < 0 || v >= G.V()) throw new IndexOutOfBoundsException();
+        long mask = relations.bits();
+        CsrDigraph R = this.reverse();
+        BitSet result = new BitSet(G.V());
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = v;
+        result.set(v);
+        while (head < tail) {
+            int i = queue[head++];
+            for (int e = R.start(i); e < R.end(i); e++) {
+                if ((mask & (1L << R.label(e))) == 0) continue;
+                int n = R.target(e);
+                if (result.get(n)) continue;
+                result.set(n);
+                // each vertex is enqueued once: the queue is never longer than V
+                if (tail == queue.length) queue = Arrays.copyOf(queue, Math.min(tail * 2, G.V()));
+                queue[tail++] = n;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * (Helper function) The reverse of G, built by the first call
+     */
+    private CsrDigraph reverse() {
+        CsrDigraph R = this.reverse;
+        if (R == null) {
+            synchronized (this) {
+                R = this.reverse;
+                if (R == null) {
+                    R = G.reverse();
+                    this.reverse = R;
+                }
+            }
+        }
+        return R;
+    }
+
+    /**
+     * A path to the root, sharing its end with the paths of the same parent
+     */
+    private static final class PathNode {
+        private final int vertex;
+        private final PathNode next; // null at the root
+
+        private PathNode(int vertex, PathNode next) {
+            this.vertex = vertex;
+            this.next = next;
+        }
+    }
+
+    /**
+     * All the paths from v to a root (a vertex without parent), in the order
+     * of the recursive enumeration: for each parent (order of adj()), v
+     * followed by each path of the parent.
+     * <p>
+     * The ancestors are visited once, in topological order (depth-first
+     * post-order): the paths of a vertex are computed from the memoized paths
+     * of its parents by adding one node in front of each, so the common ends
+     * of the paths are shared and not copied at each level. The lists are
+     * only built for the result.
+     * </p>
+     * @param v SynsetID
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return all the paths, starting by v and ending by a root
+     * @throws IllegalArgumentException if the relations make a cycle above v
+     * @throws IndexOutOfBoundsException unless {@code 0 <= v < V}
+     */
+    public List<LinkedList<Integer>> pathsToRoot(int v, RelationMask relations) {
+        if (v < 0 || v >= G.V()) throw new IndexOutOfBoundsException();
+        long mask = relations.bits();
+        HashMap<Integer, List<PathNode>> paths = new HashMap<>();
+        HashSet<Integer> onStack = new HashSet<>();
+
+        // depth-first search: vertex and position of its next edge
+        int[] stackVertex = new int[16];
+        int[] stackEdge = new int[16];
+        int top = 0;
+        stackVertex[0] = v;
+        stackEdge[0] = G.start(v);
+        onStack.add(v);
+        while (top >= 0) {
+            int i = stackVertex[top];
+            int e = stackEdge[top];
+            while (e < G.end(i) && ((mask & (1L << G.label(e))) == 0 || paths.containsKey(G.target(e)))) e++;
+            if (e < G.end(i)) {
+                // a parent not done yet
+                int n = G.target(e);
+                stackEdge[top] = e + 1;
+                if (!onStack.add(n))
+                    throw new IllegalArgumentException("The relations " + relations + " make a cycle at " + n);
+                top++;
+                if (top == stackVertex.length) {
+                    stackVertex = Arrays.copyOf(stackVertex, top * 2);
+                    stackEdge = Arrays.copyOf(stackEdge, top * 2);
+                }
+                stackVertex[top] = n;
+                stackEdge[top] = G.start(n);
+                continue;
+            }
+            // all the parents are done: the paths of i
+            List<PathNode> result = new ArrayList<>();
+            for (e = G.start(i); e < G.end(i); e++) {
+                if ((mask & (1L << G.label(e))) == 0) continue;
+                for (PathNode path : paths.get(G.target(e))) result.add(new PathNode(i, path));
+            }
+            if (result.isEmpty()) result.add(new PathNode(i, null));
+            paths.put(i, result);
+            onStack.remove(i);
+            top--;
+        }
+
+        List<LinkedList<Integer>> result = new ArrayList<>();
+        for (PathNode path : paths.get(v)) {
+            LinkedList<Integer> list = new LinkedList<>();
+            for (PathNode node = path; node != null; node = node.next) list.add(node.vertex);
+            result.add(list);
+        }
+        return result;
     }
 
     /**
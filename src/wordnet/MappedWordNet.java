@@ -0,0 +1,368 @@
+package wordnet;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Lazy access to WordNet through memory-mapped data files.
+ *
+ * In the data.TYPE files, the synset_offset of a synset is the byte offset of
+ * its line in the file (see wndb.5). The files are mapped, and a synset is
+ * decoded from its line only when it is asked for: its words, its pointers and
+ * its gloss (which WordNet does not load).
+ *
+ * The only structures in heap are the index of the words (word -> SynsetIDs)
+ * and the SynsetIDs of the synsets (SynsetID <-> part of speech and offset).
+ * They are built by a single pass over the mapped files, scanned in place,
+ * the first time they are needed. A synset has the same SynsetID as in
+ * WordNet (and in the wn_ entries of the mapping): the pass numbers the
+ * synsets in the order WordNet meets them.
+ *
+ * Limits: there is no graph of the relations here, so no distance, sap,
+ * parents or paths; the pointers of a synset are decoded from its line only.
+ * For the graph algorithms with a fast start, use WordNet.loadImage().
+ * The files are only read, the instance can be shared by several threads.
+ */
+public class MappedWordNet {
+
+	/**
+	 * A pointer from a synset to another one (see wndb.5)
+	 */
+	public static final class Pointer {
+		private final String symbol;
+		private final POS pos;
+		private final int offset;
+
+		private Pointer(String symbol, POS pos, int offset) {
+			this.symbol = symbol;
+			this.pos = pos;
+			this.offset = offset;
+		}
+
+		/**
+		 * The pointer symbol, ex. "@" for the hypernyms (see WORDNET_RELATIONS)
+		 */
+		public String symbol() {
+			return symbol;
+		}
+
+		public POS pos() {
+			return pos;
+		}
+
+		public int offset() {
+			return offset;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + symbol + "," + pos + "," + offset + ")";
+		}
+	}
+
+	/**
+	 * A synset decoded from its line
+	 */
+	public static final class Synset {
+		private final POS pos;
+		private final int offset;
+		private final List<String> words;
+		private final List<Pointer> pointers;
+		private final String gloss;
+
+		private Synset(POS pos, int offset, List<String> words, List<Pointer> pointers, String gloss) {
+			this.pos = pos;
+			this.offset = offset;
+			this.words = Collections.unmodifiableList(words);
+			this.pointers = Collections.unmodifiableList(pointers);
+			this.gloss = gloss;
+		}
+
+		public POS pos() {
+			return pos;
+		}
+
+		public int offset() {
+			return offset;
+		}
+
+		public List<String> words() {
+			return words;
+		}
+
+		public List<Pointer> pointers() {
+			return pointers;
+		}
+
+		/**
+		 * The definition and examples of the synset, or null if none
+		 */
+		public String gloss() {
+			return gloss;
+		}
+
+		@Override
+		public String toString() {
+			return pos + " " + offset + " " + String.join(" ", words);
+		}
+	}
+
+	/**
+	 * The words and the SynsetIDs, built by one pass over the files
+	 */
+	private static final class Index {
+		// <Word> -> SynsetIDs, in the order of WordNet.getSynsets()
+		private final HashMap<String, int[]> words = new HashMap<>();
+		// SynsetID -> POS.ordinal() << 32 | offset
+		private long[] keys = new long[1024];
+		private int size = 0;
+		// the keys sorted, and the SynsetID of each
+		private long[] sortedKeys;
+		private int[] sortedIDs;
+	}
+
+	private final String[] paths = new String[POS.values().length];
+	private final MappedByteBuffer[] files = new MappedByteBuffer[POS.values().length];
+
+	// built on first use
+	private volatile Index index;
+
+	/**
+	 * Map the four data files of WordNet. Nothing is read yet.
+	 * @param nouns path to the data.noun file
+	 * @param adjectives path to the data.adj file
+	 * @param adverbs path to the data.adv file
+	 * @param verbs path to the data.verb file
+	 * @throws IOException
+	 */
+	public MappedWordNet(String nouns, String adjectives, String adverbs, String verbs) throws IOException {
+		this.map(POS.NOUN, nouns);
+		this.map(POS.ADJ, adjectives);
+		this.map(POS.ADV, adverbs);
+		this.map(POS.VERB, verbs);
+	}
+
+	private void map(POS pos, String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			this.files[pos.ordinal()] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		this.paths[pos.ordinal()] = path;
+	}
+
+	/**
+	 * Decode the synset at the given offset of a data file
+	 * @param pos part of speech (data file) of the synset
+	 * @param offset synset_offset of the synset
+	 * @return the synset
+	 * @throws IllegalArgumentException if there is no synset at this offset
+	 */
+	public Synset getSynset(POS pos, int offset) {
+		// the scanner reads the mapped file in place
+		DataFileScanner in = new DataFileScanner(this.paths[pos.ordinal()], this.files[pos.ordinal()]);
+		if (!in.rowAt(offset) || in.nextDecimal() != offset)
+			throw new IllegalArgumentException("No " + pos + " synset at offset " + offset);
+		in.skip(); //lex_filenum ignore
+		in.skip(); //ss_type ignore
+		int w_cnt = in.nextHex();
+		List<String> synsetWords = new ArrayList<>(w_cnt);
+		for (int i = 0; i < w_cnt; i++) {
+			synsetWords.add(in.nextWord());
+			in.skip(); //lex_id ignore
+		}
+		int p_cnt = in.nextDecimal();
+		List<Pointer> pointers = new ArrayList<>(p_cnt);
+		for (int i = 0; i < p_cnt; i++) {
+			String symbol = in.nextWord();
+			int target = in.nextDecimal();
+			POS targetPos = WordNetPart.toPOS(in.nextChar());
+			in.skip(); //source/target ignore
+			if (targetPos != null) pointers.add(new Pointer(symbol, targetPos, target));
+		}
+		return new Synset(pos, offset, synsetWords, pointers, in.gloss());
+	}
+
+	/**
+	 * Decode the synset of a SynsetID (the index of the synset in WordNet)
+	 * @param synsetID SynsetID of the synset
+	 * @return the synset
+	 * @throws IllegalArgumentException if the SynsetID is unknown
+	 */
+	public Synset getSynset(int synsetID) {
+		Index index = this.index();
+		if (synsetID < 0 || synsetID >= index.size)
+			throw new IllegalArgumentException("Index (" + synsetID + ") not found");
+		long key = index.keys[synsetID];
+		return this.getSynset(POS.values()[(int) (key >>> 32)], (int) key);
+	}
+
+	/**
+	 * The SynsetID of a synset (its index in WordNet)
+	 * @param pos part of speech (data file) of the synset
+	 * @param offset synset_offset of the synset
+	 * @return the SynsetID
+	 * @throws IllegalArgumentException if there is no synset at this offset
+	 */
+	public int getSynsetID(POS pos, int offset) {
+		Index index = this.index();
+		int k = Arrays.binarySearch(index.sortedKeys, ((long) pos.ordinal() << 32) | offset);
+		if (k < 0) throw new IllegalArgumentException("No " + pos + " synset at offset " + offset);
+		return index.sortedIDs[k];
+	}
+
+	/**
+	 * The words of a SynsetID, as WordNet.getSynsetIDName()
+	 * @throws IllegalArgumentException if the SynsetID is unknown
+	 */
+	public String getSynsetIDName(int synsetID) {
+		return String.join(" ", this.getSynset(synsetID).words());
+	}
+
+	/**
+	 * Get all the synsets where word is available
+	 * @param word the searched word (case sensitive, as in the data files)
+	 * @return the synsets, or empty list if none
+	 */
+	public List<Synset> getSynsets(String word) {
+		List<Synset> result = new ArrayList<>();
+		for (int synsetID : this.getSynsetIDs(word)) result.add(this.getSynset(synsetID));
+		return result;
+	}
+
+	/**
+	 * Get the SynsetIDs of the synsets where word is available, as
+	 * WordNet.getSynsets()
+	 * @param word the searched word (case sensitive, as in the data files)
+	 * @return the SynsetIDs, or empty list if none
+	 */
+	public List<Integer> getSynsetIDs(String word) {
+		if (word == null) throw new NullPointerException();
+		int[] synsetIDs = this.index().words.get(word);
+		List<Integer> result = new ArrayList<>(synsetIDs == null ? 0 : synsetIDs.length);
+		if (synsetIDs != null) {
+			for (int synsetID : synsetIDs) result.add(synsetID);
+		}
+		return result;
+	}
+
+	/**
+	 * Check if a word is present in WordNet.
+	 * This function is case sensitive.
+	 */
+	public boolean isWord(String word) {
+		if (word == null) throw new NullPointerException();
+		return this.index().words.containsKey(word);
+	}
+
+	/**
+	 * return all the words available in all the Synsets of WordNet
+	 */
+	public Iterable<String> words() {
+		return Collections.unmodifiableSet(this.index().words.keySet());
+	}
+
+	/**
+	 * (Helper function) The index of the words and SynsetIDs, built by the first call
+	 */
+	private Index index() {
+		Index index = this.index;
+		if (index == null) {
+			synchronized (this) {
+				index = this.index;
+				if (index == null) {
+					index = new Index();
+					// the order of WordNet: the files, then the synsets as they are met
+					HashMap<Long, Integer> numbers = new HashMap<>();
+					for (POS pos : new POS[] {POS.NOUN, POS.VERB, POS.ADV, POS.ADJ}) {
+						this.indexFile(pos, index, numbers);
+					}
+					index.sortedKeys = Arrays.copyOf(index.keys, index.size);
+					Arrays.sort(index.sortedKeys);
+					index.sortedIDs = new int[index.size];
+					for (int k = 0; k < index.size; k++) {
+						index.sortedIDs[k] = numbers.get(index.sortedKeys[k]);
+					}
+					this.index = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * (Helper function) Number the synsets of a data file and of its pointers
+	 * (as WordNetPart does), and add the words of its synsets to the index
+	 */
+	private void indexFile(POS pos, Index index, HashMap<Long, Integer> numbers) {
+		DataFileScanner in = new DataFileScanner(this.paths[pos.ordinal()], this.files[pos.ordinal()]);
+		while (in.nextRow()) {
+			int synsetID = number(pos, in.nextDecimal(), index, numbers);
+			in.skip(); //lex_filenum ignore
+			in.skip(); //ss_type ignore
+			int w_cnt = in.nextHex();
+			for (int i = 0; i < w_cnt; i++) {
+				String word = in.nextWord();
+				in.skip(); //lex_id ignore
+				int[] synsetIDs = index.words.get(word);
+				if (synsetIDs == null) {
+					synsetIDs = new int[] {synsetID};
+				} else {
+					synsetIDs = Arrays.copyOf(synsetIDs, synsetIDs.length + 1);
+					synsetIDs[synsetIDs.length - 1] = synsetID;
+				}
+				index.words.put(word, synsetIDs);
+			}
+			int p_cnt = in.nextDecimal();
+			for (int i = 0; i < p_cnt; i++) {
+				// the pointers WordNet does not load do not number their target
+				WORDNET_RELATIONS pointer_symbol = in.nextPointerSymbol();
+				int target = in.nextDecimal();
+				POS targetPos = WordNetPart.toPOS(in.nextChar());
+				in.skip(); //source/target ignore
+				if (pointer_symbol != null && targetPos != null) number(targetPos, target, index, numbers);
+			}
+		}
+	}
+
+	/**
+	 * (Helper function) The SynsetID of a synset, numbered when first met
+	 */
+	private static int number(POS pos, int offset, Index index, HashMap<Long, Integer> numbers) {
+		long key = ((long) pos.ordinal() << 32) | offset;
+		Integer synsetID = numbers.get(key);
+		if (synsetID != null) return synsetID;
+		if (index.size == index.keys.length) index.keys = Arrays.copyOf(index.keys, index.size * 2);
+		index.keys[index.size] = key;
+		numbers.put(key, index.size);
+		return index.size++;
+	}
+
+	/**
+	 * do unit testing
+	 * @param args a word to search
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		long start = System.currentTimeMillis();
+		MappedWordNet wordnet = WordNet.loadMappedWordNet();
+		System.out.println("Mapped in " + (System.currentTimeMillis() - start) + " ms");
+
+		String word = args.length > 0 ? args[0] : "breathe";
+		start = System.currentTimeMillis();
+		List<Synset> synsets = wordnet.getSynsets(word);
+		System.out.println("Words indexed in " + (System.currentTimeMillis() - start) + " ms");
+		for (Synset synset : synsets) {
+			System.out.println(synset + " | " + synset.gloss());
+			for (Pointer pointer : synset.pointers()) {
+				System.out.println("   " + pointer.symbol() + " " + wordnet.getSynset(pointer.pos(), pointer.offset()));
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package wordnet;
+
+/**
+ * An immutable set of WordNet relations (pointer symbols), used to choose the
+ * links followed by the traversals of the graph (see GraphAlgorithms).
+ *
+ * For example the taxonomic distance between two synsets only follows the
+ * hypernyms:
+ *     wordnet.distance(wordA, wordB, RelationMask.HYPERNYMS);
+ *
+ * The set is a bit set of the codes of the pointer symbols (see
+ * WORDNET_RELATIONS.code()), so testing an edge is a single bit test.
+ */
+public final class RelationMask {
+
+	/** All the relations loaded (the default of the traversals) */
+	public static final RelationMask ALL = new RelationMask(-1L);
+
+	/** Hypernyms and instance hypernyms: going up the taxonomy */
+	public static final RelationMask HYPERNYMS = of("@", "@i");
+
+	/** Hyponyms and instance hyponyms: going down the taxonomy */
+	public static final RelationMask HYPONYMS = of("~", "~i");
+
+	/** Member, substance and part holonyms */
+	public static final RelationMask HOLONYMS = of("#m", "#s", "#p");
+
+	/** Member, substance and part meronyms */
+	public static final RelationMask MERONYMS = of("%m", "%s", "%p");
+
+	private final long bits;
+
+	private RelationMask(long bits) {
+		this.bits = bits;
+	}
+
+	/**
+	 * The set of the given pointer symbols (see WORDNET_RELATIONS), ex. "@", "~i", "&"
+	 * @throws IllegalArgumentException if a symbol is not a relation loaded
+	 */
+	public static RelationMask of(String... symbols) {
+		long bits = 0;
+		for (String symbol : symbols) {
+			WORDNET_RELATIONS relation = WORDNET_RELATIONS.typeOf(symbol);
+			if (relation == null) throw new IllegalArgumentException("Unknown pointer symbol: " + symbol);
+			bits |= 1L << relation.code();
+		}
+		return new RelationMask(bits);
+	}
+
+	/**
+	 * The relations of this set and of the other one
+	 */
+	public RelationMask or(RelationMask other) {
+		return new RelationMask(this.bits | other.bits);
+	}
+
+	/**
+	 * Is the pointer symbol in the set?
+	 */
+	public boolean contains(String symbol) {
+		WORDNET_RELATIONS relation = WORDNET_RELATIONS.typeOf(symbol);
+		return relation != null && this.contains(relation.code());
+	}
+
+	/**
+	 * Is the label code in the set? (see WORDNET_RELATIONS.code())
+	 */
+	boolean contains(byte code) {
+		return (this.bits & (1L << code)) != 0;
+	}
+
+	/**
+	 * The bit set of the label codes
+	 */
+	long bits() {
+		return this.bits;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof RelationMask && ((RelationMask) obj).bits == this.bits;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(this.bits);
+	}
+
+	@Override
+	public String toString() {
+		if (this.bits == -1L) return "[ALL]";
+		StringBuilder result = new StringBuilder("[");
+		for (byte code = 0; code < WORDNET_RELATIONS.labelCount(); code++) {
+			if (!this.contains(code)) continue;
+			if (result.length() > 1) result.append(' ');
+			result.append(WORDNET_RELATIONS.label(code));
+		}
+		return result.append(']').toString();
+	}
+}
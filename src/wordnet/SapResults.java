@@ -0,0 +1,37 @@
+package wordnet;
+
+/**
+ * The shortest ancestral paths of a batch of pairs (see GraphAlgorithms.sapAll()
+ * and WordNet.sapAll()), in the order of the pairs.
+ */
+public final class SapResults {
+
+	private final int[] lengths;
+	private final int[] ancestors;
+
+	SapResults(int[] lengths, int[] ancestors) {
+		this.lengths = lengths;
+		this.ancestors = ancestors;
+	}
+
+	/**
+	 * Number of pairs
+	 */
+	public int size() {
+		return this.lengths.length;
+	}
+
+	/**
+	 * Length of the shortest ancestral path of the pair k; -1 if no such path
+	 */
+	public int length(int k) {
+		return this.lengths[k];
+	}
+
+	/**
+	 * A common ancestor (SynsetID) on a shortest ancestral path of the pair k; -1 if no such path
+	 */
+	public int ancestor(int k) {
+		return this.ancestors[k];
+	}
+}
@@ -1,5 +1,8 @@
 package wordnet;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 enum WORDNET_RELATIONS {
 	ADV_POINTER_SYMBOL_ANTONYM ("!"),
 	ADV_POINTER_SYMBOL_DERIVED_FROM_ADJECTIVE ("\\"), // link to nouns or verbs
@@ -52,6 +55,32 @@ enum WORDNET_RELATIONS {
 	
 	private final String type ;
 	
+	// one code per different pointer symbol (the same symbol is shared by several parts of speech)
+	private byte code;
+	
+	// code -> pointer symbol
+	private static final String[] LABELS;
+	
+	// pointer symbol (1 or 2 ASCII chars) -> first relation with this symbol,
+	// indexed by first * 128 + second (0 if no second char)
+	private static final WORDNET_RELATIONS[] SYMBOLS = new WORDNET_RELATIONS[128 * 128];
+	
+	static {
+		String[] labels = new String[values().length];
+		int count = 0;
+		for (WORDNET_RELATIONS relation : values()) {
+			int key = relation.type.charAt(0) * 128 + (relation.type.length() > 1 ? relation.type.charAt(1) : 0);
+			if (SYMBOLS[key] == null) {
+				SYMBOLS[key] = relation;
+				relation.code = (byte) count;
+				labels[count++] = relation.type;
+			} else {
+				relation.code = SYMBOLS[key].code;
+			}
+		}
+		LABELS = Arrays.copyOf(labels, count);
+	}
+	
 	WORDNET_RELATIONS(String type) {
 		this.type = type;
 	}
@@ -60,4 +89,58 @@ enum WORDNET_RELATIONS {
 		return this.type;
 	}
 	
+	/**
+	 * The code of the pointer symbol (0..labelCount()-1), the same for all the relations having this symbol
+	 */
+	byte code() {
+		return this.code;
+	}
+	
+	/**
+	 * The pointer symbol of a code
+	 */
+	static String label(byte code) {
+		return LABELS[code];
+	}
+	
+	/**
+	 * Number of different pointer symbols (codes)
+	 */
+	static int labelCount() {
+		return LABELS.length;
+	}
+	
+	/**
+	 * Find the relation of a pointer symbol read from a data file.
+	 * @param bytes content of the file
+	 * @param start first char of the symbol
+	 * @param length length of the symbol
+	 * @return the first relation with this symbol, or null if the symbol is not a relation loaded
+	 */
+	static WORDNET_RELATIONS typeOf(byte[] bytes, int start, int length) {
+		return typeOf(length > 0 ? bytes[start] : 0, length > 1 ? bytes[start + 1] : 0, length);
+	}
+
+	/**
+	 * Find the relation of a pointer symbol of one or two chars
+	 * @param first first char of the symbol
+	 * @param second second char of the symbol (0 if none)
+	 * @param length length of the symbol
+	 * @return the first relation with this symbol, or null if the symbol is not a relation loaded
+	 */
+	static WORDNET_RELATIONS typeOf(int first, int second, int length) {
+		if (length < 1 || length > 2) return null;
+		if (first <= 0 || second < 0) return null;
+		return SYMBOLS[first * 128 + second];
+	}
+	
+	/**
+	 * Find the relation of a pointer symbol
+	 * @return the first relation with this symbol, or null if the symbol is not a relation loaded
+	 */
+	static WORDNET_RELATIONS typeOf(String symbol) {
+		byte[] bytes = symbol.getBytes(StandardCharsets.ISO_8859_1);
+		return typeOf(bytes, 0, bytes.length);
+	}
+	
 }
\ No newline at end of file
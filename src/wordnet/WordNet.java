@@ -1,12 +1,19 @@
 package wordnet;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,6 +31,7 @@ public class WordNet {
 	private final static String WORDNET_ADJECTIVES_FILE_PATH = "res/wordnet/data.adj";
 	private final static String WORDNET_ADVERBS_FILE_PATH = "res/wordnet/data.adv";
 	private final static String WORDNET_VERBS_FILE_PATH = "res/wordnet/data.verb";
+	private final static String WORDNET_IMAGE_FILE_PATH = "res/wordnet/wordnet.img";
 	
 	// This value can be extracted from WordNet. 
 	// Run it with a large value of DIGRAPH_SIZE.
@@ -42,17 +50,19 @@ public class WordNet {
     private HashMap<String, LinkedList<Integer>> words;
     	
     // links all the Nouns, Adjectives, Adverbs and Verbs of WordNet
-    private Digraph wordnetDigraph;
+    private CsrDigraph wordnetDigraph;
 
     // SAP object (Shortest Ancestral Path)
     private GraphAlgorithms algorithms;
     
-    // used to read WordNet files
-    private Scanner in;
+    // the data files loaded (paths, sizes and dates), saved with the images
+    private String metadata;
     
     /**
      * The constructor takes the name of the two input files.
      * Loads the Entire WordNet including Nouns, Adjectives, Adverbs and Verbs.
+     * The four files are parsed in parallel, the indexes are the same as
+     * loading nouns, verbs, adverbs then adjectives one after another.
      * (This uses only the nouns of WordNet)
   
      * @param nouns path to the file containing Synsets nouns (and their relationships) of WordNet
@@ -62,94 +72,159 @@ public class WordNet {
      * @throws IOException 
      */
     public WordNet(String nouns, String adjectives, String adverbes, String verbs) throws IOException {
-    	wordnetDigraph = new Digraph(DIGRAPH_SIZE);
+    	this.metadata = describe(nouns, adjectives, adverbes, verbs);
     	this.indexer = new Indexer();
     	this.synsets = new HashMap<>();
     	this.words = new HashMap<>();
 
-    	loadFile(nouns, synsets, words, POS.NOUN);
-    	loadFile(verbs, synsets, words, POS.VERB);
-    	loadFile(adverbes, synsets, words, POS.ADV);
-    	loadFile(adjectives, synsets, words, POS.ADJ);
+    	// parse the four files concurrently, then merge them in the sequential order
+    	String[] files = {nouns, verbs, adverbes, adjectives};
+    	POS[] types = {POS.NOUN, POS.VERB, POS.ADV, POS.ADJ};
+    	ExecutorService pool = Executors.newFixedThreadPool(files.length);
+    	try {
+    		List<Future<WordNetPart>> parts = new LinkedList<>();
+    		for (int i = 0; i < files.length; i++) {
+    			final String file = files[i];
+    			final POS pos = types[i];
+    			parts.add(pool.submit(new Callable<WordNetPart>() {
+    				@Override
+    				public WordNetPart call() throws IOException {
+    					return new WordNetPart(file, pos);
+    				}
+    			}));
+    		}
+    		List<WordNetPart> loaded = new LinkedList<>();
+    		int edges = 0;
+    		for (Future<WordNetPart> part : parts) {
+    			loaded.add(getPart(part));
+    			edges += loaded.get(loaded.size() - 1).edgeCount();
+    		}
+    		// the links of all the files, as parallel arrays
+    		int[] sources = new int[edges];
+    		int[] targets = new int[edges];
+    		byte[] labels = new byte[edges];
+    		int count = 0;
+    		for (WordNetPart part : loaded) {
+    			count = merge(part, synsets, words, sources, targets, labels, count);
+    		}
+    		wordnetDigraph = new CsrDigraph(DIGRAPH_SIZE, count, sources, targets, labels);
+    	} finally {
+    		pool.shutdownNow();
+    	}
        
 
-        // set object used to compute the length(), distance(), etc in the Diagraph
+        // set object used to compute the length(), distance(), etc in the Diagraph (shared, not copied)
         this.algorithms = new GraphAlgorithms(wordnetDigraph);
 
         
     	System.out.println("Total number of different synsets: " + this.indexer.size());
     	System.out.println("Total number of words : " + this.words.size());
     }
+
+    /**
+     * (Helper function) Restore the structures of an image
+     */
+    private WordNet(WordNetImage image) {
+    	this.metadata = image.metadata;
+    	this.indexer = image.indexer;
+    	this.synsets = image.synsets;
+    	this.words = image.words;
+    	this.wordnetDigraph = image.digraph;
+    	this.algorithms = new GraphAlgorithms(wordnetDigraph);
+    }
+
+    /**
+     * (Helper function) Identify the data files: paths, sizes and dates
+     */
+    private static String describe(String... files) {
+    	StringBuilder result = new StringBuilder();
+    	for (String path : files) {
+    		File file = new File(path);
+    		result.append(path + "=" + file.length() + ":" + file.lastModified() + ";");
+    	}
+    	return result.toString();
+    }
+
+    /**
+     * Save the loaded WordNet into a binary image, restored by loadImage()
+     * without parsing the data files again.
+     * @param path image file to write
+     * @throws IOException
+     */
+    public void saveImage(String path) throws IOException {
+    	WordNetImage.write(path, this.metadata, this.indexer, this.synsets, this.words, this.wordnetDigraph);
+    }
+
+    /**
+     * Restore a WordNet saved by saveImage(): same synset indexes, words and links.
+     * @param path image file
+     * @return an instance of WordNet
+     * @throws IOException if the file can not be read or is not a WordNet image
+     */
+    public static WordNet loadImage(String path) throws IOException {
+    	return new WordNet(new WordNetImage(path));
+    }
     
 
     /**
-     * Read a WordNet file data.TYPE (TYPE: verb, noun, adj or adv) and
-     * load all the SynSets in them plus the links chosen in WORDNET_RELATIONS.
-     * See (wndb.5) for the data structure.
+     * Add the SynSets and links of a WordNet file data.TYPE (TYPE: verb, noun, adj or adv).
+     * See (wndb.5) for the data structure and WordNetPart for the parsing.
      * All the link are regarded the same. They are are not labeled.
-     * @param filePath path to the WordNet data.TYPE file to load
+     * The global indexes are given in the order of the local indexes of the part:
+     * merging the parts in the order of the files gives the indexes of a sequential loading.
+     * @param part the parsed file
      * @param wordsPerSynset kept only if you want to save word in separate HashMaps
      * @param allWords kept only if you want to save word in separate HashMaps
-     * @param posEnum type of file to load
-     * @throws IOException
+     * @param sources receives the source index of the links
+     * @param targets receives the target index of the links
+     * @param labels receives the label code of the links
+     * @param count number of links already in the arrays
+     * @return number of links in the arrays after the part
      */
-    private void loadFile(String filePath, HashMap<Integer, List<String>> wordsPerSynset, HashMap<String, LinkedList<Integer>> allWords, POS posEnum) throws IOException {
-    	System.out.println("[WordNet] "+filePath+" ...");
-        BufferedReader fileReader = new BufferedReader(new FileReader(filePath));
-        String line;
-        for(int i = 0; i < 29; i++) fileReader.readLine(); //skip the license lines
-        while ((line = fileReader.readLine()) != null) {
-        	in = new Scanner(line);
-        	int synset_offset = in.nextInt();
-        	in.nextInt(); //lex_filenum ignore
-        	in.next(); //IGNORE
-        	indexer.addIndex(synset_offset, posEnum);
-        	int sourceIndex = indexer.getIndex(synset_offset, posEnum);
-        	int w_cnt = Integer.parseInt(in.next(), 16);
-        	LinkedList<String> words = new LinkedList<>();
-        	for (int i = 0; i<w_cnt; i++){
-        		String word = in.next();
-        		words.add(word);
-        		in.next(); //lex_id ignore
-        	}
-        	wordsPerSynset.put(sourceIndex, words);
-        	for (String string : words) {
+    private int merge(WordNetPart part, HashMap<Integer, List<String>> wordsPerSynset, HashMap<String, LinkedList<Integer>> allWords,
+    		int[] sources, int[] targets, byte[] labels, int count) {
+    	// local index -> global index
+    	int[] global = new int[part.size()];
+    	for (int i = 0; i < global.length; i++) {
+    		global[i] = indexer.getIndex(part.offset(i), part.pos(i));
+    	}
+    	int k = 0;
+    	for (LinkedList<String> synsetWords : part.words()) {
+    		int sourceIndex = global[part.synset(k++)];
+        	wordsPerSynset.put(sourceIndex, synsetWords);
+        	for (String string : synsetWords) {
         		LinkedList<Integer> refs = allWords.get(string);
         		if (refs == null){
         			refs = new LinkedList<>();
-        			refs.add(sourceIndex);
         			allWords.put(string, refs);
-        		} else {
-        			refs.add(sourceIndex);
         		}
+        		refs.add(sourceIndex);
 			}
-        	int p_cnt = in.nextInt();
-        	for (int i = 0; i < p_cnt; i++){
-        		String pointer_symbol = in.next();
-        		int synset_offset_target = in.nextInt();
-        		char pos = in.next().charAt(0);
-        		in.next(); //source/target ignore
-        		for (WORDNET_RELATIONS relationType : WORDNET_RELATIONS.values()) {
-					if (relationType.getType().equals(pointer_symbol)){
-						int targetIndex = 0;
-						switch (pos) {
-						case 'n': targetIndex = indexer.getIndex(synset_offset_target, POS.NOUN); break;
-						case 'v': targetIndex = indexer.getIndex(synset_offset_target, POS.VERB); break;
-						case 'r': targetIndex = indexer.getIndex(synset_offset_target, POS.ADV); break;
-						case 'a': targetIndex = indexer.getIndex(synset_offset_target, POS.ADJ); break;
-						case 's': targetIndex = indexer.getIndex(synset_offset_target, POS.ADJ); break;
-						default: System.out.println("Unknown char: " + pos); break;
-						};
-						this.wordnetDigraph.addEdge(sourceIndex, targetIndex, pointer_symbol);
-	        			// A character is ambiguous in WordNet (avoid duplicate insertions)
-	        			break;
-	        		}						
-				}
-			}
-        	//ignore frames for verbs, and gloss for all
-        }
-        fileReader.close();
-        System.out.println("[WordNet] "+filePath+" DONE ");
+    	}
+    	for (int e = 0; e < part.edgeCount(); e++) {
+    		sources[count] = global[part.edgeSource(e)];
+    		targets[count] = global[part.edgeTarget(e)];
+    		labels[count] = part.edgeLabel(e);
+    		count++;
+    	}
+    	return count;
+    }
+
+    /**
+     * (Helper function) Wait for a part, and throw its loading error if any
+     */
+    private static WordNetPart getPart(Future<WordNetPart> part) throws IOException {
+    	try {
+    		return part.get();
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    		throw new InterruptedIOException("WordNet loading interrupted");
+    	} catch (ExecutionException e) {
+    		Throwable cause = e.getCause();
+    		if (cause instanceof IOException) throw (IOException) cause;
+    		if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+    		throw new IOException(cause);
+    	}
     }
 
 
@@ -194,6 +269,22 @@ public class WordNet {
         return this.algorithms.length(this.words.get(wordA), this.words.get(wordB));
     }
 
+    /**
+     * distance between wordA and wordB following only the given relations,
+     * ex. RelationMask.HYPERNYMS for the distance in the taxonomy.
+     * @param wordA
+     * @param wordB
+     * @param relations the links followed
+     * @return the length of the shortest ancestral path, -1 if none
+     */
+    public int distance(String wordA, String wordB, RelationMask relations) {
+        if (wordA == null || wordB == null)
+            throw new NullPointerException();
+        if (!this.isWord(wordA) || !this.isWord(wordB))
+            throw new IllegalArgumentException();
+        return this.algorithms.length(this.words.get(wordA), this.words.get(wordB), relations);
+    }
+
     public String sap(String wordA, String wordB) {
         // a synset (second field of synsets.txt) that is the common ancestor of
         // nounA and nounB
@@ -207,6 +298,65 @@ public class WordNet {
         return this.getSynsetIDName(commonAncestor);
     }
 
+    /**
+     * The common ancestor of wordA and wordB in a shortest ancestral path
+     * following only the given relations (ex. RelationMask.HYPERNYMS)
+     * @param wordA
+     * @param wordB
+     * @param relations the links followed
+     * @return the words of the common ancestor
+     * @throws IllegalArgumentException if a word is unknown or there is no common ancestor
+     */
+    public String sap(String wordA, String wordB, RelationMask relations) {
+        if (wordA == null || wordB == null)
+            throw new NullPointerException();
+        if (!this.words.containsKey(wordA) || !this.words.containsKey(wordB))
+            throw new IllegalArgumentException();
+
+        int commonAncestor = this.algorithms.ancestor(this.words.get(wordA), this.words.get(wordB), relations);
+        return this.getSynsetIDName(commonAncestor);
+    }
+
+    /**
+     * Shortest ancestral paths of many pairs of words, following all the links
+     * (see sapAll(String[], String[], RelationMask))
+     */
+    public SapResults sapAll(String[] wordsA, String[] wordsB) {
+        return this.sapAll(wordsA, wordsB, RelationMask.ALL);
+    }
+
+    /**
+     * Shortest ancestral paths of many pairs of words (wordsA[k], wordsB[k]) in
+     * one call, ex. every candidate word against every mapped synset.
+     * The pairs sharing the same wordA share their BFS, and the words are
+     * computed in parallel (see GraphAlgorithms.sapAll()).
+     * @param wordsA first word of each pair
+     * @param wordsB second word of each pair
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return for each pair, the distance (-1 if none) and the common ancestor (see getSynsetIDName())
+     * @throws IllegalArgumentException if a word is unknown or the arrays have not the same length
+     */
+    public SapResults sapAll(String[] wordsA, String[] wordsB, RelationMask relations) {
+        if (wordsA.length != wordsB.length)
+            throw new IllegalArgumentException("Not the same number of words: " + wordsA.length + " " + wordsB.length);
+        List<LinkedList<Integer>> synsetsA = new ArrayList<>(wordsA.length);
+        List<LinkedList<Integer>> synsetsB = new ArrayList<>(wordsB.length);
+        for (int k = 0; k < wordsA.length; k++) {
+            synsetsA.add(this.synsetsOf(wordsA[k]));
+            synsetsB.add(this.synsetsOf(wordsB[k]));
+        }
+        return this.algorithms.sapAll(synsetsA, synsetsB, relations);
+    }
+
+    /**
+     * (Helper function) The synsets of a known word
+     */
+    private LinkedList<Integer> synsetsOf(String word) {
+        if (word == null) throw new NullPointerException();
+        LinkedList<Integer> synsetIDs = this.words.get(word);
+        if (synsetIDs == null) throw new IllegalArgumentException("Unknown word: " + word);
+        return synsetIDs;
+    }
     
     /**
      * Perform a search in the keys (Nouns, Verbs, Adverbs. and Adjectives) of WordNet.
@@ -265,40 +415,79 @@ public class WordNet {
     public Iterable<Edge> getParents(int v) {
     	return this.wordnetDigraph.adj(v);
     }
+
+    /**
+     * Get the parents of the SynSet v through the given relations only
+     * @param v synsetID
+     * @param relations the links followed (ex. RelationMask.HYPERNYMS)
+     * @return list of parents synsetIDs
+     */
+    public Iterable<Edge> getParents(int v, RelationMask relations) {
+    	return this.wordnetDigraph.adj(v, relations);
+    }
     
     /**
-     * Return all the possible paths to the root.
+     * Return all the possible paths to the root of the taxonomy, following
+     * the hypernyms (RelationMask.HYPERNYMS).
      * A SynsetID may have many parents, thus many paths to root.
      * 
      * @param v SynsetID 
      * @return all the paths found or empty list if no path found
      */
     public List<LinkedList<Integer>> getPathsToRoot(int v){
-    	// the list of a list of paths to the root
-    	List<LinkedList<Integer>> result = new LinkedList<LinkedList<Integer>>();
-
-		// For each Parent, get all the possible paths to the root
-		// and merge the ancestral paths found with the current vertex
-    	for (Edge parentID : this.getParents(v)) {
-    		for (LinkedList<Integer> list : this.getPathsToRoot(parentID.index())) {
-        		LinkedList<Integer> newPath = new LinkedList<>();
-        		newPath.add(v);
-        		newPath.addAll(list);
-        		result.add(newPath);
-			}
-		}
-    	
-		// if it is the root vertex add add the root vertex as the path
-    	if (result.size() == 0) {
-			LinkedList<Integer> path = new LinkedList<>();
-			path.add(v);
-			result.add(path);
-    	}
-		
-    	return result;
+    	return this.getPathsToRoot(v, RelationMask.HYPERNYMS);
+    }
+
+    /**
+     * Return all the possible paths to the root, following only the given
+     * relations (ex. RelationMask.HYPERNYMS). The paths of each ancestor are
+     * computed once (see GraphAlgorithms.pathsToRoot()).
+     * 
+     * @param v SynsetID 
+     * @param relations the links followed
+     * @return all the paths found or empty list if no path found
+     * @throws IllegalArgumentException if the relations make a cycle (the antonyms, see-also, etc. do)
+     */
+    public List<LinkedList<Integer>> getPathsToRoot(int v, RelationMask relations){
+    	return this.algorithms.pathsToRoot(v, relations);
+    }
+
+    /**
+     * Return the hypernym ancestors of the SynsetID v with their minimum
+     * depth (number of links from v), when the paths themselves are not needed.
+     * 
+     * @param v SynsetID
+     * @return the ancestors, v included at depth 0
+     */
+    public AncestorDepths getAncestors(int v) {
+    	return this.algorithms.ancestors(v, RelationMask.HYPERNYMS);
+    }
+
+    /**
+     * Return the ancestors of the SynsetID v with their minimum depth,
+     * following only the given relations (ex. RelationMask.HYPERNYMS).
+     * 
+     * @param v SynsetID
+     * @param relations the links followed
+     * @return the ancestors, v included at depth 0
+     */
+    public AncestorDepths getAncestors(int v, RelationMask relations) {
+    	return this.algorithms.ancestors(v, relations);
     }
     
     
+    /**
+     * Return the descendants of the SynsetID v through the given relations,
+     * ex. all the hyponyms (any depth) of v with RelationMask.HYPERNYMS.
+     * 
+     * @param v SynsetID
+     * @param relations the links followed upwards
+     * @return the set of the SynsetIDs having v as ancestor, v included
+     */
+    public BitSet getDescendants(int v, RelationMask relations) {
+    	return this.algorithms.descendants(v, relations);
+    }
+    
     /**
      * Print the name of the SynsetID v
      * @return string representing the nouns in the SynSetID v
@@ -366,13 +555,47 @@ public class WordNet {
     /**
      * Loads WordNet from the file data.TYPE
      * where TYPE: {noun, verb, adj, adv}
+     * The compiled image (res/wordnet/wordnet.img) is used when it was made
+     * from the same data files, otherwise the files are parsed and the image
+     * is written for the next time.
      * 
      * @return an instance of WordNet
      * @throws IOException
      */
     public static WordNet loadWordNet() throws IOException {
     	System.out.println("Heap size: "+java.lang.Runtime.getRuntime().maxMemory()+" Bytes");
-    	return new WordNet(WORDNET_NOUNS_FILE_PATH, WORDNET_ADJECTIVES_FILE_PATH, WORDNET_ADVERBS_FILE_PATH, WORDNET_VERBS_FILE_PATH);
+    	String metadata = describe(WORDNET_NOUNS_FILE_PATH, WORDNET_ADJECTIVES_FILE_PATH, WORDNET_ADVERBS_FILE_PATH, WORDNET_VERBS_FILE_PATH);
+    	if (new File(WORDNET_IMAGE_FILE_PATH).exists()) {
+    		try {
+    			WordNet wordnet = loadImage(WORDNET_IMAGE_FILE_PATH);
+    			if (wordnet.metadata.equals(metadata)) {
+    				System.out.println("[WordNet] " + WORDNET_IMAGE_FILE_PATH + " DONE");
+    				return wordnet;
+    			}
+    			System.out.println("[WordNet] " + WORDNET_IMAGE_FILE_PATH + " is outdated");
+    		} catch (IOException e) {
+    			System.out.println("[WordNet] " + WORDNET_IMAGE_FILE_PATH + " ignored: " + e.getMessage());
+    		}
+    	}
+    	WordNet wordnet = new WordNet(WORDNET_NOUNS_FILE_PATH, WORDNET_ADJECTIVES_FILE_PATH, WORDNET_ADVERBS_FILE_PATH, WORDNET_VERBS_FILE_PATH);
+    	try {
+    		wordnet.saveImage(WORDNET_IMAGE_FILE_PATH);
+    	} catch (IOException e) {
+    		System.out.println("[WordNet] " + WORDNET_IMAGE_FILE_PATH + " not written: " + e.getMessage());
+    	}
+    	return wordnet;
+    }
+
+    /**
+     * Opens WordNet from the files data.TYPE without loading them:
+     * the synsets are decoded from the memory-mapped files when asked for.
+     * (See MappedWordNet)
+     * 
+     * @return an instance of MappedWordNet
+     * @throws IOException
+     */
+    public static MappedWordNet loadMappedWordNet() throws IOException {
+    	return new MappedWordNet(WORDNET_NOUNS_FILE_PATH, WORDNET_ADJECTIVES_FILE_PATH, WORDNET_ADVERBS_FILE_PATH, WORDNET_VERBS_FILE_PATH);
     }
 
     
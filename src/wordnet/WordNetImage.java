@@ -0,0 +1,299 @@
+package wordnet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled binary image of a loaded WordNet, restored without parsing the
+ * text of the data files.
+ *
+ * All the structures are stored as primitive arrays, the Strings (words and
+ * edge labels) once each in a string arena. A word shared by several synsets
+ * is restored as a single String.
+ *
+ * File format (big-endian):
+ *
+ *     header:   magic "WNIM", version, V, E, number of indexes N, number of
+ *               synsets S, number of words W, number of labels L, length of
+ *               the arena, number of words in the synsets, number of synsets
+ *               in the words, length of the metadata
+ *     metadata: UTF-8 text, the data files the image was compiled from
+ *     indexer:  byte[N] POS ordinal, int[N] synset_offset of each index
+ *     arena:    int[W+L+1] start of each String, then the UTF-8 bytes of the
+ *               W words followed by the L labels
+ *     synsets:  int[S] synset index, int[S+1] start of its words, int[] word numbers
+ *     words:    int[W+1] start of the synsets of each word, int[] synset indexes
+ *     graph:    int[V+1] start of the edges of each vertex (CSR),
+ *               int[E] target vertex, byte[E] label number
+ *
+ * The maps are written in their iteration order, and the edges of a vertex
+ * in the order CsrDigraph.adj() returns them: the restored structures iterate
+ * in the same order as the saved ones. The graph arrays are used as they are
+ * by the restored CsrDigraph. The labels are saved as Strings and mapped back
+ * to the codes of WORDNET_RELATIONS, so an image does not depend on the
+ * order of the relations.
+ */
+class WordNetImage {
+
+    private static final int MAGIC = 0x574E494D; // "WNIM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 48;
+
+    final String metadata;
+    final Indexer indexer;
+    final HashMap<Integer, List<String>> synsets;
+    final HashMap<String, LinkedList<Integer>> words;
+    final CsrDigraph digraph;
+
+    /**
+     * Read an image written by write()
+     * @param path image file
+     * @throws IOException if the file can not be read, is not a WordNet image,
+     *         or is truncated or damaged
+     */
+    WordNetImage(String path) throws IOException {
+        ByteBuffer in;
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("WordNet image too large: " + path);
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (in.capacity() < HEADER_SIZE || in.getInt() != MAGIC)
+            throw new IOException("Not a WordNet image: " + path);
+        int version = in.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported WordNet image version " + version + ": " + path);
+        int v = in.getInt();
+        int e = in.getInt();
+        int n = in.getInt();
+        int s = in.getInt();
+        int w = in.getInt();
+        int l = in.getInt();
+        int arenaLength = in.getInt();
+        int synsetWordCount = in.getInt();
+        int wordSynsetCount = in.getInt();
+        int textLength = in.getInt();
+
+        // the counts of the header give the exact length of the file
+        if ((v | e | n | s | w | l | arenaLength | synsetWordCount | wordSynsetCount | textLength) < 0)
+            throw new IOException("Damaged WordNet image (negative count): " + path);
+        long expected = (long) HEADER_SIZE + textLength
+                + 5L * n
+                + 4L * ((long) w + l + 1) + arenaLength
+                + 4L * s + 4L * (s + 1L) + 4L * synsetWordCount
+                + 4L * (w + 1L) + 4L * wordSynsetCount
+                + 4L * (v + 1L) + 5L * e;
+        if (expected != in.capacity())
+            throw new IOException("Truncated or damaged WordNet image (" + in.capacity() + " bytes, "
+                    + expected + " expected): " + path);
+
+        // the content may still be inconsistent: any error reading it is a damaged image
+        try {
+            byte[] text = new byte[textLength];
+            in.get(text);
+            this.metadata = new String(text, StandardCharsets.UTF_8);
+
+            // indexer: the indexes are given in order
+            byte[] pos = bytes(in, n);
+            int[] offsets = ints(in, n);
+            POS[] values = POS.values();
+            this.indexer = new Indexer();
+            for (int i = 0; i < n; i++) this.indexer.addIndex(offsets[i], values[pos[i]]);
+
+            // arena
+            int[] starts = ints(in, w + l + 1);
+            byte[] arena = bytes(in, arenaLength);
+            String[] strings = new String[w + l];
+            for (int i = 0; i < strings.length; i++)
+                strings[i] = new String(arena, starts[i], starts[i + 1] - starts[i], StandardCharsets.UTF_8);
+
+            // synsets
+            int[] synsetIndexes = ints(in, s);
+            int[] synsetStarts = ints(in, s + 1);
+            int[] synsetWords = ints(in, synsetWordCount);
+            this.synsets = new HashMap<>();
+            for (int i = 0; i < s; i++) {
+                LinkedList<String> list = new LinkedList<>();
+                for (int k = synsetStarts[i]; k < synsetStarts[i + 1]; k++) list.add(strings[synsetWords[k]]);
+                this.synsets.put(synsetIndexes[i], list);
+            }
+
+            // words
+            int[] wordStarts = ints(in, w + 1);
+            int[] wordSynsets = ints(in, wordSynsetCount);
+            this.words = new HashMap<>();
+            for (int i = 0; i < w; i++) {
+                LinkedList<Integer> list = new LinkedList<>();
+                for (int k = wordStarts[i]; k < wordStarts[i + 1]; k++) list.add(wordSynsets[k]);
+                this.words.put(strings[i], list);
+            }
+
+            // graph: label number -> code
+            byte[] codes = new byte[l];
+            for (int i = 0; i < l; i++) {
+                WORDNET_RELATIONS relation = WORDNET_RELATIONS.typeOf(strings[w + i]);
+                if (relation == null) throw new IOException("Unknown label '" + strings[w + i] + "' in " + path);
+                codes[i] = relation.code();
+            }
+            int[] edgeStarts = ints(in, v + 1);
+            int[] targets = ints(in, e);
+            byte[] labels = bytes(in, e);
+            for (int k = 0; k < e; k++) labels[k] = codes[labels[k] & 0xff];
+            if (edgeStarts[0] != 0) throw new IOException("Damaged WordNet graph in " + path);
+            for (int i = 0; i < v; i++) {
+                if (edgeStarts[i] > edgeStarts[i + 1]) throw new IOException("Damaged WordNet graph in " + path);
+            }
+            for (int target : targets) {
+                if (target < 0 || target >= v) throw new IOException("Damaged WordNet graph in " + path);
+            }
+            this.digraph = new CsrDigraph(v, edgeStarts, targets, labels);
+        } catch (RuntimeException ex) {
+            // BufferUnderflowException, IndexOutOfBoundsException, IllegalArgumentException...
+            throw new IOException("Damaged WordNet image: " + path, ex);
+        }
+    }
+
+    private static int[] ints(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    private static byte[] bytes(ByteBuffer in, int count) {
+        byte[] values = new byte[count];
+        in.get(values);
+        return values;
+    }
+
+    /**
+     * Write the structures of a loaded WordNet into an image.
+     * The image is written to a temporary file of the same directory, then
+     * moved to path: an interrupted write never leaves a truncated image.
+     * @param path image file to write
+     * @param metadata text saved with the image (the data files)
+     * @throws IOException
+     */
+    static void write(String path, String metadata, Indexer indexer, HashMap<Integer, List<String>> synsets,
+            HashMap<String, LinkedList<Integer>> words, CsrDigraph digraph) throws IOException {
+        // indexer, in the order of the indexes
+        int n = indexer.size();
+        byte[] pos = new byte[n];
+        int[] offsets = new int[n];
+        for (Map.Entry<POS, HashMap<Integer, Integer>> mapper : indexer.indexMapper.entrySet()) {
+            for (Map.Entry<Integer, Integer> entry : mapper.getValue().entrySet()) {
+                pos[entry.getValue()] = (byte) mapper.getKey().ordinal();
+                offsets[entry.getValue()] = entry.getKey();
+            }
+        }
+
+        // numbers of the Strings: the words, then the labels
+        HashMap<String, Integer> numbers = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (String word : words.keySet()) {
+            numbers.put(word, strings.size());
+            strings.add(word);
+        }
+        int w = strings.size();
+        int l = WORDNET_RELATIONS.labelCount();
+        for (byte code = 0; code < l; code++) strings.add(WORDNET_RELATIONS.label(code));
+        int[] starts = new int[strings.size() + 1];
+        byte[][] encoded = new byte[strings.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            starts[i + 1] = starts[i] + encoded[i].length;
+        }
+
+        int synsetWordCount = 0;
+        for (List<String> list : synsets.values()) synsetWordCount += list.size();
+        int wordSynsetCount = 0;
+        for (LinkedList<Integer> list : words.values()) wordSynsetCount += list.size();
+
+        Path target = Paths.get(path).toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        boolean written = false;
+        try {
+            try (FileOutputStream stream = new FileOutputStream(temporary.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+                byte[] text = metadata.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(digraph.V());
+                out.writeInt(digraph.E());
+                out.writeInt(n);
+                out.writeInt(synsets.size());
+                out.writeInt(w);
+                out.writeInt(l);
+                out.writeInt(starts[strings.size()]);
+                out.writeInt(synsetWordCount);
+                out.writeInt(wordSynsetCount);
+                out.writeInt(text.length);
+                out.write(text);
+
+                out.write(pos);
+                for (int offset : offsets) out.writeInt(offset);
+
+                for (int start : starts) out.writeInt(start);
+                for (byte[] bytes : encoded) out.write(bytes);
+
+                for (Integer index : synsets.keySet()) out.writeInt(index);
+                int start = 0;
+                out.writeInt(start);
+                for (List<String> list : synsets.values()) {
+                    start += list.size();
+                    out.writeInt(start);
+                }
+                for (List<String> list : synsets.values()) {
+                    for (String word : list) out.writeInt(numbers.get(word));
+                }
+
+                start = 0;
+                out.writeInt(start);
+                for (LinkedList<Integer> list : words.values()) {
+                    start += list.size();
+                    out.writeInt(start);
+                }
+                for (LinkedList<Integer> list : words.values()) {
+                    for (Integer index : list) out.writeInt(index);
+                }
+
+                start = 0;
+                out.writeInt(start);
+                for (int v = 0; v < digraph.V(); v++) {
+                    start += digraph.outdegree(v);
+                    out.writeInt(start);
+                }
+                for (int e = 0; e < digraph.E(); e++) out.writeInt(digraph.target(e));
+                for (int e = 0; e < digraph.E(); e++) out.writeByte(digraph.label(e));
+                out.flush();
+                // the image is on the disk before it replaces the previous one
+                stream.getFD().sync();
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            written = true;
+        } finally {
+            if (!written) Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package wordnet;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * The content of one WordNet data file (data.noun, data.verb, data.adj or data.adv),
+ * parsed on its own so that the files can be read concurrently.
+ *
+ * The synsets are numbered locally (0..size()-1) in the order they are first
+ * met in the file: the synset of a line, then the targets of its pointers.
+ * WordNet merges the parts in a fixed order, and gives the global indexes by
+ * going through the local ones in order: this is the order in which the
+ * sequential loading meets the synsets, so the indexes are the same.
+ */
+class WordNetPart {
+
+	private final String filePath;
+	private final POS pos;
+
+	// local index -> (pos, synset_offset)
+	private final Indexer indexer = new Indexer();
+	private POS[] keyPos = new POS[1024];
+	private int[] keyOffset = new int[1024];
+	private int size = 0;
+
+	// synsets of the lines, in the order of the file
+	private int[] synsets = new int[1024];
+	private LinkedList<LinkedList<String>> words = new LinkedList<>();
+	private int synsetCount = 0;
+
+	// edges in local indexes, in the order of the file
+	private int[] edgeSources = new int[1024];
+	private int[] edgeTargets = new int[1024];
+	private byte[] edgeLabels = new byte[1024];
+	private int edgeCount = 0;
+
+	/**
+	 * Read a WordNet file data.TYPE (TYPE: verb, noun, adj or adv), see (wndb.5)
+	 * @param filePath path to the WordNet data.TYPE file to load
+	 * @param pos type of file to load
+	 * @throws IOException
+	 */
+	WordNetPart(String filePath, POS pos) throws IOException {
+		this.filePath = filePath;
+		this.pos = pos;
+		this.load();
+	}
+
+	private void load() throws IOException {
+		System.out.println("[WordNet] "+filePath+" ...");
+		DataFileScanner in = new DataFileScanner(filePath);
+		while (in.nextRow()) {
+			int synset_offset = in.nextDecimal();
+			in.skip(); //lex_filenum ignore
+			in.skip(); //ss_type ignore
+			int sourceIndex = this.index(synset_offset, this.pos);
+			int w_cnt = in.nextHex();
+			LinkedList<String> synsetWords = new LinkedList<>();
+			for (int i = 0; i<w_cnt; i++){
+				synsetWords.add(in.nextWord());
+				in.skip(); //lex_id ignore
+			}
+			this.addSynset(sourceIndex, synsetWords);
+			int p_cnt = in.nextDecimal();
+			for (int i = 0; i < p_cnt; i++){
+				// null if the symbol is not in WORDNET_RELATIONS
+				WORDNET_RELATIONS pointer_symbol = in.nextPointerSymbol();
+				int synset_offset_target = in.nextDecimal();
+				char targetChar = in.nextChar();
+				in.skip(); //source/target ignore
+				if (pointer_symbol == null) continue;
+				POS targetPos = toPOS(targetChar);
+				if (targetPos == null) {
+					System.out.println("Unknown char: " + targetChar);
+					continue;
+				}
+				this.addEdge(sourceIndex, this.index(synset_offset_target, targetPos), pointer_symbol.code());
+			}
+			//ignore frames for verbs, and gloss for all
+		}
+		System.out.println("[WordNet] "+filePath+" DONE ");
+	}
+
+	/**
+	 * (Helper function) The part of speech of a pos char of the data files
+	 * (satellite adjectives 's' are adjectives)
+	 * @return the POS or null if unknown
+	 */
+	static POS toPOS(char pos) {
+		switch (pos) {
+		case 'n': return POS.NOUN;
+		case 'v': return POS.VERB;
+		case 'r': return POS.ADV;
+		case 'a': return POS.ADJ;
+		case 's': return POS.ADJ;
+		default: return null;
+		}
+	}
+
+	/**
+	 * (Helper function) The local index of a synset, numbered when first met
+	 */
+	private int index(int offset, POS pos) {
+		int index = this.indexer.getIndex(offset, pos);
+		if (index == this.size) {
+			if (this.size == this.keyOffset.length) {
+				this.keyPos = Arrays.copyOf(this.keyPos, this.size * 2);
+				this.keyOffset = Arrays.copyOf(this.keyOffset, this.size * 2);
+			}
+			this.keyPos[this.size] = pos;
+			this.keyOffset[this.size] = offset;
+			this.size++;
+		}
+		return index;
+	}
+
+	private void addSynset(int index, LinkedList<String> synsetWords) {
+		if (this.synsetCount == this.synsets.length) this.synsets = Arrays.copyOf(this.synsets, this.synsetCount * 2);
+		this.synsets[this.synsetCount++] = index;
+		this.words.add(synsetWords);
+	}
+
+	private void addEdge(int source, int target, byte label) {
+		if (this.edgeCount == this.edgeSources.length) {
+			this.edgeSources = Arrays.copyOf(this.edgeSources, this.edgeCount * 2);
+			this.edgeTargets = Arrays.copyOf(this.edgeTargets, this.edgeCount * 2);
+			this.edgeLabels = Arrays.copyOf(this.edgeLabels, this.edgeCount * 2);
+		}
+		this.edgeSources[this.edgeCount] = source;
+		this.edgeTargets[this.edgeCount] = target;
+		this.edgeLabels[this.edgeCount] = label;
+		this.edgeCount++;
+	}
+
+	/**
+	 * Number of synsets met in the file (its own synsets and the targets of its pointers)
+	 */
+	int size() {
+		return this.size;
+	}
+
+	POS pos(int local) {
+		return this.keyPos[local];
+	}
+
+	int offset(int local) {
+		return this.keyOffset[local];
+	}
+
+	/**
+	 * Number of synset lines in the file
+	 */
+	int synsetCount() {
+		return this.synsetCount;
+	}
+
+	/**
+	 * Local index of the synset of the line k (0..synsetCount()-1)
+	 */
+	int synset(int k) {
+		return this.synsets[k];
+	}
+
+	/**
+	 * Words of the synsets, in the order of the lines
+	 */
+	Iterable<LinkedList<String>> words() {
+		return this.words;
+	}
+
+	int edgeCount() {
+		return this.edgeCount;
+	}
+
+	int edgeSource(int e) {
+		return this.edgeSources[e];
+	}
+
+	int edgeTarget(int e) {
+		return this.edgeTargets[e];
+	}
+
+	/**
+	 * Code of the pointer symbol of an edge (see WORDNET_RELATIONS.code())
+	 */
+	byte edgeLabel(int e) {
+		return this.edgeLabels[e];
+	}
+}